@@ -6,6 +6,9 @@ object Versions {
     const val asm = "9.7.1"
     const val guava = "31.1-jre"
 
+    // caffeine 3.x requires Java 11
+    const val caffeine = "2.9.3"
+
     // hikaricp version compatible with Java 8
     const val hikaricp = "4.0.3"
     const val jooq = "3.14.16"
@@ -16,6 +19,9 @@ object Versions {
     const val lmdb_java = "0.9.0"
 
     const val jdot = "1.0"
+
+    const val jmh = "1.37"
+    const val jmh_gradle_plugin = "0.7.2"
 }
 
 object Libs {
@@ -46,6 +52,12 @@ object Libs {
         version = Versions.guava
     )
 
+    val caffeine = dep(
+        group = "com.github.ben-manes.caffeine",
+        name = "caffeine",
+        version = Versions.caffeine
+    )
+
     val xodusUtils = dep(
         group = "org.jetbrains.xodus",
         name = "xodus-utils",
@@ -14,3 +14,5 @@ object KotlinDependencyExt {
 }
 
 fun PluginDependenciesSpec.kotlinSerialization() = id(KotlinDependency.Plugins.KotlinSerialization)
+
+fun PluginDependenciesSpec.jmh() = id("me.champeau.jmh").version(Versions.jmh_gradle_plugin)
@@ -1,6 +1,7 @@
 package org.seqra.ir.api.jvm
 
 import org.seqra.ir.api.storage.StorageContext
+import org.objectweb.asm.ClassReader
 import org.objectweb.asm.tree.ClassNode
 
 /** index builder */
@@ -11,8 +12,27 @@ interface ByteCodeIndexer {
     fun flush(context: StorageContext)
 }
 
+/**
+ * How deep byte-code of classes is parsed for indexing, levels are ordered from the shallowest to the deepest
+ */
+enum class ClassParsingLevel(val asmOptions: Int) {
+    /** declarations of class and its members, methods' code is skipped */
+    DECLARATIONS(ClassReader.SKIP_CODE),
+
+    /** methods' code without stack map frames */
+    CODE(ClassReader.SKIP_FRAMES),
+
+    /** methods' code with expanded stack map frames */
+    CODE_WITH_FRAMES(ClassReader.EXPAND_FRAMES)
+}
+
 interface JIRFeature<REQ, RES> {
 
+    /**
+     * level of parsing class nodes passed to indexer, classes are parsed once at the deepest level of all features
+     */
+    val parsingLevel: ClassParsingLevel get() = ClassParsingLevel.CODE_WITH_FRAMES
+
     suspend fun query(classpath: JIRClasspath, req: REQ): Sequence<RES>
 
     fun newIndexer(jIRdb: JIRDatabase, location: RegisteredLocation): ByteCodeIndexer
@@ -7,6 +7,7 @@ import org.seqra.ir.api.jvm.cfg.JIRGraph
 import org.seqra.ir.api.jvm.cfg.JIRInst
 import org.seqra.ir.api.jvm.cfg.JIRInstList
 import org.seqra.ir.api.jvm.cfg.JIRRawInst
+import org.seqra.ir.api.jvm.ext.isSubClassOfByHierarchy
 import java.io.Closeable
 import java.util.concurrent.Future
 
@@ -63,6 +64,14 @@ interface JIRClasspath : Closeable, CommonProject {
 
     fun toJIRClass(source: ClassSource): JIRClassOrInterface
 
+    /**
+     * @return true if [subClass] is [superClass] or extends or implements it directly or indirectly.
+     * Implementations may cache class hierarchy, so that both positive and negative checks are cheap.
+     */
+    fun isSubClassOf(subClass: JIRClassOrInterface, superClass: JIRClassOrInterface): Boolean {
+        return subClass.isSubClassOfByHierarchy(superClass)
+    }
+
     suspend fun refreshed(closeOld: Boolean): JIRClasspath
     fun asyncRefreshed(closeOld: Boolean) = GlobalScope.future { refreshed(closeOld) }
 
@@ -70,6 +79,43 @@ interface JIRClasspath : Closeable, CommonProject {
 
     fun <T : JIRClasspathTask> executeAsync(task: T): Future<T> = GlobalScope.future { execute(task) }
 
+    /**
+     * Builds instructions and flow graphs of all methods of [classes] in parallel so that they are
+     * served from classpath cache later. Failures of particular classes and methods are reported to [listener]
+     * and do not stop the warm-up. Warm-up is stopped as soon as calling coroutine is cancelled.
+     *
+     * @param parallelism max number of threads used for building
+     */
+    suspend fun warmUp(
+        classes: Collection<JIRClassOrInterface>,
+        listener: JIRWarmUpListener = JIRWarmUpListener.NONE,
+        parallelism: Int = Runtime.getRuntime().availableProcessors()
+    )
+
+    /**
+     * Same as `warmUp` for all classes of [location]
+     */
+    suspend fun warmUp(
+        location: RegisteredLocation,
+        listener: JIRWarmUpListener = JIRWarmUpListener.NONE,
+        parallelism: Int = Runtime.getRuntime().availableProcessors()
+    )
+
+    /**
+     * Same as `warmUp`, cancelling of returned future stops the warm-up
+     */
+    fun warmUpAsync(
+        classes: Collection<JIRClassOrInterface>,
+        listener: JIRWarmUpListener = JIRWarmUpListener.NONE,
+        parallelism: Int = Runtime.getRuntime().availableProcessors()
+    ): Future<Unit> = GlobalScope.future { warmUp(classes, listener, parallelism) }
+
+    fun warmUpAsync(
+        location: RegisteredLocation,
+        listener: JIRWarmUpListener = JIRWarmUpListener.NONE,
+        parallelism: Int = Runtime.getRuntime().availableProcessors()
+    ): Future<Unit> = GlobalScope.future { warmUp(location, listener, parallelism) }
+
     fun isInstalled(feature: JIRClasspathFeature): Boolean
 }
 
@@ -89,6 +135,39 @@ interface JIRClasspathTask {
 
 }
 
+/**
+ * Progress of [JIRClasspath.warmUp]. Methods are called concurrently from worker threads.
+ */
+@JvmDefaultWithoutCompatibility
+interface JIRWarmUpListener {
+
+    /**
+     * called when all methods of [clazz] are built
+     *
+     * @param processed number of already processed classes
+     * @param total number of classes to process
+     */
+    fun onClassProcessed(clazz: JIRClassOrInterface, processed: Int, total: Int) {
+    }
+
+    fun onMethodFailed(method: JIRMethod, error: Throwable) {
+    }
+
+    /**
+     * called when [className] can't be loaded or its methods can't be listed, the class is skipped
+     *
+     * @param processed number of already processed classes including this one
+     * @param total number of classes to process
+     */
+    fun onClassFailed(className: String, error: Throwable, processed: Int, total: Int) {
+    }
+
+    companion object {
+        @JvmField
+        val NONE = object : JIRWarmUpListener {}
+    }
+}
+
 interface JIRClassProcessingTask : JIRClasspathTask {
 
     override fun process(source: ClassSource, classpath: JIRClasspath) {
@@ -30,6 +30,18 @@ class JIRSettings {
     var keepLocalVariableNames: Boolean = false
         private set
 
+    /** raw instruction lists of methods are persisted, works only with ERS persistence */
+    var persistRawInstLists: Boolean = false
+        private set
+
+    /** bytecode of classes is stored compressed, works only with ERS persistence */
+    var compressBytecode: Boolean = false
+        private set
+
+    /** symbols are looked up in the database instead of being loaded in memory, works only with KV-based ERS */
+    var lazySymbols: Boolean = false
+        private set
+
     var buildModelForJRE: Boolean = true
         private set
 
@@ -97,6 +109,32 @@ class JIRSettings {
         keepLocalVariableNames = true
     }
 
+    /**
+     * raw instruction lists of methods are stored in the database once built, so next time
+     * they are read from it instead of being built from bytecode
+     */
+    fun persistRawInstLists() = apply {
+        persistRawInstLists = true
+    }
+
+    /**
+     * bytecode of classes is stored in the database compressed, which makes it several times smaller
+     * at the cost of decompression on reading. Databases with compressed and uncompressed bytecode
+     * are compatible with each other.
+     */
+    fun compressBytecode() = apply {
+        compressBytecode = true
+    }
+
+    /**
+     * symbols (names of classes, methods, etc.) are looked up in the database on demand and only recently used ones
+     * are kept in memory, instead of loading all of them on start. This makes startup faster and memory footprint
+     * smaller for large databases at the cost of slower symbol lookups.
+     */
+    fun lazySymbols() = apply {
+        lazySymbols = true
+    }
+
     fun buildModelForJRE(build: Boolean) = apply {
         buildModelForJRE = build
     }
@@ -165,10 +203,15 @@ interface JIRPersistenceImplSettings {
     val persistenceId: String
 }
 
+/**
+ * @property maxBytes if positive, segment is bounded by estimated size of cached values in bytes instead of [maxSize].
+ * Is supported only by segments of instructions and flow graphs and requires cache provider supporting weights.
+ */
 data class JIRCacheSegmentSettings(
     val valueStoreType: ValueStoreType = ValueStoreType.STRONG,
     val maxSize: Long = 10_000,
-    val expiration: Duration = Duration.ofMinutes(1)
+    val expiration: Duration = Duration.ofMinutes(1),
+    val maxBytes: Long = 0
 )
 
 class JIRCacheSettings {
@@ -207,6 +250,20 @@ class JIRCacheSettings {
             flowGraphs =
                 JIRCacheSegmentSettings(maxSize = maxSize, expiration = expiration, valueStoreType = valueStoreType)
         }
+
+    /**
+     * Bounds raw instructions, instructions and flow graphs segments by estimated size of cached values.
+     * [maxBytes] is split between segments: a quarter for raw instructions and the rest equally for
+     * instructions and flow graphs. Number of entries is not limited in this case.
+     */
+    fun instructionsMaxBytes(maxBytes: Long) = apply {
+        require(maxBytes >= 4) { "maxBytes should be at least 4: $maxBytes" }
+        val rawInstListsBytes = maxBytes / 4
+        val instListsBytes = (maxBytes - rawInstListsBytes) / 2
+        rawInstLists = rawInstLists.copy(maxBytes = rawInstListsBytes)
+        instLists = instLists.copy(maxBytes = instListsBytes)
+        flowGraphs = flowGraphs.copy(maxBytes = maxBytes - rawInstListsBytes - instListsBytes)
+    }
 }
 
 class JIRByteCodeCache(val prefixes: List<String> = persistentListOf("java.", "javax.", "kotlinx.", "kotlin."))
\ No newline at end of file
@@ -177,6 +177,16 @@ val JIRClassOrInterface.superClasses: List<JIRClassOrInterface>
     }
 
 infix fun JIRClassOrInterface.isSubClassOf(another: JIRClassOrInterface): Boolean {
+    if (another == this) {
+        return true
+    }
+    return classpath.isSubClassOf(this, another)
+}
+
+/**
+ * Checks if this class is subclass of [another] by walking its superclasses and interfaces
+ */
+internal fun JIRClassOrInterface.isSubClassOfByHierarchy(another: JIRClassOrInterface): Boolean {
     if (another == classpath.findClassOrNull<Any>()) {
         return true
     }
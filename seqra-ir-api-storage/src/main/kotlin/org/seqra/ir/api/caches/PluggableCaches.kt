@@ -48,6 +48,21 @@ abstract class PluggableCacheBuilder<K : Any, V : Any> {
             field = value.verifyCacheSize()
         }
 
+    /**
+     * Maximum total weight of cached values computed by [weigher]. If both [maximumWeight] and [weigher] are set,
+     * cache is bounded by weight rather than by [maximumSize].
+     * Pluggable caches which don't support weights ignore this option and fall back to [maximumSize].
+     */
+    var maximumWeight: Long = 0
+        set(value) {
+            field = value.verifyCacheWeight()
+        }
+
+    /**
+     * Estimates weight of a `<K,V>` pair, is used together with [maximumWeight].
+     */
+    var weigher: ((K, V) -> Int)? = null
+
     /**
      * Type of reference to cached value: [ValueStoreType.STRONG], [ValueStoreType.SOFT], [ValueStoreType.WEAK].
      * Use of [ValueStoreType.WEAK] is not recommended as not every pluggable cache can support it.
@@ -68,4 +83,7 @@ abstract class PluggableCacheBuilder<K : Any, V : Any> {
 
 private fun Int.verifyCacheSize(): Int {
     return this.also { if (it <= 0) throw PluggableCacheException("maximumSize <= 0: $it") }
-}
\ No newline at end of file
+}
+private fun Long.verifyCacheWeight(): Long {
+    return this.also { if (it <= 0) throw PluggableCacheException("maximumWeight <= 0: $it") }
+}
@@ -71,11 +71,85 @@ class EntityIdCollectionEntityIterable(
     override fun iterator() = set.mapNotNullTo(ArrayList(set.size)) { id -> txn.getEntityOrNull(id) }.iterator()
 }
 
+/**
+ * Entities of a single type. Union, intersection and difference of such iterables of the same transaction
+ * are computed eagerly by operations on [InstanceIdBitmap] rather than lazily by hashing of entity ids.
+ */
+abstract class InstanceIdsEntityIterable : EntityIterable {
+
+    protected abstract val txn: Transaction
+
+    abstract val typeId: Int
+
+    /**
+     * Returns instance ids of the entities, the default implementation collects them by iteration.
+     */
+    open fun toInstanceIdBitmap(): InstanceIdBitmap {
+        return InstanceIdBitmap().also { bitmap -> forEach { bitmap.add(it.id.instanceId) } }
+    }
+
+    override fun plus(other: EntityIterable): EntityIterable {
+        val otherIds = sameTypeInstanceIds(other) ?: return super.plus(other)
+        return BitmapEntityIterable(txn, typeId, toInstanceIdBitmap() or otherIds)
+    }
+
+    override fun times(other: EntityIterable): EntityIterable {
+        if (isOtherType(other)) {
+            return EntityIterable.EMPTY
+        }
+        val otherIds = sameTypeInstanceIds(other) ?: return super.times(other)
+        return BitmapEntityIterable(txn, typeId, toInstanceIdBitmap() and otherIds)
+    }
+
+    override fun minus(other: EntityIterable): EntityIterable {
+        if (isOtherType(other)) {
+            return this
+        }
+        val otherIds = sameTypeInstanceIds(other) ?: return super.minus(other)
+        return BitmapEntityIterable(txn, typeId, toInstanceIdBitmap() andNot otherIds)
+    }
+
+    private fun isOtherType(other: EntityIterable): Boolean {
+        return other is InstanceIdsEntityIterable && other.txn === txn && other.typeId != typeId
+    }
+
+    private fun sameTypeInstanceIds(other: EntityIterable): InstanceIdBitmap? {
+        return if (other is InstanceIdsEntityIterable && other.txn === txn && other.typeId == typeId) {
+            other.toInstanceIdBitmap()
+        } else {
+            null
+        }
+    }
+}
+
+class BitmapEntityIterable(
+    override val txn: Transaction,
+    override val typeId: Int,
+    private val instanceIds: InstanceIdBitmap
+) : InstanceIdsEntityIterable() {
+
+    override val size get() = instanceIds.size
+
+    override val isEmpty get() = instanceIds.isEmpty
+
+    override fun contains(e: Entity) = e.id.typeId == typeId && e.id.instanceId in instanceIds
+
+    override fun toInstanceIdBitmap() = instanceIds
+
+    override fun iterator(): Iterator<Entity> {
+        val ids = instanceIds.iterator()
+        return object : Iterator<Entity> {
+            override fun hasNext() = ids.hasNext()
+            override fun next() = txn.getEntityUnsafe(EntityId(typeId, ids.nextLong()))
+        }
+    }
+}
+
 class InstanceIdCollectionEntityIterable(
-    private val txn: Transaction,
-    private val typeId: Int,
+    override val txn: Transaction,
+    override val typeId: Int,
     private val set: Collection<Long>
-) : EntityIterable {
+) : InstanceIdsEntityIterable() {
 
     override val size = set.size.toLong()
 
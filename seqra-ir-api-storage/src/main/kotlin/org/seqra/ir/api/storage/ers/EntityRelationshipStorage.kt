@@ -12,6 +12,13 @@ interface EntityRelationshipStorage : Closeable, BindingProvider {
     @Throws(ERSConflictingTransactionException::class)
     fun beginTransaction(readonly: Boolean = false): Transaction
 
+    /**
+     * Begins a read-write transaction for bulk creation of entities. Storage can keep attributes of entities
+     * created in such a transaction in memory until it's committed. By default, it's a regular one.
+     */
+    @Throws(ERSConflictingTransactionException::class)
+    fun beginBulkTransaction(): Transaction = beginTransaction(readonly = false)
+
     @Throws(ERSConflictingTransactionException::class)
     fun <T> transactional(readonly: Boolean = false, action: (Transaction) -> T): T {
         beginTransaction(readonly = readonly).use { txn ->
@@ -19,6 +26,13 @@ interface EntityRelationshipStorage : Closeable, BindingProvider {
         }
     }
 
+    @Throws(ERSConflictingTransactionException::class)
+    fun <T> bulkTransactional(action: (Transaction) -> T): T {
+        beginBulkTransaction().use { txn ->
+            return action(txn)
+        }
+    }
+
     @Throws(ERSConflictingTransactionException::class)
     fun <T> transactionalOptimistic(attempts: Int = 5, action: (Transaction) -> T): T {
         repeat(attempts) {
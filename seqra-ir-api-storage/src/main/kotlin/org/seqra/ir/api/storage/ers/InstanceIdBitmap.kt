@@ -0,0 +1,341 @@
+package org.seqra.ir.api.storage.ers
+
+/**
+ * Compressed set of instance ids in the manner of Roaring bitmaps.
+ *
+ * Ids are split by their high bits into chunks of 65536 ids. A sparse chunk keeps sorted low 16 bits of its ids,
+ * a dense one is a plain bitmap, so memory is proportional to the number of ids in the set. Union, intersection
+ * and difference are computed chunk by chunk, either by merging of sorted arrays or by word-wise operations
+ * on bitmaps, without hashing of single ids.
+ *
+ * Instance ids should be in range `0..`[MAX_INSTANCE_ID].
+ */
+class InstanceIdBitmap {
+
+    companion object {
+        const val MAX_INSTANCE_ID = (1L shl 47) - 1
+
+        fun of(instanceIds: Iterable<Long>): InstanceIdBitmap {
+            return InstanceIdBitmap().apply { instanceIds.forEach { add(it) } }
+        }
+    }
+
+    private var keys = IntArray(4)
+    private var containers = arrayOfNulls<Container>(4)
+    private var chunkCount = 0
+
+    val size: Long
+        get() {
+            var result = 0L
+            for (i in 0 until chunkCount) {
+                result += containers[i]!!.cardinality
+            }
+            return result
+        }
+
+    val isEmpty: Boolean get() = chunkCount == 0
+
+    /**
+     * Adds [instanceId] to the set, returns `false` if it is already there.
+     */
+    fun add(instanceId: Long): Boolean {
+        require(instanceId in 0..MAX_INSTANCE_ID) { "Instance id is out of range: $instanceId" }
+        val key = keyOf(instanceId)
+        var index = keys.binarySearch(key, 0, chunkCount)
+        if (index < 0) {
+            index = -index - 1
+            insertChunk(index, key, ArrayContainer())
+        }
+        val container = containers[index]!!
+        val low = lowOf(instanceId)
+        if (container.contains(low)) {
+            return false
+        }
+        containers[index] = container.add(low)
+        return true
+    }
+
+    operator fun contains(instanceId: Long): Boolean {
+        if (instanceId !in 0..MAX_INSTANCE_ID) {
+            return false
+        }
+        val index = keys.binarySearch(keyOf(instanceId), 0, chunkCount)
+        return index >= 0 && containers[index]!!.contains(lowOf(instanceId))
+    }
+
+    /**
+     * Iterates instance ids in ascending order.
+     */
+    fun iterator(): LongIterator = object : LongIterator() {
+
+        private var chunk = 0
+        private var lows: IntIterator? = null
+
+        override fun hasNext(): Boolean {
+            while (true) {
+                lows?.let { if (it.hasNext()) return true }
+                if (chunk >= chunkCount) return false
+                lows = containers[chunk++]!!.lowIterator()
+            }
+        }
+
+        override fun nextLong(): Long {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            return (keys[chunk - 1].toLong() shl 16) or lows!!.nextInt().toLong()
+        }
+    }
+
+    infix fun or(other: InstanceIdBitmap): InstanceIdBitmap {
+        return combine(other, keepOwn = true, keepOthers = true) { a, b -> a or b }
+    }
+
+    infix fun and(other: InstanceIdBitmap): InstanceIdBitmap {
+        return combine(other, keepOwn = false, keepOthers = false) { a, b -> a and b }
+    }
+
+    infix fun andNot(other: InstanceIdBitmap): InstanceIdBitmap {
+        return combine(other, keepOwn = true, keepOthers = false) { a, b -> a andNot b }
+    }
+
+    /**
+     * Merges chunks of two bitmaps ordered by their keys. Chunks present only in one of the bitmaps are copied
+     * to the result if [keepOwn] or [keepOthers] is set, chunks present in both are combined by [op].
+     */
+    private inline fun combine(
+        other: InstanceIdBitmap,
+        keepOwn: Boolean,
+        keepOthers: Boolean,
+        op: (Container, Container) -> Container?
+    ): InstanceIdBitmap {
+        val result = InstanceIdBitmap()
+        var i = 0
+        var j = 0
+        while (i < chunkCount || j < other.chunkCount) {
+            val cmp = when {
+                i >= chunkCount -> 1
+                j >= other.chunkCount -> -1
+                else -> keys[i].compareTo(other.keys[j])
+            }
+            when {
+                cmp < 0 -> {
+                    if (keepOwn) result.insertChunk(result.chunkCount, keys[i], containers[i]!!.copy())
+                    i++
+                }
+
+                cmp > 0 -> {
+                    if (keepOthers) result.insertChunk(result.chunkCount, other.keys[j], other.containers[j]!!.copy())
+                    j++
+                }
+
+                else -> {
+                    op(containers[i]!!, other.containers[j]!!)?.let { result.insertChunk(result.chunkCount, keys[i], it) }
+                    i++
+                    j++
+                }
+            }
+        }
+        return result
+    }
+
+    private fun insertChunk(index: Int, key: Int, container: Container) {
+        if (chunkCount == keys.size) {
+            keys = keys.copyOf(chunkCount * 2)
+            containers = containers.copyOf(chunkCount * 2)
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index)
+        System.arraycopy(containers, index, containers, index + 1, chunkCount - index)
+        keys[index] = key
+        containers[index] = container
+        ++chunkCount
+    }
+
+    private fun keyOf(instanceId: Long) = (instanceId ushr 16).toInt()
+
+    private fun lowOf(instanceId: Long) = (instanceId and 0xffff).toInt()
+}
+
+// chunks with at most this number of ids are kept as sorted arrays, denser ones as bitmaps
+private const val ARRAY_MAX_CARDINALITY = 4096
+
+private const val BITMAP_WORDS = 1024
+
+private sealed class Container {
+
+    abstract val cardinality: Int
+
+    abstract fun contains(low: Int): Boolean
+
+    /**
+     * Adds an id which is not in the container yet, returns either this container or a denser one.
+     */
+    abstract fun add(low: Int): Container
+
+    abstract fun lowIterator(): IntIterator
+
+    abstract fun copy(): Container
+
+    abstract fun words(): LongArray
+
+    infix fun or(other: Container): Container {
+        if (this is ArrayContainer && other is ArrayContainer &&
+            cardinality + other.cardinality <= ARRAY_MAX_CARDINALITY
+        ) {
+            return mergeArrays(this, other)
+        }
+        val words = words().copyOf()
+        val otherWords = other.words()
+        for (i in 0 until BITMAP_WORDS) {
+            words[i] = words[i] or otherWords[i]
+        }
+        return wordsToContainer(words)!!
+    }
+
+    infix fun and(other: Container): Container? {
+        return when {
+            this is ArrayContainer -> filter { other.contains(it) }
+            other is ArrayContainer -> other.filter { contains(it) }
+            else -> {
+                val words = words().copyOf()
+                val otherWords = other.words()
+                for (i in 0 until BITMAP_WORDS) {
+                    words[i] = words[i] and otherWords[i]
+                }
+                wordsToContainer(words)
+            }
+        }
+    }
+
+    infix fun andNot(other: Container): Container? {
+        if (this is ArrayContainer) {
+            return filter { !other.contains(it) }
+        }
+        val words = words().copyOf()
+        val otherWords = other.words()
+        for (i in 0 until BITMAP_WORDS) {
+            words[i] = words[i] and otherWords[i].inv()
+        }
+        return wordsToContainer(words)
+    }
+}
+
+private class ArrayContainer(
+    private var values: CharArray = CharArray(4),
+    override var cardinality: Int = 0
+) : Container() {
+
+    fun valueAt(index: Int): Int = values[index].code
+
+    override fun contains(low: Int): Boolean = values.binarySearch(low.toChar(), 0, cardinality) >= 0
+
+    override fun add(low: Int): Container {
+        if (cardinality >= ARRAY_MAX_CARDINALITY) {
+            return BitmapContainer(words(), cardinality).add(low)
+        }
+        val index = -values.binarySearch(low.toChar(), 0, cardinality) - 1
+        if (cardinality == values.size) {
+            values = values.copyOf(minOf(cardinality * 2, ARRAY_MAX_CARDINALITY))
+        }
+        System.arraycopy(values, index, values, index + 1, cardinality - index)
+        values[index] = low.toChar()
+        ++cardinality
+        return this
+    }
+
+    override fun lowIterator(): IntIterator = object : IntIterator() {
+        private var index = 0
+        override fun hasNext() = index < cardinality
+        override fun nextInt() = values[index++].code
+    }
+
+    override fun copy(): Container = ArrayContainer(values.copyOf(cardinality), cardinality)
+
+    override fun words(): LongArray {
+        val words = LongArray(BITMAP_WORDS)
+        for (i in 0 until cardinality) {
+            val low = values[i].code
+            words[low ushr 6] = words[low ushr 6] or (1L shl low)
+        }
+        return words
+    }
+
+    inline fun filter(predicate: (Int) -> Boolean): Container? {
+        val result = CharArray(cardinality)
+        var count = 0
+        for (i in 0 until cardinality) {
+            if (predicate(values[i].code)) {
+                result[count++] = values[i]
+            }
+        }
+        return if (count == 0) null else ArrayContainer(result, count)
+    }
+}
+
+private class BitmapContainer(
+    private val words: LongArray,
+    override var cardinality: Int
+) : Container() {
+
+    override fun contains(low: Int): Boolean = words[low ushr 6] and (1L shl low) != 0L
+
+    override fun add(low: Int): Container {
+        words[low ushr 6] = words[low ushr 6] or (1L shl low)
+        ++cardinality
+        return this
+    }
+
+    override fun lowIterator(): IntIterator = object : IntIterator() {
+        private var wordIndex = 0
+        private var word = words[0]
+
+        override fun hasNext(): Boolean {
+            while (word == 0L) {
+                if (++wordIndex == BITMAP_WORDS) return false
+                word = words[wordIndex]
+            }
+            return true
+        }
+
+        override fun nextInt(): Int {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            val bit = java.lang.Long.numberOfTrailingZeros(word)
+            word = word and (word - 1)
+            return (wordIndex shl 6) + bit
+        }
+    }
+
+    override fun copy(): Container = BitmapContainer(words.copyOf(), cardinality)
+
+    override fun words(): LongArray = words
+}
+
+private fun mergeArrays(a: ArrayContainer, b: ArrayContainer): Container {
+    val result = CharArray(a.cardinality + b.cardinality)
+    var i = 0
+    var j = 0
+    var count = 0
+    while (i < a.cardinality || j < b.cardinality) {
+        val x = if (i < a.cardinality) a.valueAt(i) else Int.MAX_VALUE
+        val y = if (j < b.cardinality) b.valueAt(j) else Int.MAX_VALUE
+        val min = minOf(x, y)
+        if (x == min) i++
+        if (y == min) j++
+        result[count++] = min.toChar()
+    }
+    return ArrayContainer(result, count)
+}
+
+private fun wordsToContainer(words: LongArray): Container? {
+    var cardinality = 0
+    words.forEach { cardinality += java.lang.Long.bitCount(it) }
+    return when {
+        cardinality == 0 -> null
+        cardinality > ARRAY_MAX_CARDINALITY -> BitmapContainer(words, cardinality)
+        else -> ArrayContainer(CharArray(cardinality), 0).also { array ->
+            BitmapContainer(words, cardinality).lowIterator().forEach { array.add(it) }
+        }
+    }
+}
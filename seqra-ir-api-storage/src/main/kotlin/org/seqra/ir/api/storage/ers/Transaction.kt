@@ -71,6 +71,23 @@ interface Transaction : Closeable {
 
     fun <T : Any> findEqOrGt(type: String, propertyName: String, value: T): EntityIterable
 
+    /**
+     * Returns entities of specified `type` having all specified properties equal to corresponding values.
+     * Values are compared the same way as by single-property [find], so a value that was set compressed
+     * should be passed compressed as well.
+     *
+     * Default implementation intersects results of single-property searches, storages are expected to
+     * do better using their indices.
+     */
+    fun find(type: String, properties: Map<String, Any>): EntityIterable {
+        if (properties.isEmpty()) {
+            return all(type)
+        }
+        return properties.entries
+            .map { (name, value) -> find(type, name, value) }
+            .reduce { result, found -> result * found }
+    }
+
     fun <T : Any> find(type: String, propertyName: String, value: T, option: FindOption): EntityIterable =
         when (option) {
             FindOption.Eq -> find(type, propertyName, value)
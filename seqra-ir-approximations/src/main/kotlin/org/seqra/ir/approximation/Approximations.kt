@@ -1,6 +1,7 @@
 package org.seqra.ir.approximation
 
 import org.seqra.ir.api.jvm.ByteCodeIndexer
+import org.seqra.ir.api.jvm.ClassParsingLevel
 import org.seqra.ir.api.jvm.JIRClassExtFeature
 import org.seqra.ir.api.jvm.JIRClassOrInterface
 import org.seqra.ir.api.jvm.JIRClasspath
@@ -55,6 +56,9 @@ class Approximations(
 
     private val versionMap: VersionMap = versions.associate { it.target to it.version }
 
+    // only annotations of classes are indexed
+    override val parsingLevel = ClassParsingLevel.DECLARATIONS
+
     override suspend fun query(classpath: JIRClasspath, req: Any?): Sequence<Any?> {
         // returns an empty sequence for now, all requests are made using
         // findApproximationOrNull and findOriginalByApproximation functions
@@ -0,0 +1,53 @@
+import org.seqra.common.KotlinDependency
+
+plugins {
+    id("kotlin-conventions")
+    jmh()
+}
+
+dependencies {
+    jmh(project(":seqra-ir-api-jvm"))
+    jmh(project(":seqra-ir-core"))
+    jmh(project(":seqra-ir-storage"))
+    jmh(testFixtures(project(":seqra-ir-core")))
+    jmh(KotlinDependency.Libs.kotlinx_coroutines_core)
+
+    // all ERS backends are compileOnly in core & storage, benchmarks need them at runtime
+    jmh(Libs.jooq)
+    jmh(Libs.sqlite)
+    jmh(Libs.hikaricp)
+    jmh(Libs.xodusEnvironment)
+    jmh(Libs.xodusUtils)
+    jmh(Libs.lmdb_java)
+    jmh(Libs.rocks_db)
+    jmh(Libs.guava)
+    jmh(TestDependencies.Libs.slf4j_simple)
+}
+
+jmh {
+    jmhVersion.set(Versions.jmh)
+    includeTests.set(false)
+    failOnError.set(true)
+    resultFormat.set("JSON")
+    // e.g. -Pjmh.includes=ClasspathLookup to run a single suite
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+    (project.findProperty("jmh.backends") as String?)?.let {
+        benchmarkParameters.put("backend", project.objects.listProperty(String::class.java).value(it.split(",")))
+    }
+    val majorJavaVersion = runtimeJavaVersion().substringBefore('.').toInt()
+    jvmArgs.set(
+        listOf("-Xmx8G") + if (majorJavaVersion >= 16) {
+            listOf(
+                "--add-opens", "java.base/java.nio=ALL-UNNAMED", // this is necessary for LMDB
+                "--add-opens", "java.base/sun.nio.ch=ALL-UNNAMED" // this is necessary for LMDB
+            )
+        } else {
+            emptyList()
+        }
+    )
+}
+
+// benchmarks are never published
+tasks.withType<AbstractPublishToMaven>().configureEach {
+    enabled = false
+}
@@ -0,0 +1,88 @@
+package org.seqra.ir.benchmarks
+
+import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.JIRDatabase
+import org.seqra.ir.api.jvm.JIRFeature
+import org.seqra.ir.api.jvm.JIRSettings
+import org.seqra.ir.impl.JIRErsSettings
+import org.seqra.ir.impl.JIRLmdbKvErsSettings
+import org.seqra.ir.impl.JIRRocksKvErsSettings
+import org.seqra.ir.impl.JIRSqlErsSettings
+import org.seqra.ir.impl.JIRXodusKvErsSettings
+import org.seqra.ir.impl.RamErsSettings
+import org.seqra.ir.impl.seqraIrDb
+import org.seqra.ir.impl.storage.ers.ram.RAM_ERS_SPI
+import org.seqra.ir.testing.allJars
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * ERS backends every benchmark suite is run against. Names are used as values of JMH `backend` parameter.
+ */
+enum class BenchmarkBackend {
+
+    RAM {
+        // in-RAM database can only be restored from an immutable dump
+        override fun JIRSettings.configure(location: Path) {
+            persistenceImpl(JIRErsSettings(RAM_ERS_SPI, RamErsSettings(immutableDumpsPath = location.toString())))
+        }
+    },
+
+    SQL {
+        override fun JIRSettings.configure(location: Path) {
+            persistent(location.resolve("ers.db").toString(), implSettings = JIRSqlErsSettings)
+        }
+    },
+
+    LMDB {
+        override fun JIRSettings.configure(location: Path) {
+            persistent(location.toString(), implSettings = JIRLmdbKvErsSettings)
+        }
+    },
+
+    ROCKS {
+        override fun JIRSettings.configure(location: Path) {
+            persistent(location.toString(), implSettings = JIRRocksKvErsSettings)
+        }
+    },
+
+    XODUS {
+        override fun JIRSettings.configure(location: Path) {
+            persistent(location.toString(), implSettings = JIRXodusKvErsSettings)
+        }
+    };
+
+    protected abstract fun JIRSettings.configure(location: Path)
+
+    /**
+     * Opens database stored at [location] (creating and indexing it if necessary) and waits till
+     * all background jobs are finished, i.e. till the database is ready for queries.
+     */
+    fun openDb(location: Path, vararg features: JIRFeature<*, *>): JIRDatabase = runBlocking {
+        seqraIrDb {
+            configure(location)
+            loadByteCode(benchmarkClasspath)
+            useProcessJavaRuntime()
+            keepLocalVariableNames()
+            installFeatures(*features)
+        }.also {
+            it.awaitBackgroundJobs()
+        }
+    }
+
+    fun newLocation(): Path = Files.createTempDirectory("jIRdb-benchmark-${name.lowercase()}-")
+}
+
+/**
+ * Application classpath benchmarks are run over. By default, it is the classpath of the benchmarks itself,
+ * can be overridden with `org.seqra.ir.benchmarks.classpath` system property.
+ */
+val benchmarkClasspath: List<File> by lazy {
+    val classpath = System.getProperty("org.seqra.ir.benchmarks.classpath")
+    classpath?.split(File.pathSeparatorChar)?.map { File(it) } ?: allJars
+}
+
+internal fun Path.deleteRecursively() {
+    toFile().deleteRecursively()
+}
@@ -0,0 +1,83 @@
+package org.seqra.ir.benchmarks
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.seqra.ir.api.jvm.JIRClasspath
+import java.util.concurrent.TimeUnit
+
+private const val LOOKUP_BATCH_SIZE = 1_000
+
+/**
+ * `findClassOrNull` and `findTypeOrNull` over a batch of class names.
+ *
+ * Warm variants reuse the same classpath, so all lookups are served from `ClasspathCache`.
+ * Cold variants create new classpath per invocation, so each lookup reaches persistence.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ClasspathLookupBenchmark {
+
+    private lateinit var warmCp: JIRClasspath
+    private lateinit var coldCp: JIRClasspath
+    private lateinit var names: List<String>
+
+    @Setup(Level.Trial)
+    fun setup(state: DbState) {
+        warmCp = state.newClasspath()
+        names = state.db.sampleClassNames(warmCp, LOOKUP_BATCH_SIZE)
+        names.forEach {
+            warmCp.findClassOrNull(it)
+            warmCp.findTypeOrNull(it)
+        }
+    }
+
+    @Setup(Level.Invocation)
+    fun setupColdClasspath(state: DbState) {
+        coldCp = state.newClasspath()
+    }
+
+    @Benchmark
+    fun findClassWarm(bh: Blackhole) {
+        names.forEach { bh.consume(warmCp.findClassOrNull(it)) }
+    }
+
+    @Benchmark
+    fun findTypeWarm(bh: Blackhole) {
+        names.forEach { bh.consume(warmCp.findTypeOrNull(it)) }
+    }
+
+    @Benchmark
+    fun findClassCold(bh: Blackhole) {
+        names.forEach { bh.consume(coldCp.findClassOrNull(it)) }
+    }
+
+    @Benchmark
+    fun findTypeCold(bh: Blackhole) {
+        names.forEach { bh.consume(coldCp.findTypeOrNull(it)) }
+    }
+
+    @TearDown(Level.Invocation)
+    fun closeColdClasspath() {
+        coldCp.close()
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        warmCp.close()
+    }
+}
@@ -0,0 +1,149 @@
+package org.seqra.ir.benchmarks
+
+import org.objectweb.asm.tree.ClassNode
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.seqra.ir.api.jvm.ByteCodeIndexer
+import org.seqra.ir.api.jvm.ClassParsingLevel
+import org.seqra.ir.api.jvm.JIRClasspath
+import org.seqra.ir.api.jvm.JIRDatabase
+import org.seqra.ir.api.jvm.JIRFeature
+import org.seqra.ir.api.jvm.JIRSignal
+import org.seqra.ir.api.jvm.RegisteredLocation
+import org.seqra.ir.api.storage.StorageContext
+import org.seqra.ir.impl.features.InMemoryHierarchy
+import org.seqra.ir.impl.features.Usages
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Indexing of the JRE and application classpath into an empty storage.
+ * [parallelism] is the number of threads used by background indexing jobs.
+ * Number of classes parsed for indexing is reported by [ClassParsingCounters].
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DatabaseLoadBenchmark {
+
+    @Param("RAM", "SQL", "LMDB", "ROCKS", "XODUS")
+    lateinit var backend: String
+
+    @Param("1", "4", "16")
+    lateinit var parallelism: String
+
+    private lateinit var location: Path
+    private var db: JIRDatabase? = null
+
+    @Setup(Level.Invocation)
+    fun setup() {
+        System.setProperty("org.seqra.ir.background.parallelism", parallelism)
+        location = BenchmarkBackend.valueOf(backend).newLocation()
+    }
+
+    @Benchmark
+    fun load(counters: ClassParsingCounters): JIRDatabase {
+        return BenchmarkBackend.valueOf(backend)
+            .openDb(location, Usages, InMemoryHierarchy(), counters.feature)
+            .also { db = it }
+    }
+
+    @TearDown(Level.Invocation)
+    fun tearDown() {
+        db?.close()
+        db = null
+        location.deleteRecursively()
+    }
+}
+
+/**
+ * Number of classes parsed from byte-code for indexing during an iteration, reported as an auxiliary counter.
+ * Each class is parsed once for both persistence and indexers, so classes are counted by [feature]
+ * installed into the database. Indexing is done by background threads, hence [LongAdder].
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+open class ClassParsingCounters {
+
+    private val parsed = LongAdder()
+
+    val feature: JIRFeature<Unit, Unit> = object : JIRFeature<Unit, Unit> {
+
+        // doesn't make other features' classes parsed deeper
+        override val parsingLevel = ClassParsingLevel.DECLARATIONS
+
+        override suspend fun query(classpath: JIRClasspath, req: Unit): Sequence<Unit> = emptySequence()
+
+        override fun newIndexer(jIRdb: JIRDatabase, location: RegisteredLocation) = object : ByteCodeIndexer {
+            override fun index(classNode: ClassNode) = parsed.increment()
+
+            override fun flush(context: StorageContext) = Unit
+        }
+
+        override fun onSignal(signal: JIRSignal) = Unit
+    }
+
+    fun parsedClasses(): Long = parsed.sum()
+
+    @Setup(Level.Iteration)
+    fun setup() {
+        parsed.reset()
+    }
+}
+
+/**
+ * Restoring of a database that is already persisted, i.e. [org.seqra.ir.impl.JIRDatabaseImpl.restore].
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DatabaseRestoreBenchmark {
+
+    @Param("RAM", "SQL", "LMDB", "ROCKS", "XODUS")
+    lateinit var backend: String
+
+    private lateinit var location: Path
+    private var db: JIRDatabase? = null
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val backend = BenchmarkBackend.valueOf(backend)
+        location = backend.newLocation()
+        backend.openDb(location, Usages, InMemoryHierarchy()).close()
+    }
+
+    @Benchmark
+    fun restore(): JIRDatabase {
+        return BenchmarkBackend.valueOf(backend).openDb(location, Usages, InMemoryHierarchy()).also { db = it }
+    }
+
+    @TearDown(Level.Invocation)
+    fun closeDb() {
+        db?.close()
+        db = null
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        location.deleteRecursively()
+    }
+}
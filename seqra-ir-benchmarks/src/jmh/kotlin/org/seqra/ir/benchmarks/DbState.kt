@@ -0,0 +1,60 @@
+package org.seqra.ir.benchmarks
+
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.seqra.ir.api.jvm.JIRClasspath
+import org.seqra.ir.api.jvm.JIRDatabase
+import org.seqra.ir.impl.features.InMemoryHierarchy
+import org.seqra.ir.impl.features.Usages
+import java.nio.file.Path
+import kotlin.random.Random
+
+/**
+ * Indexed database shared by all benchmarks of a trial.
+ */
+@State(Scope.Benchmark)
+open class DbState {
+
+    @Param("RAM", "SQL", "LMDB", "ROCKS", "XODUS")
+    lateinit var backend: String
+
+    lateinit var db: JIRDatabase
+    private lateinit var location: Path
+
+    val hierarchy = InMemoryHierarchy()
+
+    @Setup(Level.Trial)
+    fun setup() {
+        val backend = BenchmarkBackend.valueOf(backend)
+        location = backend.newLocation()
+        db = backend.openDb(location, Usages, hierarchy)
+    }
+
+    fun newClasspath(): JIRClasspath = runBlocking {
+        db.classpath(benchmarkClasspath)
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        db.close()
+        location.deleteRecursively()
+    }
+}
+
+/**
+ * Deterministic sample of at most [size] class names available in [classpath].
+ */
+fun JIRDatabase.sampleClassNames(classpath: JIRClasspath, size: Int): List<String> {
+    return classpath.registeredLocations
+        .flatMap { persistence.findClassSources(this, it) }
+        .map { it.className }
+        .distinct()
+        .sorted()
+        .shuffled(Random(42))
+        .take(size)
+}
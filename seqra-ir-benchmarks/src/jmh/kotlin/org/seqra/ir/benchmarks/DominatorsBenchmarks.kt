@@ -0,0 +1,102 @@
+package org.seqra.ir.benchmarks
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.seqra.ir.api.common.cfg.BytecodeGraph
+import org.seqra.ir.impl.cfg.graphs.CytronDominanceFrontier
+import org.seqra.ir.impl.cfg.graphs.DominatorsTree
+import org.seqra.ir.impl.cfg.graphs.GraphDominators
+import org.seqra.ir.impl.cfg.graphs.findDominators
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Dominators of huge methods. Graphs are synthetic: a chain of instructions with nested
+ * branches, loops and forward jumps, which is what generated code with 10k+ instructions looks like.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class DominatorsBenchmark {
+
+    @Param("10000", "50000")
+    var size: Int = 0
+
+    private lateinit var graph: BytecodeGraph<Int>
+    private lateinit var dominators: GraphDominators<Int>
+
+    @Setup(Level.Trial)
+    fun setup() {
+        graph = SyntheticGraph.generate(size, Random(size))
+        dominators = graph.findDominators()
+    }
+
+    @Benchmark
+    fun findDominators(): GraphDominators<Int> {
+        return graph.findDominators()
+    }
+
+    @Benchmark
+    fun immediateDominators(bh: Blackhole) {
+        graph.instructions.forEach { bh.consume(dominators.immediateDominator(it)) }
+    }
+
+    @Benchmark
+    fun dominanceFrontier(): CytronDominanceFrontier<Int> {
+        return CytronDominanceFrontier(DominatorsTree(dominators))
+    }
+}
+
+private class SyntheticGraph(
+    size: Int,
+    private val successors: Array<MutableSet<Int>>,
+    private val predecessors: Array<MutableSet<Int>>
+) : BytecodeGraph<Int> {
+
+    override val instructions: List<Int> = (0 until size).toList()
+    override val entries: List<Int> = listOf(0)
+    override val exits: List<Int> = instructions.filter { successors[it].isEmpty() }
+
+    override fun successors(node: Int): Set<Int> = successors[node]
+    override fun predecessors(node: Int): Set<Int> = predecessors[node]
+    override fun throwers(node: Int): Set<Int> = emptySet()
+    override fun catchers(node: Int): Set<Int> = emptySet()
+
+    companion object {
+
+        fun generate(size: Int, random: Random): SyntheticGraph {
+            val successors = Array(size) { hashSetOf<Int>() }
+            val predecessors = Array(size) { hashSetOf<Int>() }
+            fun edge(from: Int, to: Int) {
+                successors[from].add(to)
+                predecessors[to].add(from)
+            }
+            for (i in 0 until size - 1) {
+                edge(i, i + 1)
+                when (random.nextInt(10)) {
+                    // branch over a short block
+                    0, 1, 2 -> edge(i, minOf(size - 1, i + 2 + random.nextInt(8)))
+                    // long forward jump
+                    3 -> edge(i, minOf(size - 1, i + 2 + random.nextInt(size / 10)))
+                    // loop back edge
+                    4 -> edge(i, maxOf(0, i - 1 - random.nextInt(32)))
+                }
+            }
+            return SyntheticGraph(size, successors, predecessors)
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.seqra.ir.benchmarks
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.seqra.ir.api.jvm.JIRClasspath
+import org.seqra.ir.impl.features.InMemoryHierarchyReq
+import java.util.concurrent.TimeUnit
+
+/**
+ * [org.seqra.ir.impl.features.InMemoryHierarchy.syncQuery] for classes with deep and wide hierarchies.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class InMemoryHierarchyBenchmark {
+
+    @Param("java.lang.Object", "java.util.Collection", "java.lang.Runnable", "java.lang.Exception")
+    lateinit var className: String
+
+    private lateinit var cp: JIRClasspath
+
+    @Setup(Level.Trial)
+    fun setup(state: DbState) {
+        cp = state.newClasspath()
+    }
+
+    @Benchmark
+    fun directSubclasses(state: DbState, bh: Blackhole) {
+        state.hierarchy.syncQuery(cp, InMemoryHierarchyReq(className, allHierarchy = false)).forEach { bh.consume(it) }
+    }
+
+    @Benchmark
+    fun allSubclasses(state: DbState, bh: Blackhole) {
+        state.hierarchy.syncQuery(cp, InMemoryHierarchyReq(className)).forEach { bh.consume(it) }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        cp.close()
+    }
+}
@@ -0,0 +1,71 @@
+package org.seqra.ir.benchmarks
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import org.seqra.ir.api.jvm.JIRClasspath
+import org.seqra.ir.api.jvm.JIRMethod
+import org.seqra.ir.impl.features.classpaths.MethodInstructionsFeature
+import java.util.concurrent.TimeUnit
+
+private const val CLASSES_BATCH_SIZE = 200
+
+/**
+ * Each IR stage of [MethodInstructionsFeature] is measured in isolation: feature is called directly, so
+ * result of the measured stage is never served from cache, while results of previous stages are.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class MethodInstructionsBenchmark {
+
+    private val feature = MethodInstructionsFeature(keepLocalVariableNames = true)
+
+    private lateinit var cp: JIRClasspath
+    private lateinit var methods: List<JIRMethod>
+
+    @Setup(Level.Trial)
+    fun setup(state: DbState) {
+        cp = state.newClasspath()
+        methods = state.db.sampleClassNames(cp, CLASSES_BATCH_SIZE)
+            .mapNotNull { cp.findClassOrNull(it) }
+            .flatMap { it.declaredMethods }
+            .filter { !it.isAbstract && !it.isNative }
+        methods.forEach {
+            it.flowGraph()
+        }
+    }
+
+    @Benchmark
+    fun rawInstList(bh: Blackhole) {
+        methods.forEach { bh.consume(feature.rawInstList(it).rawInstList) }
+    }
+
+    @Benchmark
+    fun instList(bh: Blackhole) {
+        methods.forEach { bh.consume(feature.instList(it).instList) }
+    }
+
+    @Benchmark
+    fun flowGraph(bh: Blackhole) {
+        methods.forEach { bh.consume(feature.flowGraph(it).flowGraph) }
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        cp.close()
+    }
+}
@@ -43,6 +43,7 @@ dependencies {
     implementation(KotlinDependency.Libs.kotlinx_serialization_core)
     implementation(Libs.jdot)
     implementation(Libs.guava)
+    implementation(Libs.caffeine)
     implementation(Libs.xodusUtils)
 
     testImplementation(testFixtures(project(":seqra-ir-storage")))
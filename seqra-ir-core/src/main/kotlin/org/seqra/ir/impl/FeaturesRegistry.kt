@@ -2,7 +2,9 @@ package org.seqra.ir.impl
 
 import kotlinx.collections.immutable.toPersistentList
 import org.seqra.ir.api.jvm.*
+import org.seqra.ir.impl.fs.ParsedClassSource
 import org.seqra.ir.impl.fs.fullAsmNode
+import org.seqra.ir.impl.fs.parsed
 import org.objectweb.asm.tree.ClassNode
 import java.io.Closeable
 
@@ -10,18 +12,32 @@ class FeaturesRegistry(features: List<JIRFeature<*, *>>) : Closeable {
 
     val features = features.toPersistentList()
 
+    private val parsingLevel = features.maxOfOrNull { it.parsingLevel } ?: ClassParsingLevel.DECLARATIONS
+
     private lateinit var jIRdb: JIRDatabase
 
     fun bind(jIRdb: JIRDatabase) {
         this.jIRdb = jIRdb
     }
 
+    /**
+     * Parses classes once at the deepest level required by installed features, so both persistence
+     * and all indexers use the same result.
+     */
+    fun parse(classes: List<ClassSource>): List<ClassSource> {
+        return classes.map { it.parsed(parsingLevel) }
+    }
+
     fun index(location: RegisteredLocation, classes: List<ClassSource>) {
         val classNodes = hashMapOf<ClassSource, ClassNode>()
         features.forEach { feature ->
             feature.index(location, classes) { source ->
-                classNodes.getOrPut(source) {
-                    source.fullAsmNode
+                if (source is ParsedClassSource) {
+                    source.classNode
+                } else {
+                    classNodes.getOrPut(source) {
+                        source.fullAsmNode
+                    }
                 }
             }
         }
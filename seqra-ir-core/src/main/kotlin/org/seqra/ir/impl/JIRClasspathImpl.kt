@@ -1,9 +1,14 @@
 package org.seqra.ir.impl
 
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.produce
+import kotlinx.coroutines.ensureActive
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.api.jvm.JIRAnnotation
@@ -19,6 +24,7 @@ import org.seqra.ir.api.jvm.JIRClasspathTask
 import org.seqra.ir.api.jvm.JIRFeatureEvent
 import org.seqra.ir.api.jvm.JIRRefType
 import org.seqra.ir.api.jvm.JIRType
+import org.seqra.ir.api.jvm.JIRWarmUpListener
 import org.seqra.ir.api.jvm.PredefinedPrimitives
 import org.seqra.ir.api.jvm.RegisteredLocation
 import org.seqra.ir.api.jvm.ext.JAVA_OBJECT
@@ -35,10 +41,12 @@ import org.seqra.ir.impl.features.classpaths.UnknownClasses
 import org.seqra.ir.impl.features.classpaths.isResolveAllToUnknown
 import org.seqra.ir.impl.fs.ClassSourceImpl
 import org.seqra.ir.impl.types.JIRArrayTypeImpl
+import org.seqra.ir.impl.types.InheritedMembers
 import org.seqra.ir.impl.types.JIRClassTypeImpl
 import org.seqra.ir.impl.types.substition.JIRSubstitutorImpl
 import org.seqra.ir.impl.vfs.ClasspathVfs
 import org.seqra.ir.impl.vfs.GlobalClassesVfs
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.LazyThreadSafetyMode.PUBLICATION
 
 class JIRClasspathImpl(
@@ -114,6 +122,17 @@ class JIRClasspathImpl(
         } ?: newClassOrInterface(source)
     }
 
+    private val subtypeOracle = SubtypeOracle(this)
+
+    override fun isSubClassOf(subClass: JIRClassOrInterface, superClass: JIRClassOrInterface): Boolean {
+        if (subClass is JIRClassOrInterfaceImpl && superClass is JIRClassOrInterfaceImpl) {
+            return subtypeOracle.isSubClassOf(subClass, superClass)
+        }
+        return super.isSubClassOf(subClass, superClass)
+    }
+
+    internal val inheritedMembers = InheritedMembers()
+
     private val javaObjectType: JIRType? by lazy(PUBLICATION) {
         findTypeOrNullWithNullability(JAVA_OBJECT)
     }
@@ -128,12 +147,7 @@ class JIRClasspathImpl(
             val parentScope = this
             locations.map {
                 async {
-                    val sources = db.persistence.findClassSources(db, it)
-                        .takeIf { it.isNotEmpty() } ?: it.jIRLocation?.classes?.map { entry ->
-                        ClassSourceImpl(location = it, className = entry.key, byteCode = entry.value)
-                    } ?: emptyList()
-
-                    sources.forEach {
+                    classSourcesOf(it).forEach {
                         if (parentScope.isActive && task.shouldProcess(it)) {
                             task.process(it, this@JIRClasspathImpl)
                         }
@@ -145,6 +159,67 @@ class JIRClasspathImpl(
         return task
     }
 
+    override suspend fun warmUp(
+        classes: Collection<JIRClassOrInterface>,
+        listener: JIRWarmUpListener,
+        parallelism: Int
+    ) {
+        warmUp(classes.size, classes.asSequence().map { clazz -> clazz.name to { clazz } }, listener, parallelism)
+    }
+
+    override suspend fun warmUp(location: RegisteredLocation, listener: JIRWarmUpListener, parallelism: Int) {
+        val sources = classSourcesOf(location)
+        val classes = sources.asSequence().map { source -> source.className to { toJIRClass(source) } }
+        warmUp(sources.size, classes, listener, parallelism)
+    }
+
+    /**
+     * Classes are passed to [parallelism] workers through a bounded channel, so only a few of them are
+     * loaded at a time regardless of [total].
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private suspend fun warmUp(
+        total: Int,
+        classes: Sequence<Pair<String, () -> JIRClassOrInterface>>,
+        listener: JIRWarmUpListener,
+        parallelism: Int
+    ) {
+        require(parallelism > 0) { "parallelism should be positive: $parallelism" }
+        val processed = AtomicInteger()
+        withContext(Dispatchers.IO.limitedParallelism(parallelism)) {
+            val channel = produce(capacity = parallelism) {
+                classes.forEach { send(it) }
+            }
+            repeat(parallelism) {
+                launch {
+                    for ((className, classOf) in channel) {
+                        val clazz = try {
+                            classOf().also { it.declaredMethods }
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Throwable) {
+                            listener.onClassFailed(className, e, processed.incrementAndGet(), total)
+                            continue
+                        }
+                        clazz.declaredMethods.forEach { method ->
+                            ensureActive()
+                            if (!method.isAbstract && !method.isNative) {
+                                try {
+                                    method.flowGraph()
+                                } catch (e: CancellationException) {
+                                    throw e
+                                } catch (e: Throwable) {
+                                    listener.onMethodFailed(method, e)
+                                }
+                            }
+                        }
+                        listener.onClassProcessed(clazz, processed.incrementAndGet(), total)
+                    }
+                }
+            }
+        }
+    }
+
     override fun findClasses(name: String): Set<JIRClassOrInterface> {
         return featuresChain.features.filterIsInstance<JIRClasspathExtFeature>().flatMap { feature ->
             feature.findClasses(this, name).orEmpty()
@@ -180,6 +255,13 @@ class JIRClasspathImpl(
         )
     }
 
+    private fun classSourcesOf(location: RegisteredLocation): List<ClassSource> {
+        return db.persistence.findClassSources(db, location)
+            .takeIf { it.isNotEmpty() } ?: location.jIRLocation?.classes?.map { entry ->
+            ClassSourceImpl(location = location, className = entry.key, byteCode = entry.value)
+        } ?: emptyList()
+    }
+
     private fun newClassOrInterface(source: ClassSource) = JIRClassOrInterfaceImpl(this, source, featuresChain)
 
     private fun findCachedClass(name: String): JIRClassOrInterface? {
@@ -3,6 +3,7 @@ package org.seqra.ir.impl
 import com.google.common.hash.Hashing
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
@@ -10,8 +11,10 @@ import kotlinx.coroutines.cancel
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.channels.produce
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.withContext
 import org.seqra.ir.api.jvm.JavaVersion
 import org.seqra.ir.api.jvm.JIRByteCodeLocation
@@ -27,12 +30,15 @@ import org.seqra.ir.impl.features.classpaths.KotlinMetadata
 import org.seqra.ir.impl.features.classpaths.MethodInstructionsFeature
 import org.seqra.ir.impl.features.classpaths.UnknownClassMethodsAndFields
 import org.seqra.ir.impl.features.classpaths.UnknownClasses
+import org.seqra.ir.impl.fs.JarFilesPool
 import org.seqra.ir.impl.fs.JavaRuntime
 import org.seqra.ir.impl.fs.asByteCodeLocation
 import org.seqra.ir.impl.fs.filterExisting
 import org.seqra.ir.impl.fs.lazySources
-import org.seqra.ir.impl.fs.sources
+import org.seqra.ir.impl.fs.sourceChunks
 import org.seqra.ir.impl.storage.ers.ERS_DATABASE_PERSISTENCE_SPI
+import org.seqra.ir.impl.storage.ers.ErsPersistenceImpl
+import org.seqra.ir.impl.storage.ers.ErsRawInstListStore
 import org.seqra.ir.impl.vfs.GlobalClassesVfs
 import org.seqra.ir.impl.vfs.RemoveLocationsVisitor
 import java.io.File
@@ -46,6 +52,14 @@ class JIRDatabaseImpl(
     private val settings: JIRSettings
 ) : JIRDatabase {
 
+    companion object {
+        private val processingChunkSize = Integer.getInteger("org.seqra.ir.impl.processingChunkSize", 1_000)
+        private val maxChunksInProgress = Integer.getInteger(
+            "org.seqra.ir.impl.maxProcessingChunks",
+            2 * Runtime.getRuntime().availableProcessors()
+        )
+    }
+
     override val persistence: JIRDatabasePersistence
     internal val featuresRegistry: FeaturesRegistry
     internal val locationsRegistry: LocationsRegistry
@@ -66,20 +80,36 @@ class JIRDatabaseImpl(
 
     private val featuresHash: BigInteger
 
+    private val rawInstListStore: ErsRawInstListStore?
+
     init {
         val persistenceId = (settings.persistenceId ?: ERS_DATABASE_PERSISTENCE_SPI)
         val persistenceSPI = JIRDatabasePersistenceSPI.getProvider(persistenceId)
         persistence = persistenceSPI.newPersistence(javaRuntime, settings)
         featuresRegistry = FeaturesRegistry(settings.features).apply { bind(this@JIRDatabaseImpl) }
         locationsRegistry = persistenceSPI.newLocationsRegistry(this)
+        rawInstListStore = (persistence as? ErsPersistenceImpl)
+            ?.takeIf { settings.persistRawInstLists }
+            ?.let { ErsRawInstListStore(it, settings.keepLocalVariableNames, backgroundScope) }
         featuresHash = settings.features.fold(BigInteger.ZERO) { result, feature ->
             result xor BigInteger(Hashing.sha256().hashString(feature.javaClass.name, StandardCharsets.UTF_8).asBytes())
         }
     }
 
+    // id calculated for the list of locations, the list is the same until registered locations are changed
+    @Volatile
+    private var cachedId: Pair<List<RegisteredLocation>, String>? = null
+
     override val id: String
-        get() = locations.mapNotNull { it.jIRLocation?.fileSystemIdHash }
-            .fold(featuresHash) { result, hash -> result xor hash }.toString(Character.MAX_RADIX)
+        get() {
+            val currentLocations = locations
+            cachedId?.let { (idLocations, id) ->
+                if (idLocations === currentLocations) return id
+            }
+            return currentLocations.mapNotNull { it.jIRLocation?.fileSystemIdHash }
+                .fold(featuresHash) { result, hash -> result xor hash }.toString(Character.MAX_RADIX)
+                .also { cachedId = currentLocations to it }
+        }
 
     override val locations: List<RegisteredLocation> get() = locationsRegistry.actualLocations
 
@@ -94,6 +124,7 @@ class JIRDatabaseImpl(
         ).new
         if (canBeDumped() && persistence.tryLoad(id)) {
             isImmutable = true
+            locationsRegistry.invalidate()
         }
         featuresRegistry.broadcast(JIRInternalSignal.BeforeIndexing(settings.persistenceClearOnStart ?: false))
         if (!isImmutable) {
@@ -109,7 +140,7 @@ class JIRDatabaseImpl(
                 result += ClasspathCache(settings.cacheSettings)
             }
             result += KotlinMetadata
-            result += MethodInstructionsFeature(settings.keepLocalVariableNames)
+            result += MethodInstructionsFeature(settings.keepLocalVariableNames, rawInstListStore)
             if (result.any { it is UnknownClasses } && !result.any { it is UnknownClassMethodsAndFields }) {
                 result += UnknownClassMethodsAndFields
             }
@@ -198,6 +229,7 @@ class JIRDatabaseImpl(
         if (!isImmutable) {
             backgroundJobs.values.joinAll()
             if (canBeDumped()) {
+                rawInstListStore?.flush()
                 persistence.setImmutable(id)
                 isImmutable = true
             }
@@ -222,6 +254,7 @@ class JIRDatabaseImpl(
     override suspend fun setImmutable() {
         if (!isImmutable) {
             backgroundJobs.values.joinAll()
+            rawInstListStore?.flush()
             persistence.setImmutable(id)
             isImmutable = true
         }
@@ -229,12 +262,16 @@ class JIRDatabaseImpl(
 
     override fun close() {
         isClosed = true
+        val locationPaths = locationsRegistry.actualLocations.mapTo(HashSet()) { it.path }
         locationsRegistry.close()
         runBlocking {
             cancelBackgroundJobs()
         }
         classesVfs.close()
+        // jars are kept open between reads, but not after database is closed
+        JarFilesPool.close(locationPaths)
         backgroundScope.cancel()
+        rawInstListStore?.flush()
         persistence.close()
         hooks.forEach { it.afterStop() }
     }
@@ -247,6 +284,7 @@ class JIRDatabaseImpl(
                     }
         }
 
+    @OptIn(ExperimentalCoroutinesApi::class)
     private suspend fun List<RegisteredLocation>.process(createIndexes: Boolean): List<RegisteredLocation> {
         if (isEmpty()) {
             return this
@@ -265,10 +303,31 @@ class JIRDatabaseImpl(
         val backgroundJobId = jobId.incrementAndGet()
         backgroundJobs[backgroundJobId] = backgroundScope.launch {
             val parentScope = this
+            // limits number of chunks read but not yet persisted & indexed, so reading can't outrun writing
+            val chunksInProgress = Semaphore(maxChunksInProgress)
             map { location ->
                 async {
-                    val sources = location.sources
-                    parentScope.ifActive { persistence.persist(location, sources) }
+                    val chunks = produce(capacity = 1) {
+                        location.sourceChunks(processingChunkSize).forEach { chunk ->
+                            if (chunk.isNotEmpty()) {
+                                chunksInProgress.acquire()
+                                try {
+                                    send(featuresRegistry.parse(chunk))
+                                } catch (e: Throwable) {
+                                    chunksInProgress.release()
+                                    throw e
+                                }
+                            }
+                        }
+                    }
+                    for (chunk in chunks) {
+                        try {
+                            parentScope.ifActive { persistence.persist(location, chunk) }
+                            parentScope.ifActive { featuresRegistry.index(location, chunk) }
+                        } finally {
+                            chunksInProgress.release()
+                        }
+                    }
                     parentScope.ifActive {
                         classesVfs.visit(
                             RemoveLocationsVisitor(
@@ -277,13 +336,14 @@ class JIRDatabaseImpl(
                             )
                         )
                     }
-                    parentScope.ifActive { featuresRegistry.index(location, sources) }
                 }
             }.joinAll()
             if (createIndexes) {
                 persistence.createIndexes()
             }
             locationsRegistry.afterProcessing(this@process)
+            // processed jars are read through, they are opened again only if classes are read from them later
+            JarFilesPool.close(this@process.mapTo(HashSet()) { it.path })
             backgroundJobs.remove(backgroundJobId)
         }
         return this
@@ -8,7 +8,6 @@ import org.seqra.ir.impl.storage.ers.ERS_DATABASE_PERSISTENCE_SPI
 import org.seqra.ir.impl.storage.ers.kv.KV_ERS_SPI
 import org.seqra.ir.impl.storage.ers.ram.RAM_ERS_SPI
 import org.seqra.ir.impl.storage.ers.sql.SQL_ERS_SPI
-import org.seqra.ir.impl.storage.kv.rocks.ROCKS_KEY_VALUE_STORAGE_SPI
 import org.seqra.ir.impl.storage.kv.xodus.XODUS_KEY_VALUE_STORAGE_SPI
 
 object JIRSQLitePersistenceSettings : JIRPersistenceImplSettings {
@@ -31,7 +30,12 @@ object JIRSqlErsSettings : JIRErsSettings(SQL_ERS_SPI)
 
 object JIRXodusKvErsSettings : JIRErsSettings(KV_ERS_SPI, JIRKvErsSettings(XODUS_KEY_VALUE_STORAGE_SPI))
 
-object JIRRocksKvErsSettings : JIRErsSettings(KV_ERS_SPI, JIRKvErsSettings(ROCKS_KEY_VALUE_STORAGE_SPI))
+object JIRRocksKvErsSettings : JIRErsSettings(KV_ERS_SPI, JIRRocksErsSettings()) {
+
+    fun withSettings(rocksSettings: JIRRocksErsSettings): JIRErsSettings {
+        return JIRErsSettings(KV_ERS_SPI, rocksSettings)
+    }
+}
 
 object JIRLmdbKvErsSettings : JIRErsSettings(KV_ERS_SPI, JIRLmdbErsSettings()) {
 
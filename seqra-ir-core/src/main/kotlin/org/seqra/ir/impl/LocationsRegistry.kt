@@ -24,6 +24,11 @@ interface LocationsRegistry : Closeable {
 
     fun close(snapshot: LocationsRegistrySnapshot)
 
+    /**
+     * Drops everything cached about registered locations, e.g. after persistence is loaded from a dump.
+     */
+    fun invalidate()
+
     fun RegisteredLocation.hasReferences(snapshots: Set<LocationsRegistrySnapshot>): Boolean {
         return snapshots.isNotEmpty() && snapshots.any { it.ids.contains(id) }
     }
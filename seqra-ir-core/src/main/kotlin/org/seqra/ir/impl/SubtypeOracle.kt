@@ -0,0 +1,69 @@
+package org.seqra.ir.impl
+
+import org.seqra.ir.api.jvm.JIRClassOrInterface
+import org.seqra.ir.api.jvm.JIRClasspath
+import org.seqra.ir.api.jvm.ext.JAVA_OBJECT
+import org.seqra.ir.impl.bytecode.JIRClassOrInterfaceImpl
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Answers subtype checks for classes of a classpath without walking class hierarchy each time.
+ *
+ * Each class gets a number on first use, and for each class sorted numbers of all its ancestors are computed
+ * once from ancestors of its superclass and interfaces. So hierarchy is built incrementally as classes
+ * are resolved, and a check is a lookup in the array of ancestors, both for positive and negative answers.
+ *
+ * Classes are identified by name and location, not by instances, so cached classes of the classpath
+ * are not held by the oracle.
+ */
+internal class SubtypeOracle(private val classpath: JIRClasspath) {
+
+    private data class ClassKey(val name: String, val locationId: Long)
+
+    private val ids = ConcurrentHashMap<ClassKey, Int>()
+    private val idGen = AtomicInteger()
+    private val ancestors = ConcurrentHashMap<ClassKey, IntArray>()
+
+    fun isSubClassOf(subClass: JIRClassOrInterfaceImpl, superClass: JIRClassOrInterfaceImpl): Boolean {
+        if (superClass.name == JAVA_OBJECT && superClass == classpath.findClassOrNull(JAVA_OBJECT)) {
+            return true
+        }
+        if (subClass == superClass) {
+            return true
+        }
+        if (subClass.isInterface && !superClass.isInterface) {
+            return false
+        }
+        return ancestorsOf(subClass).binarySearch(idOf(superClass.key)) >= 0
+    }
+
+    private fun ancestorsOf(clazz: JIRClassOrInterfaceImpl): IntArray {
+        val key = clazz.key
+        ancestors[key]?.let { return it }
+        val result = hashSetOf(idOf(key))
+        clazz.superClass?.let { collectAncestors(it, result) }
+        clazz.interfaces.forEach { collectAncestors(it, result) }
+        val sorted = result.toIntArray().apply { sort() }
+        return ancestors.putIfAbsent(key, sorted) ?: sorted
+    }
+
+    private fun collectAncestors(clazz: JIRClassOrInterface, result: MutableSet<Int>) {
+        if (clazz is JIRClassOrInterfaceImpl) {
+            ancestorsOf(clazz).forEach { result.add(it) }
+        } else {
+            // e.g. virtual class, it has no stable identity but its ancestors may have one
+            clazz.superClass?.let { collectAncestors(it, result) }
+            clazz.interfaces.forEach { collectAncestors(it, result) }
+        }
+    }
+
+    private fun idOf(key: ClassKey): Int {
+        ids[key]?.let { return it }
+        val id = idGen.getAndIncrement()
+        return ids.putIfAbsent(key, id) ?: id
+    }
+
+    private val JIRClassOrInterfaceImpl.key: ClassKey
+        get() = ClassKey(name, declaration.location.id)
+}
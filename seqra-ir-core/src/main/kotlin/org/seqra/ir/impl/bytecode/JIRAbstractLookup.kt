@@ -15,7 +15,12 @@ abstract class JIRAbstractLookup<Entry : JIRAccessible, Result : JIRAccessible>(
     abstract fun Entry.next(): List<Entry>
     abstract val Entry.elements: List<Result>
 
-    protected open fun lookupElement(en: Entry): Result? = en.elements.firstOrNull { matches(it) }
+    /**
+     * Elements of [en] which may satisfy [predicate] in the same order as in [elements], by default all of them
+     */
+    protected open fun candidates(en: Entry): List<Result> = en.elements
+
+    protected open fun lookupElement(en: Entry): Result? = candidates(en).firstOrNull { matches(it) }
 
     private fun transit(entry: Entry, searchPrivate: Boolean) {
         this.entry = entry
@@ -5,20 +5,39 @@ import org.seqra.ir.api.jvm.ext.packageName
 
 class JIRClassLookupImpl(val clazz: JIRClassOrInterface) : JIRLookup<JIRField, JIRMethod> {
 
+    // members of virtual classes can be changed, so only lookups of regular classes are memoized
+    private val isImmutable = clazz is JIRClassOrInterfaceImpl
+    private val fields = ResolvedMembers<JIRField>()
+    private val methods = ResolvedMembers<JIRMethod>()
+    private val staticMethods = ResolvedMembers<JIRMethod>()
+    private val specialMethods = ResolvedMembers<JIRMethod>()
+
     override fun field(name: String, typeName: TypeName?, fieldKind: JIRLookup.FieldKind): JIRField? {
-        return JIRClassLookup.JIRFieldLookup(clazz, name, fieldKind).lookup()
+        return fields.resolve("$name:$fieldKind") {
+            JIRClassLookup.JIRFieldLookup(clazz, name, fieldKind).lookup()
+        }
     }
 
     override fun method(name: String, description: String): JIRMethod? {
-        return JIRClassLookup.JIRMethodLookup(clazz, name, description).lookup()
+        return methods.resolve(methodKey(name, description)) {
+            JIRClassLookup.JIRMethodLookup(clazz, name, description).lookup()
+        }
     }
 
     override fun staticMethod(name: String, description: String): JIRMethod? {
-        return JIRClassLookup.JIRStaticMethodLookup(clazz, name, description).lookup()
+        return staticMethods.resolve(methodKey(name, description)) {
+            JIRClassLookup.JIRStaticMethodLookup(clazz, name, description).lookup()
+        }
     }
 
     override fun specialMethod(name: String, description: String): JIRMethod? {
-        return JIRClassLookup.JIRSpecialMethodLookup(clazz, name, description).lookup()
+        return specialMethods.resolve(methodKey(name, description)) {
+            JIRClassLookup.JIRSpecialMethodLookup(clazz, name, description).lookup()
+        }
+    }
+
+    private fun <T : Any> ResolvedMembers<T>.resolve(key: String, lookup: () -> T?): T? {
+        return if (isImmutable) getOrResolve(key, lookup) else lookup()
     }
 
 }
@@ -43,6 +62,11 @@ internal abstract class JIRClassLookup<Result : JIRAccessible>(clazz: JIRClassOr
         override val predicate: (JIRMethod) -> Boolean
             get() = { it.name == name && it.description == description }
 
+        override fun candidates(en: JIRClassOrInterface): List<JIRMethod> {
+            return (en as? JIRClassOrInterfaceImpl)?.methodsIndex?.get(methodKey(name, description))
+                ?: en.declaredMethods
+        }
+
         override fun lookupElement(en: JIRClassOrInterface): JIRMethod? {
             return super.lookupElement(en) ?: en.declaredMethods.find(en.name, description)
         }
@@ -86,6 +110,10 @@ internal abstract class JIRClassLookup<Result : JIRAccessible>(clazz: JIRClassOr
 
         override fun JIRClassOrInterface.next() = listOfNotNull(superClass) + interfaces
 
+        override fun candidates(en: JIRClassOrInterface): List<JIRField> {
+            return (en as? JIRClassOrInterfaceImpl)?.fieldsIndex?.get(name) ?: en.declaredFields
+        }
+
         override val predicate: (JIRField) -> Boolean
             get() = { it.name == name && it.matchKind() }
 
@@ -8,10 +8,13 @@ import org.seqra.ir.impl.fs.ClassSourceImpl
 import org.seqra.ir.impl.fs.LazyClassSourceImpl
 import org.seqra.ir.impl.fs.fullAsmNode
 import org.seqra.ir.impl.fs.info
+import org.seqra.ir.impl.storage.ers.bytecodeHash
 import org.seqra.ir.impl.types.ClassInfo
+import org.seqra.ir.impl.softLazy
 import org.seqra.ir.impl.weakLazy
 import org.objectweb.asm.tree.ClassNode
 import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.LazyThreadSafetyMode.PUBLICATION
 
 class JIRClassOrInterfaceImpl(
@@ -80,15 +83,34 @@ class JIRClassOrInterfaceImpl(
         classSource.fullAsmNode
     }
 
+    private val asmNodeInUse = AtomicBoolean()
+
     override fun <T> withAsmNode(body: (ClassNode) -> T): T {
-        val asmNode = lazyAsmNode
-        return synchronized(asmNode) {
-            body(asmNode)
+        // ASM tree isn't safe for concurrent reads, so cached node is used by one thread at a time,
+        // others read their own copy instead of waiting for it
+        if (!asmNodeInUse.compareAndSet(false, true)) {
+            return body(classSource.fullAsmNode)
+        }
+        try {
+            return body(lazyAsmNode)
+        } finally {
+            asmNodeInUse.set(false)
         }
     }
 
     override fun bytecode(): ByteArray = classSource.byteCode
 
+    /**
+     * Bytecode shared by methods of the class, so that reading their nodes one by one doesn't load
+     * (and decompress) the class from persistence each time. It must not be modified.
+     */
+    internal val sharedBytecode: ByteArray by softLazy { classSource.byteCode }
+
+    /**
+     * Hash of class bytecode, the same as `hc` property of `Class` entity in ERS persistence.
+     */
+    internal val bytecodeHash: Long by lazy(PUBLICATION) { sharedBytecode.bytecodeHash() }
+
     override fun <T> extensionValue(key: String): T? {
         return extensionData[key] as? T
     }
@@ -119,6 +141,14 @@ class JIRClassOrInterfaceImpl(
         default.joinFeatureMethods(this, featuresChain)
     }
 
+    internal val methodsIndex by lazy(PUBLICATION) {
+        MemberIndex(declaredMethods) { methodKey(it.name, it.description) }
+    }
+
+    internal val fieldsIndex by lazy(PUBLICATION) {
+        MemberIndex(declaredFields) { it.name }
+    }
+
     override fun equals(other: Any?): Boolean {
         if (other == null || other !is JIRClassOrInterfaceImpl) {
             return false
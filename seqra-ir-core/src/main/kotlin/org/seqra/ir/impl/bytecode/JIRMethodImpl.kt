@@ -60,13 +60,21 @@ class JIRMethodImpl(
     override val description get() = methodInfo.desc
 
     override fun <T> withAsmNode(body: (MethodNode) -> T): T {
+        if (enclosingClass is JIRClassOrInterfaceImpl) {
+            // only this method is read, and the node isn't shared, so other threads are not blocked
+            val methodNode = readMethodNode(enclosingClass.sharedBytecode, name, methodInfo.desc)
+                ?: throw NoSuchElementException("Method $name${methodInfo.desc} is not found in ${enclosingClass.name}")
+            return body(methodNode.jsrInlined)
+        }
         val methodNode = enclosingClass.withAsmNode { classNode ->
             classNode.methods.first { it.name == name && it.desc == methodInfo.desc }
         }
 
-        return synchronized(methodNode) {
-            body(methodNode.jsrInlined)
+        // node is copied under the lock, so the body doesn't block other threads
+        val copy = synchronized(methodNode) {
+            methodNode.jsrInlined
         }
+        return body(copy)
     }
 
     override val rawInstList: JIRInstList<JIRRawInst>
@@ -0,0 +1,29 @@
+package org.seqra.ir.impl.bytecode
+
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+internal fun methodKey(name: String, description: String) = name + description
+
+/**
+ * Members of a class grouped by [key], each group keeps the order of declaration.
+ */
+internal class MemberIndex<T>(members: List<T>, key: (T) -> String) {
+
+    private val index = members.groupBy(key)
+
+    operator fun get(key: String): List<T> = index[key].orEmpty()
+}
+
+/**
+ * Results of member lookups including not found members. Lookup results don't change for immutable classes,
+ * so each member is looked up in class hierarchy only once.
+ */
+internal class ResolvedMembers<T : Any> {
+
+    private val resolved = ConcurrentHashMap<String, Optional<T>>()
+
+    fun getOrResolve(key: String, resolve: () -> T?): T? {
+        return resolved.getOrPut(key) { Optional.ofNullable(resolve()) }.orElse(null)
+    }
+}
@@ -2,7 +2,10 @@ package org.seqra.ir.impl.bytecode
 
 import org.seqra.ir.api.jvm.JIRClasspath
 import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
 import org.objectweb.asm.commons.JSRInlinerAdapter
 import org.objectweb.asm.tree.ClassNode
 import org.objectweb.asm.tree.FrameNode
@@ -21,6 +24,30 @@ val MethodNode.jsrInlined: MethodNode
         }
     }
 
+/**
+ * Reads method with [name] and [desc] from class [bytecode]. Only this method is read into the tree,
+ * code of other methods is skipped by [ClassReader] without being decoded. Returned node is not shared.
+ */
+internal fun readMethodNode(bytecode: ByteArray, name: String, desc: String): MethodNode? {
+    var result: MethodNode? = null
+    ClassReader(bytecode).accept(object : ClassVisitor(Opcodes.ASM9) {
+        override fun visitMethod(
+            access: Int,
+            methodName: String,
+            methodDesc: String,
+            signature: String?,
+            exceptions: Array<out String>?
+        ): MethodVisitor? {
+            if (result != null || methodName != name || methodDesc != desc) {
+                return null
+            }
+            return MethodNode(Opcodes.ASM9, access, methodName, methodDesc, signature, exceptions)
+                .also { result = it }
+        }
+    }, ClassReader.EXPAND_FRAMES)
+    return result
+}
+
 internal fun ClassNode.computeFrames(classpath: JIRClasspath): ClassNode {
     return toByteArray(classpath).toClassNode()
 }
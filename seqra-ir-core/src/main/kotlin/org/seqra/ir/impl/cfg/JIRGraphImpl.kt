@@ -1,6 +1,5 @@
 package org.seqra.ir.impl.cfg
 
-import kotlinx.collections.immutable.toPersistentSet
 import org.seqra.ir.api.jvm.JIRClassType
 import org.seqra.ir.api.jvm.JIRClasspath
 import org.seqra.ir.api.jvm.JIRMethod
@@ -12,7 +11,8 @@ import org.seqra.ir.api.jvm.cfg.JIRInstRef
 import org.seqra.ir.api.jvm.cfg.JIRInstVisitor
 import org.seqra.ir.api.jvm.cfg.JIRTerminatingInst
 import org.seqra.ir.api.jvm.ext.isSubClassOf
-import java.util.Collections.singleton
+import org.seqra.ir.impl.cfg.graphs.IntGraph
+import org.seqra.ir.impl.cfg.graphs.IntGraphBuilder
 
 class JIRGraphImpl(
     override val method: JIRMethod,
@@ -21,14 +21,17 @@ class JIRGraphImpl(
 
     override val classpath: JIRClasspath get() = method.enclosingClass.classpath
 
-    private val predecessorMap = hashMapOf<JIRInst, Set<JIRInst>>()
-    private val successorMap = hashMapOf<JIRInst, Set<JIRInst>>()
+    /**
+     * Adjacency is stored in compact int-indexed form, where instruction is identified with its
+     * [org.seqra.ir.api.jvm.cfg.JIRInstLocation.index], i.e. its position in [instructions]
+     */
+    private val successorGraph: IntGraph
+    private val predecessorGraph: IntGraph
 
-    private val throwPredecessors = hashMapOf<JIRCatchInst, Set<JIRInst>>()
-    private val throwSuccessors = hashMapOf<JIRInst, Set<JIRCatchInst>>()
-    private val _throwExits = hashMapOf<JIRClassType, Set<JIRInstRef>>()
+    private val throwerGraph: IntGraph
+    private val catcherGraph: IntGraph
 
-    private val exceptionResolver = JIRExceptionResolver(classpath)
+    private val exceptionResolver by lazy { JIRExceptionResolver(classpath) }
 
     override val entry: JIRInst get() = instructions.first()
     override val exits: List<JIRInst> by lazy { instructions.filterIsInstance<JIRTerminatingInst>() }
@@ -43,39 +46,45 @@ class JIRGraphImpl(
             refs.map { instructions[it.index] }
         }
 
-    init {
+    private val _throwExits: Map<JIRClassType, Set<JIRInstRef>> by lazy {
+        val result = hashMapOf<JIRClassType, MutableSet<JIRInstRef>>()
         for (inst in instructions) {
-            val successors = when (inst) {
-                is JIRTerminatingInst -> emptySet()
-                is JIRBranchingInst -> inst.successors.map { instructions[it.index] }.toSet()
-                else -> setOf(next(inst))
+            for (throwableType in inst.accept(exceptionResolver)) {
+                if (!catchers(inst).any { throwableType.jIRClass isSubClassOf (it.throwable.type as JIRClassType).jIRClass }) {
+                    result.getOrPut(throwableType) { LinkedHashSet() }.add(ref(inst))
+                }
             }
-            successorMap[inst] = successors
+        }
+        result
+    }
 
-            for (successor in successors) {
-                predecessorMap.add(successor, inst)
+    init {
+        val size = instructions.size
+        val successors = IntGraphBuilder(size)
+        val throwers = IntGraphBuilder(size)
+        for ((index, inst) in instructions.withIndex()) {
+            when (inst) {
+                is JIRTerminatingInst -> {}
+                is JIRBranchingInst -> inst.successors.forEach { successors.add(it.index) }
+                else -> successors.add(index + 1)
             }
+            successors.nextNode()
 
             if (inst is JIRCatchInst) {
-                throwPredecessors[inst] = inst.throwers.map { instructions[it.index] }.toPersistentSet()
-                inst.throwers.forEach {
-                    throwSuccessors.add(inst(it), inst)
-                }
-            }
-        }
-
-        for (inst in instructions) {
-            for (throwableType in inst.accept(exceptionResolver)) {
-                if (!catchers(inst).any { throwableType.jIRClass isSubClassOf (it.throwable.type as JIRClassType).jIRClass }) {
-                    _throwExits.add(throwableType, ref(inst))
-                }
+                inst.throwers.forEach { throwers.add(it.index) }
             }
+            throwers.nextNode()
         }
+        successorGraph = successors.build()
+        predecessorGraph = successorGraph.reversed()
+        throwerGraph = throwers.build()
+        catcherGraph = throwerGraph.reversed()
     }
 
     override fun index(inst: JIRInst): Int {
-        if (instructions.contains(inst)) {
-            return inst.location.index
+        val index = inst.location.index
+        if (instructions.getOrNull(index) == inst) {
+            return index
         }
         return -1
     }
@@ -89,24 +98,24 @@ class JIRGraphImpl(
     /**
      * `successors` and `predecessors` represent normal control flow
      */
-    override fun successors(node: JIRInst): Set<JIRInst> = successorMap[node] ?: emptySet()
-    override fun predecessors(node: JIRInst): Set<JIRInst> = predecessorMap[node] ?: emptySet()
+    override fun successors(node: JIRInst): Set<JIRInst> = adjacentOf(successorGraph, index(node))
+    override fun predecessors(node: JIRInst): Set<JIRInst> = adjacentOf(predecessorGraph, index(node))
 
     /**
      * `throwers` and `catchers` represent control flow when an exception occurs
      * `throwers` returns an empty set for every instruction except `JIRCatchInst`
      */
-    override fun throwers(node: JIRInst): Set<JIRInst> = throwPredecessors[node] ?: emptySet()
-    override fun catchers(node: JIRInst): Set<JIRCatchInst> = throwSuccessors[node] ?: emptySet()
+    override fun throwers(node: JIRInst): Set<JIRInst> = adjacentOf(throwerGraph, index(node))
+    override fun catchers(node: JIRInst): Set<JIRCatchInst> = adjacentOf(catcherGraph, index(node))
 
     override fun previous(inst: JIRInstRef): JIRInst = previous(inst(inst))
     override fun next(inst: JIRInstRef): JIRInst = next(inst(inst))
 
-    override fun successors(inst: JIRInstRef): Set<JIRInst> = successors(inst(inst))
-    override fun predecessors(inst: JIRInstRef): Set<JIRInst> = predecessors(inst(inst))
+    override fun successors(inst: JIRInstRef): Set<JIRInst> = adjacentOf(successorGraph, inst.index)
+    override fun predecessors(inst: JIRInstRef): Set<JIRInst> = adjacentOf(predecessorGraph, inst.index)
 
-    override fun throwers(inst: JIRInstRef): Set<JIRInst> = throwers(inst(inst))
-    override fun catchers(inst: JIRInstRef): Set<JIRCatchInst> = catchers(inst(inst))
+    override fun throwers(inst: JIRInstRef): Set<JIRInst> = adjacentOf(throwerGraph, inst.index)
+    override fun catchers(inst: JIRInstRef): Set<JIRCatchInst> = adjacentOf(catcherGraph, inst.index)
 
     /**
      * get all the exceptions types that this instruction may throw and terminate
@@ -121,13 +130,45 @@ class JIRGraphImpl(
 
     override fun toString(): String = instructions.joinToString("\n")
 
+    private fun <T : JIRInst> adjacentOf(graph: IntGraph, index: Int): Set<T> {
+        if (index !in instructions.indices || graph.degree(index) == 0) {
+            return emptySet()
+        }
+        return AdjacentInstSet(graph, index)
+    }
+
+    /**
+     * Read-only view of instructions adjacent to the instruction with index [node] in the [graph]
+     */
+    private inner class AdjacentInstSet<T : JIRInst>(
+        private val graph: IntGraph,
+        private val node: Int
+    ) : AbstractSet<T>() {
+
+        override val size: Int get() = graph.degree(node)
 
-    private fun <KEY, VALUE> MutableMap<KEY, Set<VALUE>>.add(key: KEY, value: VALUE) {
-        val current = this[key]
-        if (current == null) {
-            this[key] = singleton(value)
-        } else {
-            this[key] = current + value
+        override fun contains(element: T): Boolean {
+            val elementIndex = index(element)
+            if (elementIndex < 0) {
+                return false
+            }
+            graph.forEachAdjacent(node) {
+                if (it == elementIndex) return true
+            }
+            return false
+        }
+
+        override fun iterator(): Iterator<T> = object : Iterator<T> {
+            private var cursor = graph.offsets[node]
+            private val end = graph.offsets[node + 1]
+
+            override fun hasNext(): Boolean = cursor < end
+
+            @Suppress("UNCHECKED_CAST")
+            override fun next(): T {
+                if (cursor >= end) throw NoSuchElementException()
+                return instructions[graph.targets[cursor++]] as T
+            }
         }
     }
 }
@@ -0,0 +1,712 @@
+package org.seqra.ir.impl.cfg
+
+import org.seqra.ir.api.jvm.JIRMethod
+import org.seqra.ir.api.jvm.TypeName
+import org.seqra.ir.api.jvm.cfg.*
+import org.seqra.ir.impl.cfg.util.typeName
+import org.seqra.ir.util.io.readVlqUnsigned
+import org.seqra.ir.util.io.writeVlqUnsigned
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+
+/**
+ * Binary format of [JIRInstList] of raw instructions which is used to persist it in a storage.
+ * Strings are written once per list, next occurrences refer to the first one by index.
+ * Owner method of instructions isn't serialized, it's passed to [deserialize].
+ */
+internal object RawInstListSerializer {
+
+    /** is written first, lists serialized with other versions can't be deserialized */
+    const val FORMAT_VERSION = 1
+
+    fun serialize(instList: JIRInstList<JIRRawInst>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { stream ->
+            stream.writeVlqUnsigned(FORMAT_VERSION)
+            stream.writeVlqUnsigned(instList.size)
+            val writer = RawInstWriter(stream)
+            instList.forEach { writer.writeInst(it) }
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * @return deserialized list or `null` if [bytes] were serialized with another [FORMAT_VERSION]
+     */
+    fun deserialize(method: JIRMethod, bytes: ByteArray): JIRInstList<JIRRawInst>? {
+        DataInputStream(ByteArrayInputStream(bytes)).use { stream ->
+            val reader = RawInstReader(method, stream)
+            if (reader.readInt() != FORMAT_VERSION) {
+                return null
+            }
+            val size = reader.readInt()
+            return JIRInstListImpl(List(size) { reader.readInst() })
+        }
+    }
+}
+
+private object InstTag {
+    const val ASSIGN = 0
+    const val ENTER_MONITOR = 1
+    const val EXIT_MONITOR = 2
+    const val CALL = 3
+    const val LINE_NUMBER = 4
+    const val LABEL = 5
+    const val RETURN = 6
+    const val THROW = 7
+    const val CATCH = 8
+    const val GOTO = 9
+    const val IF = 10
+    const val SWITCH = 11
+}
+
+private object ExprTag {
+    const val ADD = 0
+    const val AND = 1
+    const val CMP = 2
+    const val CMPG = 3
+    const val CMPL = 4
+    const val DIV = 5
+    const val MUL = 6
+    const val EQ = 7
+    const val NEQ = 8
+    const val GE = 9
+    const val GT = 10
+    const val LE = 11
+    const val LT = 12
+    const val OR = 13
+    const val REM = 14
+    const val SHL = 15
+    const val SHR = 16
+    const val SUB = 17
+    const val USHR = 18
+    const val XOR = 19
+    const val LENGTH = 20
+    const val NEG = 21
+    const val CAST = 22
+    const val NEW = 23
+    const val NEW_ARRAY = 24
+    const val INSTANCE_OF = 25
+    const val DYNAMIC_CALL = 26
+    const val VIRTUAL_CALL = 27
+    const val INTERFACE_CALL = 28
+    const val STATIC_CALL = 29
+    const val SPECIAL_CALL = 30
+    const val THIS = 31
+    const val ARGUMENT = 32
+    const val LOCAL_VAR = 33
+    const val FIELD_REF = 34
+    const val ARRAY_ACCESS = 35
+    const val BOOL = 36
+    const val BYTE = 37
+    const val CHAR = 38
+    const val SHORT = 39
+    const val INT = 40
+    const val LONG = 41
+    const val FLOAT = 42
+    const val DOUBLE = 43
+    const val NULL = 44
+    const val STRING = 45
+    const val CLASS = 46
+    const val METHOD_CONSTANT = 47
+    const val METHOD_TYPE = 48
+}
+
+private object BsmArgTag {
+    const val INT = 0
+    const val FLOAT = 1
+    const val LONG = 2
+    const val DOUBLE = 3
+    const val STRING = 4
+    const val TYPE = 5
+    const val METHOD_TYPE = 6
+    const val HANDLE = 7
+}
+
+private class RawInstWriter(private val output: DataOutputStream) {
+
+    private val strings = HashMap<String, Int>()
+
+    fun writeInst(inst: JIRRawInst) {
+        when (inst) {
+            is JIRRawAssignInst -> {
+                writeTag(InstTag.ASSIGN)
+                writeExpr(inst.lhv)
+                writeExpr(inst.rhv)
+            }
+
+            is JIRRawEnterMonitorInst -> {
+                writeTag(InstTag.ENTER_MONITOR)
+                writeExpr(inst.monitor)
+            }
+
+            is JIRRawExitMonitorInst -> {
+                writeTag(InstTag.EXIT_MONITOR)
+                writeExpr(inst.monitor)
+            }
+
+            is JIRRawCallInst -> {
+                writeTag(InstTag.CALL)
+                writeExpr(inst.callExpr)
+            }
+
+            is JIRRawLineNumberInst -> {
+                writeTag(InstTag.LINE_NUMBER)
+                writeInt(inst.lineNumber)
+                writeLabel(inst.start)
+            }
+
+            is JIRRawLabelInst -> {
+                writeTag(InstTag.LABEL)
+                writeString(inst.name)
+            }
+
+            is JIRRawReturnInst -> {
+                writeTag(InstTag.RETURN)
+                writeNullableExpr(inst.returnValue)
+            }
+
+            is JIRRawThrowInst -> {
+                writeTag(InstTag.THROW)
+                writeExpr(inst.throwable)
+            }
+
+            is JIRRawCatchInst -> {
+                writeTag(InstTag.CATCH)
+                writeExpr(inst.throwable)
+                writeLabel(inst.handler)
+                writeList(inst.entries) {
+                    writeType(it.acceptedThrowable)
+                    writeLabel(it.startInclusive)
+                    writeLabel(it.endExclusive)
+                }
+            }
+
+            is JIRRawGotoInst -> {
+                writeTag(InstTag.GOTO)
+                writeLabel(inst.target)
+            }
+
+            is JIRRawIfInst -> {
+                writeTag(InstTag.IF)
+                writeExpr(inst.condition)
+                writeLabel(inst.trueBranch)
+                writeLabel(inst.falseBranch)
+            }
+
+            is JIRRawSwitchInst -> {
+                writeTag(InstTag.SWITCH)
+                writeExpr(inst.key)
+                writeList(inst.branches.entries) { (value, label) ->
+                    writeExpr(value)
+                    writeLabel(label)
+                }
+                writeLabel(inst.default)
+            }
+        }
+    }
+
+    private fun writeExpr(expr: JIRRawExpr) {
+        when (expr) {
+            is JIRRawAddExpr -> writeBinary(ExprTag.ADD, expr)
+            is JIRRawAndExpr -> writeBinary(ExprTag.AND, expr)
+            is JIRRawCmpExpr -> writeBinary(ExprTag.CMP, expr)
+            is JIRRawCmpgExpr -> writeBinary(ExprTag.CMPG, expr)
+            is JIRRawCmplExpr -> writeBinary(ExprTag.CMPL, expr)
+            is JIRRawDivExpr -> writeBinary(ExprTag.DIV, expr)
+            is JIRRawMulExpr -> writeBinary(ExprTag.MUL, expr)
+            is JIRRawEqExpr -> writeBinary(ExprTag.EQ, expr)
+            is JIRRawNeqExpr -> writeBinary(ExprTag.NEQ, expr)
+            is JIRRawGeExpr -> writeBinary(ExprTag.GE, expr)
+            is JIRRawGtExpr -> writeBinary(ExprTag.GT, expr)
+            is JIRRawLeExpr -> writeBinary(ExprTag.LE, expr)
+            is JIRRawLtExpr -> writeBinary(ExprTag.LT, expr)
+            is JIRRawOrExpr -> writeBinary(ExprTag.OR, expr)
+            is JIRRawRemExpr -> writeBinary(ExprTag.REM, expr)
+            is JIRRawShlExpr -> writeBinary(ExprTag.SHL, expr)
+            is JIRRawShrExpr -> writeBinary(ExprTag.SHR, expr)
+            is JIRRawSubExpr -> writeBinary(ExprTag.SUB, expr)
+            is JIRRawUshrExpr -> writeBinary(ExprTag.USHR, expr)
+            is JIRRawXorExpr -> writeBinary(ExprTag.XOR, expr)
+
+            is JIRRawLengthExpr -> {
+                writeTag(ExprTag.LENGTH)
+                writeType(expr.typeName)
+                writeExpr(expr.array)
+            }
+
+            is JIRRawNegExpr -> {
+                writeTag(ExprTag.NEG)
+                writeType(expr.typeName)
+                writeExpr(expr.operand)
+            }
+
+            is JIRRawCastExpr -> {
+                writeTag(ExprTag.CAST)
+                writeType(expr.typeName)
+                writeExpr(expr.operand)
+            }
+
+            is JIRRawNewExpr -> {
+                writeTag(ExprTag.NEW)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawNewArrayExpr -> {
+                writeTag(ExprTag.NEW_ARRAY)
+                writeType(expr.typeName)
+                writeList(expr.dimensions) { writeExpr(it) }
+            }
+
+            is JIRRawInstanceOfExpr -> {
+                writeTag(ExprTag.INSTANCE_OF)
+                writeType(expr.typeName)
+                writeExpr(expr.operand)
+                writeType(expr.targetType)
+            }
+
+            is JIRRawDynamicCallExpr -> {
+                writeTag(ExprTag.DYNAMIC_CALL)
+                writeBsmHandle(expr.bsm)
+                writeList(expr.bsmArgs) { writeBsmArg(it) }
+                writeString(expr.callSiteMethodName)
+                writeTypes(expr.callSiteArgTypes)
+                writeType(expr.callSiteReturnType)
+                writeList(expr.callSiteArgs) { writeExpr(it) }
+            }
+
+            is JIRRawVirtualCallExpr -> writeInstanceCall(ExprTag.VIRTUAL_CALL, expr)
+            is JIRRawInterfaceCallExpr -> writeInstanceCall(ExprTag.INTERFACE_CALL, expr)
+            is JIRRawSpecialCallExpr -> writeInstanceCall(ExprTag.SPECIAL_CALL, expr)
+
+            is JIRRawStaticCallExpr -> {
+                writeTag(ExprTag.STATIC_CALL)
+                writeMethodRef(expr)
+                writeList(expr.args) { writeExpr(it) }
+                output.writeBoolean(expr.isInterfaceMethodCall)
+            }
+
+            is JIRRawThis -> {
+                writeTag(ExprTag.THIS)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawArgument -> {
+                writeTag(ExprTag.ARGUMENT)
+                writeInt(expr.index)
+                writeString(expr.name)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawLocalVar -> {
+                writeTag(ExprTag.LOCAL_VAR)
+                writeInt(expr.index)
+                writeString(expr.name)
+                writeType(expr.typeName)
+                writeInt(expr.kind.ordinal)
+            }
+
+            is JIRRawFieldRef -> {
+                writeTag(ExprTag.FIELD_REF)
+                writeNullableExpr(expr.instance)
+                writeType(expr.declaringClass)
+                writeString(expr.fieldName)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawArrayAccess -> {
+                writeTag(ExprTag.ARRAY_ACCESS)
+                writeExpr(expr.array)
+                writeExpr(expr.index)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawBool -> {
+                writeTag(ExprTag.BOOL)
+                output.writeBoolean(expr.value)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawByte -> {
+                writeTag(ExprTag.BYTE)
+                output.writeByte(expr.value.toInt())
+                writeType(expr.typeName)
+            }
+
+            is JIRRawChar -> {
+                writeTag(ExprTag.CHAR)
+                output.writeChar(expr.value.code)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawShort -> {
+                writeTag(ExprTag.SHORT)
+                output.writeShort(expr.value.toInt())
+                writeType(expr.typeName)
+            }
+
+            is JIRRawInt -> {
+                writeTag(ExprTag.INT)
+                output.writeInt(expr.value)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawLong -> {
+                writeTag(ExprTag.LONG)
+                output.writeLong(expr.value)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawFloat -> {
+                writeTag(ExprTag.FLOAT)
+                output.writeFloat(expr.value)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawDouble -> {
+                writeTag(ExprTag.DOUBLE)
+                output.writeDouble(expr.value)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawNullConstant -> {
+                writeTag(ExprTag.NULL)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawStringConstant -> {
+                writeTag(ExprTag.STRING)
+                writeString(expr.value)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawClassConstant -> {
+                writeTag(ExprTag.CLASS)
+                writeType(expr.className)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawMethodConstant -> {
+                writeTag(ExprTag.METHOD_CONSTANT)
+                writeType(expr.declaringClass)
+                writeString(expr.name)
+                writeTypes(expr.argumentTypes)
+                writeType(expr.returnType)
+                writeType(expr.typeName)
+            }
+
+            is JIRRawMethodType -> {
+                writeTag(ExprTag.METHOD_TYPE)
+                writeTypes(expr.argumentTypes)
+                writeType(expr.returnType)
+                writeType(expr.typeName)
+            }
+
+            else -> error("Unknown raw expression ${expr::class.java.name}")
+        }
+    }
+
+    private fun writeBinary(tag: Int, expr: JIRRawBinaryExpr) {
+        writeTag(tag)
+        writeType(expr.typeName)
+        writeExpr(expr.lhv)
+        writeExpr(expr.rhv)
+    }
+
+    private fun writeInstanceCall(tag: Int, expr: JIRRawInstanceExpr) {
+        writeTag(tag)
+        writeMethodRef(expr)
+        writeExpr(expr.instance)
+        writeList(expr.args) { writeExpr(it) }
+    }
+
+    private fun writeMethodRef(expr: JIRRawCallExpr) {
+        writeType(expr.declaringClass)
+        writeString(expr.methodName)
+        writeTypes(expr.argumentTypes)
+        writeType(expr.returnType)
+    }
+
+    private fun writeNullableExpr(expr: JIRRawExpr?) {
+        output.writeBoolean(expr != null)
+        expr?.let { writeExpr(it) }
+    }
+
+    private fun writeBsmArg(arg: BsmArg) {
+        when (arg) {
+            is BsmIntArg -> {
+                writeTag(BsmArgTag.INT)
+                output.writeInt(arg.value)
+            }
+
+            is BsmFloatArg -> {
+                writeTag(BsmArgTag.FLOAT)
+                output.writeFloat(arg.value)
+            }
+
+            is BsmLongArg -> {
+                writeTag(BsmArgTag.LONG)
+                output.writeLong(arg.value)
+            }
+
+            is BsmDoubleArg -> {
+                writeTag(BsmArgTag.DOUBLE)
+                output.writeDouble(arg.value)
+            }
+
+            is BsmStringArg -> {
+                writeTag(BsmArgTag.STRING)
+                writeString(arg.value)
+            }
+
+            is BsmTypeArg -> {
+                writeTag(BsmArgTag.TYPE)
+                writeType(arg.typeName)
+            }
+
+            is BsmMethodTypeArg -> {
+                writeTag(BsmArgTag.METHOD_TYPE)
+                writeTypes(arg.argumentTypes)
+                writeType(arg.returnType)
+            }
+
+            is BsmHandle -> {
+                writeTag(BsmArgTag.HANDLE)
+                writeBsmHandle(arg)
+            }
+        }
+    }
+
+    private fun writeBsmHandle(handle: BsmHandle) {
+        when (val tag = handle.tag) {
+            is BsmHandleTag.FieldHandle -> {
+                output.writeBoolean(true)
+                writeInt(tag.ordinal)
+            }
+
+            is BsmHandleTag.MethodHandle -> {
+                output.writeBoolean(false)
+                writeInt(tag.ordinal)
+            }
+        }
+        writeType(handle.declaringClass)
+        writeString(handle.name)
+        writeTypes(handle.argTypes)
+        writeType(handle.returnType)
+        output.writeBoolean(handle.isInterface)
+    }
+
+    private fun writeLabel(label: JIRRawLabelRef) = writeString(label.name)
+
+    private fun writeTypes(types: List<TypeName>) = writeList(types) { writeType(it) }
+
+    private fun writeType(type: TypeName) = writeString(type.typeName)
+
+    private fun writeString(str: String) {
+        val index = strings[str]
+        if (index != null) {
+            writeInt(index + 1)
+        } else {
+            strings[str] = strings.size
+            writeInt(0)
+            // modified UTF-8 is lossless for any string of a class file, unlike standard UTF-8
+            output.writeUTF(str)
+        }
+    }
+
+    private inline fun <T> writeList(items: Collection<T>, writeItem: (T) -> Unit) {
+        writeInt(items.size)
+        items.forEach(writeItem)
+    }
+
+    private fun writeTag(tag: Int) = output.writeByte(tag)
+
+    /**
+     * Non-negative int as VLQ.
+     */
+    private fun writeInt(value: Int) = output.writeVlqUnsigned(value)
+}
+
+private class RawInstReader(private val method: JIRMethod, private val input: DataInputStream) {
+
+    private val strings = ArrayList<String>()
+    private val types = HashMap<String, TypeName>()
+
+    fun readInst(): JIRRawInst {
+        return when (val tag = readTag()) {
+            InstTag.ASSIGN -> JIRRawAssignInst(method, readValue(), readExpr())
+            InstTag.ENTER_MONITOR -> JIRRawEnterMonitorInst(method, readExpr() as JIRRawSimpleValue)
+            InstTag.EXIT_MONITOR -> JIRRawExitMonitorInst(method, readExpr() as JIRRawSimpleValue)
+            InstTag.CALL -> JIRRawCallInst(method, readExpr() as JIRRawCallExpr)
+            InstTag.LINE_NUMBER -> JIRRawLineNumberInst(method, readInt(), readLabel())
+            InstTag.LABEL -> JIRRawLabelInst(method, readString())
+            InstTag.RETURN -> JIRRawReturnInst(method, readNullableExpr() as JIRRawValue?)
+            InstTag.THROW -> JIRRawThrowInst(method, readValue())
+            InstTag.CATCH -> JIRRawCatchInst(
+                method,
+                throwable = readValue(),
+                handler = readLabel(),
+                entries = readList { JIRRawCatchEntry(readType(), readLabel(), readLabel()) }
+            )
+
+            InstTag.GOTO -> JIRRawGotoInst(method, readLabel())
+            InstTag.IF -> JIRRawIfInst(method, readExpr() as JIRRawConditionExpr, readLabel(), readLabel())
+            InstTag.SWITCH -> {
+                val key = readValue()
+                val branches = LinkedHashMap<JIRRawValue, JIRRawLabelRef>()
+                repeat(readInt()) {
+                    branches[readValue()] = readLabel()
+                }
+                JIRRawSwitchInst(method, key, branches, readLabel())
+            }
+
+            else -> error("Unknown raw instruction tag $tag")
+        }
+    }
+
+    private fun readExpr(): JIRRawExpr {
+        return when (val tag = readTag()) {
+            ExprTag.ADD -> JIRRawAddExpr(readType(), readValue(), readValue())
+            ExprTag.AND -> JIRRawAndExpr(readType(), readValue(), readValue())
+            ExprTag.CMP -> JIRRawCmpExpr(readType(), readValue(), readValue())
+            ExprTag.CMPG -> JIRRawCmpgExpr(readType(), readValue(), readValue())
+            ExprTag.CMPL -> JIRRawCmplExpr(readType(), readValue(), readValue())
+            ExprTag.DIV -> JIRRawDivExpr(readType(), readValue(), readValue())
+            ExprTag.MUL -> JIRRawMulExpr(readType(), readValue(), readValue())
+            ExprTag.EQ -> JIRRawEqExpr(readType(), readValue(), readValue())
+            ExprTag.NEQ -> JIRRawNeqExpr(readType(), readValue(), readValue())
+            ExprTag.GE -> JIRRawGeExpr(readType(), readValue(), readValue())
+            ExprTag.GT -> JIRRawGtExpr(readType(), readValue(), readValue())
+            ExprTag.LE -> JIRRawLeExpr(readType(), readValue(), readValue())
+            ExprTag.LT -> JIRRawLtExpr(readType(), readValue(), readValue())
+            ExprTag.OR -> JIRRawOrExpr(readType(), readValue(), readValue())
+            ExprTag.REM -> JIRRawRemExpr(readType(), readValue(), readValue())
+            ExprTag.SHL -> JIRRawShlExpr(readType(), readValue(), readValue())
+            ExprTag.SHR -> JIRRawShrExpr(readType(), readValue(), readValue())
+            ExprTag.SUB -> JIRRawSubExpr(readType(), readValue(), readValue())
+            ExprTag.USHR -> JIRRawUshrExpr(readType(), readValue(), readValue())
+            ExprTag.XOR -> JIRRawXorExpr(readType(), readValue(), readValue())
+            ExprTag.LENGTH -> JIRRawLengthExpr(readType(), readValue())
+            ExprTag.NEG -> JIRRawNegExpr(readType(), readValue())
+            ExprTag.CAST -> JIRRawCastExpr(readType(), readValue())
+            ExprTag.NEW -> JIRRawNewExpr(readType())
+            ExprTag.NEW_ARRAY -> JIRRawNewArrayExpr(readType(), readList { readValue() })
+            ExprTag.INSTANCE_OF -> JIRRawInstanceOfExpr(readType(), readValue(), readType())
+            ExprTag.DYNAMIC_CALL -> JIRRawDynamicCallExpr(
+                bsm = readBsmHandle(),
+                bsmArgs = readList { readBsmArg() },
+                callSiteMethodName = readString(),
+                callSiteArgTypes = readTypes(),
+                callSiteReturnType = readType(),
+                callSiteArgs = readList { readValue() }
+            )
+
+            ExprTag.VIRTUAL_CALL -> JIRRawVirtualCallExpr(
+                readType(), readString(), readTypes(), readType(), readValue(), readList { readValue() }
+            )
+
+            ExprTag.INTERFACE_CALL -> JIRRawInterfaceCallExpr(
+                readType(), readString(), readTypes(), readType(), readValue(), readList { readValue() }
+            )
+
+            ExprTag.SPECIAL_CALL -> JIRRawSpecialCallExpr(
+                readType(), readString(), readTypes(), readType(), readValue(), readList { readValue() }
+            )
+
+            ExprTag.STATIC_CALL -> JIRRawStaticCallExpr(
+                readType(), readString(), readTypes(), readType(), readList { readValue() }, input.readBoolean()
+            )
+
+            ExprTag.THIS -> JIRRawThis(readType())
+            ExprTag.ARGUMENT -> JIRRawArgument(readInt(), readString(), readType())
+            ExprTag.LOCAL_VAR -> JIRRawLocalVar(readInt(), readString(), readType(), LocalVarKind.entries[readInt()])
+            ExprTag.FIELD_REF -> JIRRawFieldRef(
+                readNullableExpr() as JIRRawValue?, readType(), readString(), readType()
+            )
+
+            ExprTag.ARRAY_ACCESS -> JIRRawArrayAccess(readValue(), readValue(), readType())
+            ExprTag.BOOL -> JIRRawBool(input.readBoolean(), readType())
+            ExprTag.BYTE -> JIRRawByte(input.readByte(), readType())
+            ExprTag.CHAR -> JIRRawChar(input.readChar(), readType())
+            ExprTag.SHORT -> JIRRawShort(input.readShort(), readType())
+            ExprTag.INT -> JIRRawInt(input.readInt(), readType())
+            ExprTag.LONG -> JIRRawLong(input.readLong(), readType())
+            ExprTag.FLOAT -> JIRRawFloat(input.readFloat(), readType())
+            ExprTag.DOUBLE -> JIRRawDouble(input.readDouble(), readType())
+            ExprTag.NULL -> JIRRawNullConstant(readType())
+            ExprTag.STRING -> JIRRawStringConstant(readString(), readType())
+            ExprTag.CLASS -> JIRRawClassConstant(readType(), readType())
+            ExprTag.METHOD_CONSTANT -> JIRRawMethodConstant(
+                readType(), readString(), readTypes(), readType(), readType()
+            )
+
+            ExprTag.METHOD_TYPE -> JIRRawMethodType(readTypes(), readType(), readType())
+            else -> error("Unknown raw expression tag $tag")
+        }
+    }
+
+    private fun readValue(): JIRRawValue = readExpr() as JIRRawValue
+
+    private fun readNullableExpr(): JIRRawExpr? = if (input.readBoolean()) readExpr() else null
+
+    private fun readBsmArg(): BsmArg {
+        return when (val tag = readTag()) {
+            BsmArgTag.INT -> BsmIntArg(input.readInt())
+            BsmArgTag.FLOAT -> BsmFloatArg(input.readFloat())
+            BsmArgTag.LONG -> BsmLongArg(input.readLong())
+            BsmArgTag.DOUBLE -> BsmDoubleArg(input.readDouble())
+            BsmArgTag.STRING -> BsmStringArg(readString())
+            BsmArgTag.TYPE -> BsmTypeArg(readType())
+            BsmArgTag.METHOD_TYPE -> BsmMethodTypeArg(readTypes(), readType())
+            BsmArgTag.HANDLE -> readBsmHandle()
+            else -> error("Unknown bootstrap method argument tag $tag")
+        }
+    }
+
+    private fun readBsmHandle(): BsmHandle {
+        val tag = when (input.readBoolean()) {
+            true -> BsmHandleTag.FieldHandle.entries[readInt()]
+            false -> BsmHandleTag.MethodHandle.entries[readInt()]
+        }
+        return BsmHandle(
+            tag = tag,
+            declaringClass = readType(),
+            name = readString(),
+            argTypes = readTypes(),
+            returnType = readType(),
+            isInterface = input.readBoolean()
+        )
+    }
+
+    private fun readLabel(): JIRRawLabelRef = JIRRawLabelRef(readString())
+
+    private fun readTypes(): List<TypeName> = readList { readType() }
+
+    private fun readType(): TypeName = readString().let { name -> types.getOrPut(name) { name.typeName() } }
+
+    private fun readString(): String {
+        val index = readInt()
+        if (index == 0) {
+            return input.readUTF().also { strings.add(it) }
+        }
+        return strings[index - 1]
+    }
+
+    private inline fun <T> readList(readItem: () -> T): List<T> {
+        val size = readInt()
+        return List(size) { readItem() }
+    }
+
+    private fun readTag(): Int = input.readUnsignedByte()
+
+    fun readInt(): Int {
+        val value = input.readVlqUnsigned()
+        if (value < 0) {
+            throw EOFException()
+        }
+        return value.toInt()
+    }
+}
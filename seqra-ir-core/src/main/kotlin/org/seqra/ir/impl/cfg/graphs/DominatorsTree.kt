@@ -55,7 +55,8 @@ open class DominatorsTree<NODE>(private val dominators: GraphDominators<NODE>) :
             if (parent == null) {
                 _heads.add(node)
             } else {
-                parent.addChild(node)
+                // each instruction is visited once, so there is no need to check if the child is already added
+                parent.childrens.add(node)
                 node.parent = parent
             }
         }
@@ -127,16 +128,25 @@ class CytronDominanceFrontier<NODE>(val tree: DominatorsTree<NODE>) {
         return frontiers.containsKey(node)
     }
 
-    private fun bottomUpDispatch(node: DominatorNode<NODE>) {
-        if (isFrontierKnown(node)) {
+    /**
+     * Post-order traversal of the dominator tree, iterative since dominator trees of huge methods are deep.
+     */
+    private fun bottomUpDispatch(head: DominatorNode<NODE>) {
+        if (isFrontierKnown(head)) {
             return
         }
-        for (child in tree.childsOf(node)) {
-            if (!isFrontierKnown(child)) {
-                bottomUpDispatch(child)
+        val stack = ArrayDeque<Pair<DominatorNode<NODE>, Iterator<DominatorNode<NODE>>>>()
+        stack.addLast(head to head.childrens.iterator())
+        while (stack.isNotEmpty()) {
+            val (node, children) = stack.last()
+            val child = children.nextOrNull { !isFrontierKnown(it) }
+            if (child != null) {
+                stack.addLast(child to child.childrens.iterator())
+            } else {
+                stack.removeLast()
+                process(node)
             }
         }
-        process(node)
     }
 
     /**
@@ -156,12 +166,12 @@ class CytronDominanceFrontier<NODE>(val tree: DominatorsTree<NODE>) {
      * ```
      */
     fun process(node: DominatorNode<NODE>) {
-        val frontiers = tree.successors(node).filter { tree.isImmediateDominatorOf(node, it) }.toMutableSet()
         // local
+        val frontiers = tree.successors(node).filterTo(LinkedHashSet()) { !tree.isImmediateDominatorOf(node, it) }
 
         // up
-        for (child in tree.childsOf(node)) {
-            for (frontier in frontierOf(child)) {
+        for (child in node.childrens) {
+            for (frontier in knownFrontierOf(child)) {
                 if (!tree.isImmediateDominatorOf(node, frontier)) {
                     frontiers.add(frontier)
                 }
@@ -169,4 +179,16 @@ class CytronDominanceFrontier<NODE>(val tree: DominatorsTree<NODE>) {
         }
         this.frontiers[node] = frontiers.toList()
     }
+
+    private fun knownFrontierOf(node: DominatorNode<NODE>): List<DominatorNode<NODE>> {
+        return frontiers[node] ?: throw RuntimeException("Frontier not defined for node: $node")
+    }
+
+    private inline fun <T> Iterator<T>.nextOrNull(predicate: (T) -> Boolean): T? {
+        while (hasNext()) {
+            val next = next()
+            if (predicate(next)) return next
+        }
+        return null
+    }
 }
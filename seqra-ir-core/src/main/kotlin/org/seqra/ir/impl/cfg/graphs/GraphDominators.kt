@@ -2,139 +2,218 @@ package org.seqra.ir.impl.cfg.graphs
 
 import org.seqra.ir.api.common.cfg.BytecodeGraph
 import org.seqra.ir.api.jvm.cfg.JIRCatchInst
-import java.util.BitSet
 
 /**
  * Calculate dominators for basic blocks.
  *
- * Uses the algorithm contained in Dragon book, pg. 670-1.
+ * Uses the algorithm of Cooper, Harvey & Kennedy ("A Simple, Fast Dominance Algorithm") over an int-indexed
+ * view of the graph. Heads of the graph are children of a virtual root, so they are dominated only by themselves.
+ * Dominance queries are answered in O(1) using pre- and post-order numbers of the dominator tree.
+ *
+ * Nodes unreachable from heads are considered to be dominated by all nodes and have no immediate dominator.
  */
 open class GraphDominators<NODE>(val graph: BytecodeGraph<NODE>) {
 
     private val nodes = graph.instructions
     private val size = nodes.size
+    private val indices = nodes.indexMap()
 
-    private val heads = graph.entries
-    private val flowSets = HashMap<Int, BitSet>()
+    // virtual root which is the immediate dominator of all heads
+    private val root = size
 
-    fun find() {
-        val fullSet = BitSet(size)
-        fullSet.flip(0, size) // set all to true
-
-        // set up domain for intersection: head nodes are only dominated by themselves,
-        // other nodes are dominated by everything else
-        nodes.forEachIndexed { index, node ->
-            flowSets[index] = when {
-                heads.contains(node) -> BitSet().also {
-                    it.set(index)
-                }
+    private var idoms = IntArray(0)
+    private var treeEnter = IntArray(0)
+    private var treeExit = IntArray(0)
 
-                else -> fullSet
+    fun find() {
+        val predecessors = IntGraph.of(nodes, { indexOf(it) }) { node ->
+            when (node) {
+                !is JIRCatchInst -> graph.predecessors(node)
+                else -> graph.throwers(node)
             }
         }
-        var changed: Boolean
-        do {
-            changed = false
-            nodes.forEachIndexed { index, node ->
-                if (!heads.contains(node)) {
-                    val fullClone = fullSet.clone() as BitSet
-                    val predecessors = when (node) {
-                        !is JIRCatchInst -> graph.predecessors(node)
-                        else -> graph.throwers(node)
-                    }
+        val isHead = BooleanArray(size)
+        graph.entries.forEach { isHead[it.indexOf] = true }
 
-                    predecessors.forEach { fullClone.and(it.dominatorsBitSet) }
+        val (order, postNumbers) = reversePostOrder(predecessors.reversed(), isHead)
 
-                    val oldSet = node.dominatorsBitSet
-                    fullClone.set(index)
-                    if (fullClone != oldSet) {
-                        flowSets[index] = fullClone
-                        changed = true
+        val idoms = IntArray(size + 1) { UNDEFINED }
+        idoms[root] = root
+        var changed = true
+        while (changed) {
+            changed = false
+            // order[0] is the root
+            for (i in 1 until order.size) {
+                val node = order[i]
+                var newIdom = if (isHead[node]) root else UNDEFINED
+                predecessors.forEachAdjacent(node) { predecessor ->
+                    if (idoms[predecessor] != UNDEFINED) {
+                        newIdom = if (newIdom == UNDEFINED) {
+                            predecessor
+                        } else {
+                            intersect(idoms, postNumbers, predecessor, newIdom)
+                        }
                     }
                 }
+                if (idoms[node] != newIdom) {
+                    idoms[node] = newIdom
+                    changed = true
+                }
             }
-        } while (changed)
+        }
+        this.idoms = idoms
+        numberTree()
     }
 
     private val NODE.indexOf: Int
-        get() {
-            val index = nodes.indexOf(this)
-            return index.takeIf { it >= 0 } ?: error("No node with index $this in the graph")
-        }
+        get() = indexOf(this).takeIf { it >= 0 } ?: error("No node with index $this in the graph")
+
+    private fun indexOf(node: NODE): Int = indices[node] ?: -1
 
     private val Int.node: NODE
         get() {
             return nodes[this]
         }
 
-    private val NODE.dominatorsBitSet: BitSet
+    private val Int.isReachable: Boolean
         get() {
-            return flowSets[indexOf] ?: error("Node $this is not in the graph!")
+            check(idoms.isNotEmpty()) { "Dominators are not found yet" }
+            return idoms[this] != UNDEFINED
         }
 
     fun dominators(inst: NODE): List<NODE> {
-        // reconstruct list of dominators from bitset
-        val result = arrayListOf<NODE>()
-        val bitSet = inst.dominatorsBitSet
-        var i = bitSet.nextSetBit(0)
-        while (i >= 0) {
-            result.add(i.node)
-            if (i == Int.MAX_VALUE) {
-                break // or (i+1) would overflow
-            }
-            i = bitSet.nextSetBit(i + 1)
+        val index = inst.indexOf
+        if (!index.isReachable) {
+            return nodes
+        }
+        val result = arrayListOf<Int>()
+        var i = index
+        while (i != root) {
+            result.add(i)
+            i = idoms[i]
         }
-        return result
+        // keep the order of nodes in the graph
+        result.sort()
+        return result.map { it.node }
     }
 
     fun immediateDominator(inst: NODE): NODE? {
-        // root node
-        if (heads.contains(inst)) {
+        val index = inst.indexOf
+        if (!index.isReachable) {
             return null
         }
-        val doms = inst.dominatorsBitSet.clone() as BitSet
-        doms.clear(inst.indexOf)
-        var i = doms.nextSetBit(0)
-        while (i >= 0) {
-            val dominator = i.node
-            if (dominator.isDominatedByAll(doms)) {
-                return dominator
-            }
-            if (i == Int.MAX_VALUE) {
-                break // or (i+1) would overflow
-            }
-            i = doms.nextSetBit(i + 1)
+        return idoms[index].takeIf { it != root }?.node
+    }
+
+    fun isDominatedBy(node: NODE, dominator: NODE): Boolean {
+        return isDominatedBy(node.indexOf, dominator.indexOf)
+    }
+
+    fun isDominatedByAll(node: NODE, dominators: Collection<NODE>): Boolean {
+        val index = node.indexOf
+        return dominators.all { isDominatedBy(index, it.indexOf) }
+    }
+
+    private fun isDominatedBy(node: Int, dominator: Int): Boolean {
+        if (!node.isReachable) {
+            return true
+        }
+        if (!dominator.isReachable) {
+            return false
         }
-        return null
+        return treeEnter[dominator] <= treeEnter[node] && treeExit[node] <= treeExit[dominator]
     }
 
-    private fun NODE.isDominatedByAll(dominators: BitSet): Boolean {
-        val bitSet = dominatorsBitSet
-        var i = dominators.nextSetBit(0)
-        while (i >= 0) {
-            if (!bitSet[i]) {
-                return false
+    /**
+     * Reverse post-order of nodes reachable from the virtual root and post-order numbers of all nodes
+     * (`-1` for unreachable ones).
+     */
+    private fun reversePostOrder(successors: IntGraph, isHead: BooleanArray): Pair<IntArray, IntArray> {
+        val postNumbers = IntArray(size + 1) { -1 }
+        val visited = BooleanArray(size + 1)
+        val postOrder = IntArray(size + 1)
+        var count = 0
+        val nodeStack = IntArray(size + 1)
+        val cursorStack = IntArray(size + 1)
+        var top = 0
+        nodeStack[0] = root
+        cursorStack[0] = 0
+        visited[root] = true
+        while (top >= 0) {
+            val node = nodeStack[top]
+            val cursor = cursorStack[top]
+            // successors of the virtual root are heads
+            val next = if (node == root) {
+                var head = cursor
+                while (head < size && (!isHead[head] || visited[head])) ++head
+                cursorStack[top] = head + 1
+                head.takeIf { it < size } ?: UNDEFINED
+            } else {
+                var i = successors.offsets[node] + cursor
+                val end = successors.offsets[node + 1]
+                while (i < end && visited[successors.targets[i]]) ++i
+                cursorStack[top] = i - successors.offsets[node] + 1
+                if (i < end) successors.targets[i] else UNDEFINED
             }
-            if (i == Int.MAX_VALUE) {
-                break // or (i+1) would overflow
+            if (next == UNDEFINED) {
+                postNumbers[node] = count
+                postOrder[count++] = node
+                --top
+            } else {
+                visited[next] = true
+                ++top
+                nodeStack[top] = next
+                cursorStack[top] = 0
             }
-            i = dominators.nextSetBit(i + 1)
         }
-        return true
+        val order = IntArray(count) { postOrder[count - 1 - it] }
+        return order to postNumbers
     }
 
-    fun isDominatedBy(node: NODE, dominator: NODE): Boolean {
-        return node.dominatorsBitSet[dominator.indexOf]
+    private fun intersect(idoms: IntArray, postNumbers: IntArray, first: Int, second: Int): Int {
+        var a = first
+        var b = second
+        while (a != b) {
+            while (postNumbers[a] < postNumbers[b]) a = idoms[a]
+            while (postNumbers[b] < postNumbers[a]) b = idoms[b]
+        }
+        return a
     }
 
-    fun isDominatedByAll(node: NODE, dominators: Collection<NODE>): Boolean {
-        val bitSet = node.dominatorsBitSet
-        for (n in dominators) {
-            if (!bitSet[n.indexOf]) {
-                return false
+    /**
+     * Assigns pre- and post-order numbers to nodes of the dominator tree.
+     */
+    private fun numberTree() {
+        val children = IntGraph.of((0..size).toList(), { it }) { node ->
+            if (node == root) emptyList() else listOf(idoms[node])
+        }.reversed()
+        treeEnter = IntArray(size + 1) { -1 }
+        treeExit = IntArray(size + 1) { -1 }
+        val nodeStack = IntArray(size + 1)
+        val cursorStack = IntArray(size + 1)
+        var top = 0
+        var counter = 0
+        nodeStack[0] = root
+        treeEnter[root] = counter++
+        while (top >= 0) {
+            val node = nodeStack[top]
+            val cursor = cursorStack[top]
+            if (cursor < children.degree(node)) {
+                cursorStack[top] = cursor + 1
+                val child = children.targets[children.offsets[node] + cursor]
+                treeEnter[child] = counter++
+                ++top
+                nodeStack[top] = child
+                cursorStack[top] = 0
+            } else {
+                treeExit[node] = counter++
+                --top
             }
         }
-        return true
+    }
+
+    private companion object {
+        const val UNDEFINED = -1
     }
 }
 
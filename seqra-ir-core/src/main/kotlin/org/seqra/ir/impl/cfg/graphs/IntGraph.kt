@@ -0,0 +1,110 @@
+package org.seqra.ir.impl.cfg.graphs
+
+/**
+ * Compact int-indexed directed graph: nodes are `0 until size`, adjacency lists are stored
+ * in CSR form, i.e. adjacent nodes of node `i` are `targets[offsets[i] until offsets[i + 1]]`.
+ */
+internal class IntGraph(
+    val size: Int,
+    val offsets: IntArray,
+    val targets: IntArray
+) {
+
+    fun degree(node: Int): Int = offsets[node + 1] - offsets[node]
+
+    inline fun forEachAdjacent(node: Int, action: (Int) -> Unit) {
+        for (i in offsets[node] until offsets[node + 1]) {
+            action(targets[i])
+        }
+    }
+
+    fun reversed(): IntGraph {
+        val reversedOffsets = IntArray(size + 1)
+        for (target in targets) {
+            ++reversedOffsets[target + 1]
+        }
+        for (i in 0 until size) {
+            reversedOffsets[i + 1] += reversedOffsets[i]
+        }
+        val reversedTargets = IntArray(targets.size)
+        val cursors = reversedOffsets.copyOf(size)
+        for (node in 0 until size) {
+            forEachAdjacent(node) { target ->
+                reversedTargets[cursors[target]++] = node
+            }
+        }
+        return IntGraph(size, reversedOffsets, reversedTargets)
+    }
+
+    companion object {
+
+        fun <NODE> of(
+            nodes: List<NODE>,
+            indexOf: (NODE) -> Int,
+            adjacent: (NODE) -> Collection<NODE>
+        ): IntGraph {
+            val builder = IntGraphBuilder(nodes.size)
+            for (node in nodes) {
+                for (target in adjacent(node)) {
+                    val targetIndex = indexOf(target)
+                    if (targetIndex >= 0) {
+                        builder.add(targetIndex)
+                    }
+                }
+                builder.nextNode()
+            }
+            return builder.build()
+        }
+    }
+}
+
+/**
+ * Builds [IntGraph] node by node: adjacent nodes of the current node are added with [add], then
+ * [nextNode] moves to the next one. Duplicated edges are ignored.
+ */
+internal class IntGraphBuilder(private val size: Int) {
+
+    private val offsets = IntArray(size + 1)
+    private var targets = IntArray(size)
+    private var count = 0
+    private var node = 0
+
+    // marks[i] == node + 1 iff edge node -> i is already added
+    private val marks = IntArray(size)
+
+    fun add(target: Int) {
+        check(node < size) { "All nodes are already built" }
+        if (target !in 0 until size) {
+            throw IndexOutOfBoundsException("Index: $target, Size: $size")
+        }
+        if (marks[target] == node + 1) {
+            return
+        }
+        marks[target] = node + 1
+        if (count == targets.size) {
+            targets = targets.copyOf(maxOf(count * 2, 4))
+        }
+        targets[count++] = target
+    }
+
+    fun nextNode() {
+        check(node < size) { "All nodes are already built" }
+        offsets[++node] = count
+    }
+
+    fun build(): IntGraph {
+        check(node == size) { "Only $node of $size nodes are built" }
+        return IntGraph(size, offsets, targets.copyOf(count))
+    }
+}
+
+/**
+ * Map of nodes to their indices in the list, for duplicated nodes the first index is used.
+ */
+internal fun <NODE> List<NODE>.indexMap(): Map<NODE, Int> {
+    val result = HashMap<NODE, Int>(size * 2)
+    forEachIndexed { i, node ->
+        result.putIfAbsent(node, i)
+    }
+    return result
+}
@@ -54,11 +54,9 @@ val JIRGraph.loops: Set<JIRLoop>
         val finder = findDominators()
         val loops = HashMap<JIRInst, MutableList<JIRInst>>()
         instructions.forEach { inst ->
-            val dominators = finder.dominators(inst)
-
             val headers = arrayListOf<JIRInst>()
             successors(inst).forEach {
-                if (dominators.contains(it)) {
+                if (finder.isDominatedBy(inst, it)) {
                     headers.add(it)
                 }
             }
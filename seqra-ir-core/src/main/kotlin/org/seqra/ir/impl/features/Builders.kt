@@ -1,6 +1,7 @@
 package org.seqra.ir.impl.features
 
 import org.seqra.ir.api.jvm.ByteCodeIndexer
+import org.seqra.ir.api.jvm.ClassParsingLevel
 import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.api.jvm.JIRClasspath
 import org.seqra.ir.api.jvm.JIRDatabase
@@ -16,7 +17,7 @@ import org.seqra.ir.impl.fs.PersistenceClassSource
 import org.seqra.ir.impl.fs.className
 import org.seqra.ir.impl.storage.dslContext
 import org.seqra.ir.impl.storage.ers.filterDeleted
-import org.seqra.ir.impl.storage.ers.filterLocations
+import org.seqra.ir.impl.storage.ers.findClasses
 import org.seqra.ir.impl.storage.ers.toClassSource
 import org.seqra.ir.impl.storage.execute
 import org.seqra.ir.impl.storage.executeQueries
@@ -129,6 +130,9 @@ data class BuildersResponse(
 
 object Builders : JIRFeature<Set<String>, BuildersResponse> {
 
+    // only signatures of methods are indexed
+    override val parsingLevel = ClassParsingLevel.DECLARATIONS
+
     fun create(context: StorageContext, drop: Boolean) {
         context.execute(
             sqlAction = {
@@ -281,8 +285,7 @@ object Builders : JIRFeature<Set<String>, BuildersResponse> {
                             .flatMap { (builder, builderLocationId) ->
                                 val builderClassNameId: Long =
                                     builder.getCompressedBlob<Long>(BuilderEntity.BUILDER_CLASS_NAME_ID)!!
-                                txn.find("Class", "nameId", builderClassNameId.compressed)
-                                    .filterLocations(builderLocationId)
+                                txn.findClasses(builderClassNameId, builderLocationId)
                                     .filterDeleted()
                                     .map { builderClass ->
                                         BuildersResponse(
@@ -1,6 +1,7 @@
 package org.seqra.ir.impl.features
 
 import org.seqra.ir.api.jvm.ByteCodeIndexer
+import org.seqra.ir.api.jvm.ClassParsingLevel
 import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.api.jvm.JIRClassOrInterface
 import org.seqra.ir.api.jvm.JIRClasspath
@@ -12,7 +13,6 @@ import org.seqra.ir.api.jvm.RegisteredLocation
 import org.seqra.ir.api.jvm.ext.JAVA_OBJECT
 import org.seqra.ir.api.storage.StorageContext
 import org.seqra.ir.api.storage.asSymbolId
-import org.seqra.ir.api.storage.ers.compressed
 import org.seqra.ir.api.storage.ers.links
 import org.seqra.ir.impl.fs.PersistenceClassSource
 import org.seqra.ir.impl.fs.className
@@ -20,7 +20,7 @@ import org.seqra.ir.impl.storage.BatchedSequence
 import org.seqra.ir.impl.storage.defaultBatchSize
 import org.seqra.ir.impl.storage.dslContext
 import org.seqra.ir.impl.storage.ers.filterDeleted
-import org.seqra.ir.impl.storage.ers.filterLocations
+import org.seqra.ir.impl.storage.ers.findClasses
 import org.seqra.ir.impl.storage.ers.toClassSource
 import org.seqra.ir.impl.storage.execute
 import org.seqra.ir.impl.storage.jooq.tables.references.CLASSES
@@ -83,6 +83,9 @@ data class InMemoryHierarchyReq(val name: String, val allHierarchy: Boolean = tr
 class InMemoryHierarchy : JIRFeature<InMemoryHierarchyReq, ClassSource> {
     private val cache = InMemoryHierarchyCache()
 
+    // only super classes and interfaces are indexed
+    override val parsingLevel = ClassParsingLevel.DECLARATIONS
+
     override fun onSignal(signal: JIRSignal) {
         val hierarchy = signal.jIRdb.findInMemoryHierarchy()
             ?: error("InMemoryHierarchy not installed")
@@ -220,8 +223,7 @@ class InMemoryHierarchy : JIRFeature<InMemoryHierarchyReq, ClassSource> {
                     noSqlAction = {
                         allSubclasses.asSequence()
                             .flatMap { classNameId ->
-                                context.txn.find("Class", "nameId", classNameId.compressed)
-                                    .filterLocations(locationIds)
+                                context.txn.findClasses(classNameId, locationIds)
                                     .filterDeleted()
                             }
                             .map { clazz ->
@@ -1,6 +1,7 @@
 package org.seqra.ir.impl.features
 
 import org.seqra.ir.api.jvm.ByteCodeIndexer
+import org.seqra.ir.api.jvm.ClassParsingLevel
 import org.seqra.ir.api.jvm.JIRClasspath
 import org.seqra.ir.api.jvm.JIRDatabase
 import org.seqra.ir.api.jvm.JIRFeature
@@ -18,7 +19,7 @@ import org.seqra.ir.impl.storage.defaultBatchSize
 import org.seqra.ir.impl.storage.dslContext
 import org.seqra.ir.impl.storage.eqOrNull
 import org.seqra.ir.impl.storage.ers.filterDeleted
-import org.seqra.ir.impl.storage.ers.filterLocations
+import org.seqra.ir.impl.storage.ers.findClasses
 import org.seqra.ir.impl.storage.ers.toClassSource
 import org.seqra.ir.impl.storage.execute
 import org.seqra.ir.impl.storage.executeQueries
@@ -159,6 +160,9 @@ class UsagesIndexer(private val jIRdb: JIRDatabase, private val location: Regist
 
 object Usages : JIRFeature<UsageFeatureRequest, UsageFeatureResponse> {
 
+    // instructions of methods are indexed, frames are not used
+    override val parsingLevel = ClassParsingLevel.CODE
+
     fun create(context: StorageContext, drop: Boolean) {
         if (context.isSqlContext) {
             val jooq = context.dslContext
@@ -267,9 +271,8 @@ object Usages : JIRFeature<UsageFeatureRequest, UsageFeatureResponse> {
                         .map { (call, callerLocationId) ->
                             val callerId = call.getCompressedBlob<Long>("callerId")!!
                             val caller = symbolInterner.findSymbolName(callerId)!!
-                            val clazz = txn.find("Class", "nameId", callerId.compressed)
+                            val clazz = txn.findClasses(callerId, callerLocationId)
                                 .filterDeleted()
-                                .filterLocations(callerLocationId)
                                 .first()
                             val classId = clazz.id.instanceId
                             UsageFeatureResponse(
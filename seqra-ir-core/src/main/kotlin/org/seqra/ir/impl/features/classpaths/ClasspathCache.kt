@@ -22,6 +22,7 @@ import org.seqra.ir.api.jvm.cfg.JIRInst
 import org.seqra.ir.api.jvm.cfg.JIRInstList
 import org.seqra.ir.api.jvm.cfg.JIRRawInst
 import org.seqra.ir.api.jvm.ext.JAVA_OBJECT
+import org.seqra.ir.impl.caches.caffeine.CAFFEINE_CACHE_PROVIDER_ID
 import org.seqra.ir.impl.caches.xodus.XODUS_CACHE_PROVIDER_ID
 import org.seqra.ir.impl.features.classpaths.AbstractJIRInstResult.JIRFlowGraphResultImpl
 import org.seqra.ir.impl.features.classpaths.AbstractJIRInstResult.JIRInstListResultImpl
@@ -33,17 +34,19 @@ import java.text.NumberFormat
  */
 open class ClasspathCache(settings: JIRCacheSettings) : JIRClasspathExtFeature, JIRMethodExtFeature, KLogging() {
 
-    private val cacheProvider = PluggableCacheProvider.getProvider(settings.cacheSpiId ?: XODUS_CACHE_PROVIDER_ID)
+    private val cacheProvider = PluggableCacheProvider.getProvider(
+        settings.cacheSpiId ?: if (settings.isBoundedByBytes) CAFFEINE_CACHE_PROVIDER_ID else XODUS_CACHE_PROVIDER_ID
+    )
 
     private val classesCache = newSegment<String, JIRResolvedClassResult>(settings.classes)
 
     private val typesCache = newSegment<TypeKey, JIRResolvedTypeResult>(settings.types)
 
-    private val rawInstCache = newSegment<JIRMethod, JIRInstList<JIRRawInst>>(settings.rawInstLists)
+    private val rawInstCache = newSegment(settings.rawInstLists, InstructionsWeighers.rawInstList)
 
-    private val instCache = newSegment<JIRMethod, JIRInstList<JIRInst>>(settings.instLists)
+    private val instCache = newSegment(settings.instLists, InstructionsWeighers.instList)
 
-    private val cfgCache = newSegment<JIRMethod, JIRGraph>(settings.flowGraphs)
+    private val cfgCache = newSegment(settings.flowGraphs, InstructionsWeighers.flowGraph)
 
     private var javaObjectResolvedClass: JIRResolvedClassResult? = null
     private var javaObjectResolvedType: JIRResolvedTypeResult? = null
@@ -131,16 +134,26 @@ open class ClasspathCache(settings: JIRCacheSettings) : JIRClasspathExtFeature,
             }
     }
 
-    private fun <K : Any, V : Any> newSegment(settings: JIRCacheSegmentSettings): PluggableCache<K, V> {
+    private fun <K : Any, V : Any> newSegment(
+        settings: JIRCacheSegmentSettings,
+        weigher: ((K, V) -> Int)? = null
+    ): PluggableCache<K, V> {
         with(settings) {
             return cacheProvider.newCache {
                 maximumSize = maxSize.toInt()
                 expirationDuration = expiration
                 valueRefType = valueStoreType
+                if (weigher != null && maxBytes > 0) {
+                    maximumWeight = maxBytes
+                    this.weigher = weigher
+                }
             }
         }
     }
 
+    private val JIRCacheSettings.isBoundedByBytes: Boolean
+        get() = listOf(rawInstLists, instLists, flowGraphs).any { it.maxBytes > 0 }
+
     private fun Double.forPercentages(): String {
         return NumberFormat.getPercentInstance().format(this)
     }
@@ -0,0 +1,56 @@
+package org.seqra.ir.impl.features.classpaths
+
+import org.seqra.ir.api.jvm.JIRMethod
+import org.seqra.ir.api.jvm.cfg.JIRGraph
+import org.seqra.ir.api.jvm.cfg.JIRInst
+import org.seqra.ir.api.jvm.cfg.JIRInstList
+import org.seqra.ir.api.jvm.cfg.JIRRawInst
+
+/**
+ * Rough estimations of retained size of instructions and flow graphs which are used to bound
+ * [ClasspathCache] segments in bytes. Each instruction or expression is counted as an object with a few
+ * references and a list of operands; values (locals, constants, etc.) are counted as operands of
+ * expressions. Types and methods referenced by instructions are shared and are not counted.
+ */
+internal object InstructionsWeighers {
+
+    private const val LIST_BYTES = 48L
+    private const val INST_BYTES = 64L
+    private const val EXPR_BYTES = 48L
+    private const val VALUE_BYTES = 32L
+
+    // successors, predecessors, throwers and catchers with offsets and edges
+    private const val GRAPH_BYTES_PER_INST = 48L
+
+    val rawInstList: (JIRMethod, JIRInstList<JIRRawInst>) -> Int = { _, list ->
+        var bytes = LIST_BYTES
+        list.instructions.forEach { inst ->
+            bytes += INST_BYTES
+            inst.operands.forEach { expr -> bytes += EXPR_BYTES + expr.operands.size * VALUE_BYTES }
+        }
+        bytes.toWeight()
+    }
+
+    val instList: (JIRMethod, JIRInstList<JIRInst>) -> Int = { _, list ->
+        instructionsBytes(list.instructions).toWeight()
+    }
+
+    /**
+     * Instructions of flow graph are usually shared with cached instruction list, still they are counted
+     * as graph retains them after instruction list is evicted.
+     */
+    val flowGraph: (JIRMethod, JIRGraph) -> Int = { _, graph ->
+        (instructionsBytes(graph.instructions) + graph.instructions.size * GRAPH_BYTES_PER_INST).toWeight()
+    }
+
+    private fun instructionsBytes(instructions: List<JIRInst>): Long {
+        var bytes = LIST_BYTES
+        instructions.forEach { inst ->
+            bytes += INST_BYTES
+            inst.operands.forEach { expr -> bytes += EXPR_BYTES + expr.operands.size * VALUE_BYTES }
+        }
+        return bytes
+    }
+
+    private fun Long.toWeight(): Int = coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+}
@@ -15,9 +15,17 @@ import org.seqra.ir.impl.features.JIRFeatureEventImpl
 import org.seqra.ir.impl.features.classpaths.AbstractJIRInstResult.JIRFlowGraphResultImpl
 import org.seqra.ir.impl.features.classpaths.AbstractJIRInstResult.JIRInstListResultImpl
 import org.seqra.ir.impl.features.classpaths.AbstractJIRInstResult.JIRRawInstListResultImpl
-
+import org.seqra.ir.impl.storage.ers.ErsRawInstListStore
+
+/**
+ * Builds instructions of methods from bytecode.
+ *
+ * @param rawInstListStore if set, raw instruction lists are read from it instead of being built from bytecode,
+ * and newly built lists are saved to it
+ */
 class MethodInstructionsFeature(
-    private val keepLocalVariableNames: Boolean
+    private val keepLocalVariableNames: Boolean,
+    private val rawInstListStore: ErsRawInstListStore? = null
 ) : JIRMethodExtFeature {
 
     private val JIRMethod.methodFeatures
@@ -35,8 +43,10 @@ class MethodInstructionsFeature(
     }
 
     override fun rawInstList(method: JIRMethod): JIRMethodExtFeature.JIRRawInstListResult {
-        val list: JIRInstList<JIRRawInst> = method.withAsmNode { methodNode ->
+        val list: JIRInstList<JIRRawInst> = rawInstListStore?.find(method) ?: method.withAsmNode { methodNode ->
             RawInstListBuilder(method, methodNode, keepLocalVariableNames).build()
+        }.also {
+            rawInstListStore?.save(method, it)
         }
         return JIRRawInstListResultImpl(method, method.methodFeatures.fold(list) { value, feature ->
             feature.transformRawInstList(method, value)
@@ -10,6 +10,13 @@ import java.nio.charset.StandardCharsets
 
 abstract class AbstractByteCodeLocation(override val jarOrFolder: File) : JIRByteCodeLocation {
 
+    /**
+     * Hash of this location together with stamp it was calculated for. It is passed to refreshed location,
+     * see [inheritStampedHash].
+     */
+    @Volatile
+    private var stampedHash: StampedHash? = null
+
     override val path: String
         get() = jarOrFolder.absolutePath
 
@@ -17,6 +24,40 @@ abstract class AbstractByteCodeLocation(override val jarOrFolder: File) : JIRByt
 
     override fun isChanged() = fileSystemIdHash != currentHash
 
+    /**
+     * Is calculated only if [currentStamp] is changed since last calculation.
+     */
+    final override val currentHash: BigInteger
+        get() {
+            val stamp = currentStamp ?: return calculateHash()
+            val stampedHash = stampedHash
+            if (stampedHash != null && stampedHash.stamp == stamp) {
+                return stampedHash.hash
+            }
+            return calculateHash().also {
+                this.stampedHash = StampedHash(stamp, it)
+            }
+        }
+
+    /**
+     * Reuses hash calculated by [outdated] location, usually it has been just calculated by `isChanged()`.
+     */
+    protected fun inheritStampedHash(outdated: AbstractByteCodeLocation) {
+        stampedHash = outdated.stampedHash
+    }
+
+    /**
+     * Expensive hash of location content.
+     */
+    protected abstract fun calculateHash(): BigInteger
+
+    /**
+     * Cheap to calculate value which is changed each time location content could be changed,
+     * i.e. size, modification time and inode of files. `null` means that stamp can't be calculated and
+     * hash should be calculated each time.
+     */
+    protected abstract val currentStamp: Any?
+
     protected val String.shaHash: ByteArray
         get() {
             return Hashing.sha256()
@@ -30,4 +71,6 @@ abstract class AbstractByteCodeLocation(override val jarOrFolder: File) : JIRByt
                 .hashBytes(this)
                 .asBytes()
         }
+
+    private class StampedHash(val stamp: Any, val hash: BigInteger)
 }
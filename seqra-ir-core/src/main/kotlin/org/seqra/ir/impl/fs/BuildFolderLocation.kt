@@ -16,21 +16,23 @@ class BuildFolderLocation(folder: File) : AbstractByteCodeLocation(folder) {
     companion object : KLogging()
 
     @Suppress("UnstableApiUsage")
-    override val currentHash: BigInteger
-        get() {
-            return Hashing.sha256().newHasher().let { h ->
-                jarOrFolder.walk().filter { it.isFile }.sortedBy { it.name }.forEach {
-                    h.putString(it.name, UTF_8)
-                    h.putBytes(it.mapReadonly())
-                }
-                BigInteger(h.hash().asBytes())
+    override fun calculateHash(): BigInteger {
+        return Hashing.sha256().newHasher().let { h ->
+            jarOrFolder.walk().filter { it.isFile }.sortedBy { it.name }.forEach {
+                h.putString(it.name, UTF_8)
+                h.putBytes(it.mapReadonly())
             }
+            BigInteger(h.hash().asBytes())
         }
+    }
+
+    override val currentStamp: Any?
+        get() = jarOrFolder.takeIf { it.isDirectory }?.folderStamp
 
     override val type: LocationType
         get() = LocationType.APP
 
-    override fun createRefreshed() = BuildFolderLocation(jarOrFolder)
+    override fun createRefreshed() = BuildFolderLocation(jarOrFolder).also { it.inheritStampedHash(this) }
 
     override val classes: Map<String, ByteArray>
         get() {
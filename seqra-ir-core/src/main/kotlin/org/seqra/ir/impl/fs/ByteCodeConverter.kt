@@ -1,5 +1,6 @@
 package org.seqra.ir.impl.fs
 
+import org.seqra.ir.api.jvm.ClassParsingLevel
 import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.impl.storage.AnnotationValueKind
 import org.seqra.ir.impl.types.AnnotationInfo
@@ -26,7 +27,11 @@ import org.objectweb.asm.tree.LocalVariableNode
 import org.objectweb.asm.tree.MethodNode
 import org.objectweb.asm.tree.TypeAnnotationNode
 
-fun ClassNode.asClassInfo(bytecode: ByteArray) = ClassInfo(
+/**
+ * @param withLocalVariables whether names of method parameters can be taken from local variables tables,
+ * they are present only if the class node is read with code
+ */
+fun ClassNode.asClassInfo(bytecode: ByteArray, withLocalVariables: Boolean = true) = ClassInfo(
     name = Type.getObjectType(name).className.interned,
     signature = signature?.interned,
     access = innerClasses?.firstOrNull { it.name == name }?.access ?: access,
@@ -39,7 +44,7 @@ fun ClassNode.asClassInfo(bytecode: ByteArray) = ClassInfo(
     outerMethodDesc = outerMethodDesc?.interned,
     superClass = superName?.className?.interned,
     interfaces = interfaces.map { it.className.interned }.adjustEmptyList(),
-    methods = methods.map { it.asMethodInfo() }.adjustEmptyList(),
+    methods = methods.map { it.asMethodInfo(withLocalVariables) }.adjustEmptyList(),
     fields = fields.map { it.asFieldInfo() }.adjustEmptyList(),
     annotations = concatLists(
         visibleAnnotations.asAnnotationInfos(true),
@@ -106,7 +111,7 @@ private fun List<AnnotationNode>?.asAnnotationInfos(visible: Boolean): List<Anno
 private fun List<TypeAnnotationNode>?.asTypeAnnotationInfos(visible: Boolean): List<AnnotationInfo> =
     orEmpty().map { it.asTypeAnnotationInfo(visible) }
 
-private fun MethodNode.asMethodInfo(): MethodInfo {
+private fun MethodNode.asMethodInfo(withLocalVariables: Boolean): MethodInfo {
     val params = Type.getArgumentTypes(desc).map { it.className.interned }
     return MethodInfo(
         name = name.interned,
@@ -124,7 +129,7 @@ private fun MethodNode.asMethodInfo(): MethodInfo {
             List(params.size) { index ->
                 ParameterInfo(
                     index = index,
-                    name = argumentName(index)?.interned,
+                    name = argumentName(index, withLocalVariables)?.interned,
                     access = parameters?.get(index)?.access ?: Opcodes.ACC_PUBLIC,
                     type = params[index],
                     annotations = concatLists(
@@ -137,8 +142,8 @@ private fun MethodNode.asMethodInfo(): MethodInfo {
     )
 }
 
-private fun MethodNode.argumentName(argIndex: Int): String? {
-    localVariables?.let {
+private fun MethodNode.argumentName(argIndex: Int, withLocalVariables: Boolean): String? {
+    localVariables?.takeIf { withLocalVariables }?.let {
         (argIndex + 1 - (access and Opcodes.ACC_STATIC).countOneBits()).run {
             if (it.size > this) {
                 return ArrayList(it).sortedBy(LocalVariableNode::index)[this].name
@@ -164,6 +169,9 @@ private fun FieldNode.asFieldInfo() = FieldInfo(
 
 val ClassSource.info: ClassInfo
     get() {
+        if (this is ParsedClassSource) {
+            return classInfo
+        }
         return newClassNode(ClassReader.SKIP_CODE).asClassInfo(byteCode)
     }
 
@@ -172,6 +180,15 @@ val ClassSource.fullAsmNode: ClassNode
         return newClassNode(ClassReader.EXPAND_FRAMES)
     }
 
+/**
+ * Parses byte-code once for both persistence and indexing at [level] required by indexers.
+ */
+fun ClassSource.parsed(level: ClassParsingLevel): ParsedClassSource {
+    val classNode = newClassNode(level.asmOptions)
+    // local variables are not available with SKIP_CODE, so they are not used in order to persist the same info
+    return ParsedClassSource(this, classNode, classNode.asClassInfo(byteCode, withLocalVariables = false))
+}
+
 //fun ClassSource.fullAsmNodeWithFrames(classpath: JIRClasspath): ClassNode {
 //    var classNode = fullAsmNode
 //    classNode = when {
@@ -16,3 +16,17 @@ val RegisteredLocation.lazySources: List<ClassSource>
             LazyClassSourceImpl(this, it)
         }
     }
+
+/**
+ * Lazily reads byte-code of the location by chunks of [chunkSize] classes, so the whole location
+ * doesn't have to be kept in memory at once.
+ */
+fun RegisteredLocation.sourceChunks(chunkSize: Int): Sequence<List<ClassSource>> {
+    val jIRLocation = jIRLocation ?: return emptySequence()
+    val classNames = jIRLocation.classNames ?: return sequenceOf(sources)
+    return classNames.asSequence().chunked(chunkSize).map { chunk ->
+        chunk.mapNotNull { className ->
+            jIRLocation.resolve(className)?.let { ClassSourceImpl(this, className, it) }
+        }
+    }
+}
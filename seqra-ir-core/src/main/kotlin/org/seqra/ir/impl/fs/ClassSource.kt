@@ -4,6 +4,8 @@ import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.api.jvm.JIRDatabase
 import org.seqra.ir.api.jvm.RegisteredLocation
 import org.seqra.ir.api.jvm.throwClassNotFound
+import org.seqra.ir.impl.types.ClassInfo
+import org.objectweb.asm.tree.ClassNode
 
 class ClassSourceImpl(
     override val location: RegisteredLocation,
@@ -11,6 +13,15 @@ class ClassSourceImpl(
     override val byteCode: ByteArray
 ) : ClassSource
 
+/**
+ * Class source with byte-code already parsed by [parsed], so persistence and indexers don't parse it again.
+ */
+class ParsedClassSource(
+    source: ClassSource,
+    val classNode: ClassNode,
+    val classInfo: ClassInfo
+) : ClassSource by source
+
 class LazyClassSourceImpl(
     override val location: RegisteredLocation,
     override val className: String
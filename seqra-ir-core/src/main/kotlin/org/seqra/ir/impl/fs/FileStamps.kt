@@ -0,0 +1,58 @@
+package org.seqra.ir.impl.fs
+
+import com.google.common.hash.Hashing
+import java.io.File
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.BasicFileAttributes
+import kotlin.text.Charsets.UTF_8
+
+/**
+ * Size, modification time and inode (if file system provides it) of a file
+ */
+internal data class FileStamp(val size: Long, val lastModified: Long, val fileKey: Any?)
+
+internal val File.fileStamp: FileStamp?
+    get() = try {
+        toPath().attributes.toStamp()
+    } catch (e: IOException) {
+        null
+    }
+
+/**
+ * Stamp of all files of a folder. Instead of keeping manifest of stamps of all files,
+ * stamps are hashed together with relative paths of files.
+ */
+@Suppress("UnstableApiUsage")
+internal val File.folderStamp: Any?
+    get() = try {
+        val root = toPath()
+        val hasher = Hashing.murmur3_128().newHasher()
+        var filesCount = 0
+        Files.walk(root).use { paths ->
+            paths.forEach { path ->
+                val attributes = path.attributes
+                if (attributes.isRegularFile) {
+                    val stamp = attributes.toStamp()
+                    hasher.putString(root.relativize(path).toString(), UTF_8)
+                    hasher.putLong(stamp.size)
+                    hasher.putLong(stamp.lastModified)
+                    hasher.putInt(stamp.fileKey.hashCode())
+                    filesCount++
+                }
+            }
+        }
+        hasher.putInt(filesCount)
+        hasher.hash()
+    } catch (e: IOException) {
+        null
+    } catch (e: UncheckedIOException) {
+        null
+    }
+
+private val Path.attributes: BasicFileAttributes
+    get() = Files.readAttributes(this, BasicFileAttributes::class.java)
+
+private fun BasicFileAttributes.toStamp() = FileStamp(size(), lastModifiedTime().toMillis(), fileKey())
@@ -19,21 +19,23 @@ open class JarLocation(
     companion object : KLogging()
 
     @Suppress("UnstableApiUsage")
-    override val currentHash: BigInteger
-        get() {
-            val jarFile = jarFile() ?: return BigInteger.ZERO
-            return Hashing.sha256().newHasher().let { h ->
-                jarFile.use {
-                    it.entries().asSequence().filter { !it.isDirectory }.sortedBy { it.name }.forEach { entry ->
-                        h.putString(entry.name, UTF_8)
-                        h.putLong(entry.crc)
-                        h.putLong(entry.size)
-                        h.putLong(entry.compressedSize)
-                    }
-                    BigInteger(h.hash().asBytes())
+    override fun calculateHash(): BigInteger {
+        val jarFile = jarFile() ?: return BigInteger.ZERO
+        return Hashing.sha256().newHasher().let { h ->
+            jarFile.use {
+                it.entries().asSequence().filter { !it.isDirectory }.sortedBy { it.name }.forEach { entry ->
+                    h.putString(entry.name, UTF_8)
+                    h.putLong(entry.crc)
+                    h.putLong(entry.size)
+                    h.putLong(entry.compressedSize)
                 }
+                BigInteger(h.hash().asBytes())
             }
         }
+    }
+
+    override val currentStamp: Any?
+        get() = jarOrFolder.takeIf { it.isFile }?.fileStamp
 
     override val type: LocationType
         get() = when {
@@ -41,7 +43,13 @@ open class JarLocation(
             else -> LocationType.APP
         }
 
-    override fun createRefreshed() = JarLocation(jarOrFolder, isRuntime, runtimeVersion)
+    override fun createRefreshed(): JarLocation {
+        // jar could be changed, so opened jar file is outdated
+        if (jarFacadeDelegate.isInitialized()) {
+            jarFacade.close()
+        }
+        return JarLocation(jarOrFolder, isRuntime, runtimeVersion).also { it.inheritStampedHash(this) }
+    }
 
     override val classes: Map<String, ByteArray> by softLazy {
         try {
@@ -59,10 +67,12 @@ open class JarLocation(
         return jarFacade.inputStreamOf(classFullName)
     }
 
-    protected open val jarFacade: JarFacade by lazy {
+    private val jarFacadeDelegate = lazy {
         JarFacade(runtimeVersion.majorVersion) { jarFile() }
     }
 
+    protected open val jarFacade: JarFacade by jarFacadeDelegate
+
     private fun jarFile(): JarFile? {
         return if (!jarOrFolder.exists() || !jarOrFolder.isFile) {
             null
@@ -19,6 +19,8 @@ class JarFacade(private val runtimeVersion: Int, private val getter: () -> JarFi
         private val MULTI_RELEASE = Attributes.Name("Multi-Release")
     }
 
+    private val sharedJarFile = SharedJarFile(getter)
+
     private val isJmod: Boolean
     private val entries: Map<String, JarEntry>?
     private val isMultiReleaseEnabledInManifest: Boolean
@@ -61,19 +63,25 @@ class JarFacade(private val runtimeVersion: Int, private val getter: () -> JarFi
 
     fun inputStreamOf(className: String): ByteArray? {
         return classes[className]?.let { entry ->
-            getter()?.use { it.getInputStream(entry).use { it.readBytes() } } // let's use new instance always
+            sharedJarFile.use { jarFile -> jarFile.getInputStream(entry).use { it.readBytes() } }
         }
     }
 
     val bytecode: Map<String, ByteArray>
         get() {
-            val jarFile = getter() ?: return emptyMap()
-            return jarFile.use {
+            return sharedJarFile.use { jarFile ->
                 val buffer = ByteArray(DEFAULT_BUFFER_SIZE * 8)
                 classes.entries.associate { it.key to jarFile.getInputStream(it.value).use { it.readBytes(buffer) } }
-            }
+            } ?: emptyMap()
         }
 
+    /**
+     * Closes jar file kept open between reads, it will be opened again on next read
+     */
+    fun close() {
+        sharedJarFile.close()
+    }
+
 }
 
 private fun InputStream.readBytes(buffer: ByteArray): ByteArray {
@@ -0,0 +1,161 @@
+package org.seqra.ir.impl.fs
+
+import mu.KLogging
+import java.io.File
+import java.util.jar.JarFile
+
+/**
+ * Jar file which is kept open between reads. [JarFile] is safe for concurrent reads, so the same instance
+ * is shared by all readers. Opened file is closed when it is evicted from [JarFilesPool] or on [close],
+ * but not before all readers that acquired it have finished.
+ */
+internal class SharedJarFile(private val getter: () -> JarFile?) {
+
+    companion object : KLogging()
+
+    private var current: Opened? = null
+
+    fun <T> use(body: (JarFile) -> T): T? {
+        val opened = acquire() ?: return null
+        try {
+            return body(opened.jarFile)
+        } finally {
+            release(opened)
+        }
+    }
+
+    /**
+     * Closes currently opened file, next read opens the file again.
+     */
+    fun close() {
+        val opened = synchronized(this) { current } ?: return
+        close(opened)
+    }
+
+    private fun close(opened: Opened) {
+        val detached = synchronized(this) {
+            (current === opened).also {
+                if (it) {
+                    current = null
+                    opened.detached = true
+                }
+            }
+        }
+        if (detached) {
+            JarFilesPool.remove(opened)
+            closeIfUnused(opened)
+        }
+    }
+
+    private fun acquire(): Opened? {
+        var isNew = false
+        val opened = synchronized(this) {
+            val opened = current ?: getter()?.let { Opened(it) }?.also {
+                current = it
+                isNew = true
+            }
+            opened?.also { it.users++ }
+        } ?: return null
+        // pool is called outside of this monitor because it closes other files while evicting them
+        if (isNew) {
+            JarFilesPool.add(opened)
+        } else {
+            JarFilesPool.touch(opened)
+        }
+        return opened
+    }
+
+    private fun release(opened: Opened) {
+        synchronized(this) {
+            opened.users--
+        }
+        closeIfUnused(opened)
+    }
+
+    private fun closeIfUnused(opened: Opened) {
+        val shouldClose = synchronized(this) {
+            (opened.detached && opened.users == 0 && !opened.closed).also {
+                if (it) opened.closed = true
+            }
+        }
+        if (shouldClose) {
+            try {
+                opened.jarFile.close()
+            } catch (e: Exception) {
+                logger.warn(e) { "error closing jar ${opened.jarFile.name}" }
+            }
+        }
+    }
+
+    inner class Opened(val jarFile: JarFile) {
+        val path: String = File(jarFile.name).absolutePath
+        var users = 0
+
+        // is set once the file is closed or about to be closed, it is read by pool without this monitor
+        @Volatile
+        var detached = false
+        var closed = false
+
+        fun close() = this@SharedJarFile.close(this)
+    }
+}
+
+/**
+ * Bounds number of simultaneously opened [SharedJarFile]s, least recently used files are closed first.
+ */
+internal object JarFilesPool {
+
+    private val maxOpenedFiles = Integer.getInteger("org.seqra.ir.impl.fs.maxOpenedJars", 256)
+
+    private val opened = LinkedHashMap<SharedJarFile.Opened, Unit>(16, 0.75f, true)
+
+    fun add(jar: SharedJarFile.Opened) {
+        val evicted = synchronized(opened) {
+            // file could be closed after it was opened but before it is added
+            if (jar.detached) {
+                return
+            }
+            opened[jar] = Unit
+            removeWhile { opened.size > maxOpenedFiles }
+        }
+        evicted.forEach { it.close() }
+    }
+
+    fun touch(jar: SharedJarFile.Opened) {
+        synchronized(opened) {
+            opened[jar]
+        }
+    }
+
+    fun remove(jar: SharedJarFile.Opened) {
+        synchronized(opened) {
+            opened.remove(jar)
+        }
+    }
+
+    val openedPaths: Set<String>
+        get() = synchronized(opened) { opened.keys.mapTo(HashSet()) { it.path } }
+
+    /**
+     * Closes opened files of jars with specified absolute paths, e.g. when database using them is closed.
+     */
+    fun close(paths: Set<String>) {
+        if (paths.isEmpty()) {
+            return
+        }
+        val closed = synchronized(opened) {
+            opened.keys.filter { it.path in paths }.onEach { opened.remove(it) }
+        }
+        closed.forEach { it.close() }
+    }
+
+    private inline fun removeWhile(predicate: () -> Boolean): List<SharedJarFile.Opened> {
+        val result = mutableListOf<SharedJarFile.Opened>()
+        val iterator = opened.keys.iterator()
+        while (predicate() && iterator.hasNext()) {
+            result += iterator.next()
+            iterator.remove()
+        }
+        return result
+    }
+}
@@ -12,12 +12,14 @@ import org.seqra.ir.impl.LocationsRegistry
 import org.seqra.ir.impl.LocationsRegistrySnapshot
 import org.seqra.ir.impl.RefreshResult
 import org.seqra.ir.impl.RegistrationResult
+import org.seqra.ir.impl.fs.JarFilesPool
 import org.seqra.ir.impl.storage.jooq.tables.records.BytecodelocationsRecord
 import org.seqra.ir.impl.storage.jooq.tables.references.BYTECODELOCATIONS
 import java.sql.Types
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentHashMap.KeySetView
 import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 
 class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : LocationsRegistry {
 
@@ -49,54 +51,16 @@ class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : Location
         }
     }
 
+    // number of changes of registered locations, is used to detect if loaded view is already outdated
+    private val modifications = AtomicLong()
+    private val view = AtomicReference<LocationsView?>()
+
     override val actualLocations: List<PersistentByteCodeLocation>
-        get() = persistence.read { context ->
-            context.execute(
-                sqlAction = {
-                    context.dslContext.selectFrom(BYTECODELOCATIONS).fetch { record ->
-                        PersistentByteCodeLocation(
-                            jIRdb,
-                            PersistentByteCodeLocationData.fromSqlRecord(record)
-                        )
-                    }
-                },
-                noSqlAction = {
-                    context.txn.all(BytecodeLocationEntity.BYTECODE_LOCATION_ENTITY_TYPE).map { entity ->
-                        PersistentByteCodeLocation(
-                            jIRdb,
-                            PersistentByteCodeLocationData.fromErsEntity(entity)
-                        )
-                    }.toList()
-                }
-            )
-        }
+        get() = currentView().locations
 
     private val notRuntimeLocations: List<PersistentByteCodeLocation>
-        get() = persistence.read { context ->
-            context.execute(
-                sqlAction = {
-                    context.dslContext.selectFrom(BYTECODELOCATIONS).where(BYTECODELOCATIONS.RUNTIME.ne(true))
-                        .fetch { record ->
-                            PersistentByteCodeLocation(
-                                jIRdb,
-                                PersistentByteCodeLocationData.fromSqlRecord(record)
-                            )
-                        }
-                },
-                noSqlAction = {
-                    context.txn.find(
-                        type = BytecodeLocationEntity.BYTECODE_LOCATION_ENTITY_TYPE,
-                        propertyName = BytecodeLocationEntity.IS_RUNTIME,
-                        value = false
-                    ).map { entity ->
-                        PersistentByteCodeLocation(
-                            jIRdb,
-                            PersistentByteCodeLocationData.fromErsEntity(entity)
-                        )
-                    }.toList()
-                }
-            )
-        }
+        // locations are created anew in order to have isChanged() checked against persisted state
+        get() = currentView().data.filterNot { it.runtime }.map { PersistentByteCodeLocation(jIRdb, it) }
 
     override lateinit var runtimeLocations: List<RegisteredLocation>
 
@@ -145,6 +109,15 @@ class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : Location
 
     override fun registerIfNeeded(locations: List<JIRByteCodeLocation>): RegistrationResult {
         val uniqueLocations = locations.toSet()
+        val view = currentView()
+        val registered = uniqueLocations.map { location ->
+            val found = view.byFileSystemId[location.fileSystemId] ?: return register(uniqueLocations)
+            PersistentByteCodeLocation(jIRdb, found, location)
+        }
+        return RegistrationResult(registered, emptyList())
+    }
+
+    private fun register(uniqueLocations: Set<JIRByteCodeLocation>): RegistrationResult {
         return persistence.write { context ->
             val result = arrayListOf<RegisteredLocation>()
             val toAdd = arrayListOf<JIRByteCodeLocation>()
@@ -215,13 +188,14 @@ class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : Location
                 )
             }
             RegistrationResult(result + added, added)
-        }
+        }.also { invalidateView() }
     }
 
     private fun StorageContext.deprecate(locations: List<RegisteredLocation>) {
         locations.forEach {
             jIRdb.featuresRegistry.broadcast(JIRInternalSignal.LocationRemoved(it))
         }
+        JarFilesPool.close(locations.mapTo(HashSet()) { it.path })
         val locationIds = locations.map { it.id }.toSet()
         execute(
             sqlAction = {
@@ -294,6 +268,8 @@ class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : Location
                 refreshed
             }
         }
+        // even if nothing is changed in persistence, locations are re-created to reflect file system changes
+        invalidateView()
         return RefreshResult(new = new)
     }
 
@@ -304,6 +280,10 @@ class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : Location
     }
 
     override fun cleanup(): CleanupResult {
+        val view = currentView()
+        if (view.outdatedIds.all { id -> snapshots.any { it.ids.contains(id) } }) {
+            return CleanupResult(emptyList())
+        }
         return persistence.write { context ->
             val deprecated = context.execute(
                 sqlAction = {
@@ -321,7 +301,64 @@ class PersistentLocationsRegistry(private val jIRdb: JIRDatabaseImpl) : Location
                 .map { PersistentByteCodeLocation(jIRdb, it) }
             context.deprecate(deprecated)
             CleanupResult(deprecated)
+        }.also { invalidateView() }
+    }
+
+    /**
+     * Is called after persistence is replaced or changed not by this registry.
+     */
+    override fun invalidate() = invalidateView()
+
+    private fun invalidateView() {
+        modifications.incrementAndGet()
+        view.set(null)
+    }
+
+    private fun currentView(): LocationsView {
+        view.get()?.let { return it }
+        val modificationsBefore = modifications.get()
+        val loaded = loadView()
+        // if locations were modified while loading, loaded view can miss the modification
+        if (modifications.get() == modificationsBefore) {
+            view.compareAndSet(null, loaded)
         }
+        return loaded
+    }
+
+    private fun loadView(): LocationsView = persistence.read { context ->
+        context.execute(
+            sqlAction = {
+                val records = context.dslContext.selectFrom(BYTECODELOCATIONS).fetch()
+                LocationsView(
+                    data = records.map { PersistentByteCodeLocationData.fromSqlRecord(it) },
+                    outdatedIds = records.filter { it.updatedId != null }.mapTo(hashSetOf()) { it.id!! }
+                )
+            },
+            noSqlAction = {
+                val data = arrayListOf<PersistentByteCodeLocationData>()
+                val outdatedIds = hashSetOf<Long>()
+                context.txn.all(BytecodeLocationEntity.BYTECODE_LOCATION_ENTITY_TYPE).forEach { entity ->
+                    data += PersistentByteCodeLocationData.fromErsEntity(entity)
+                    if (entity.getLinks(BytecodeLocationEntity.UPDATED_LINK).isNotEmpty) {
+                        outdatedIds += entity.id.instanceId
+                    }
+                }
+                LocationsView(data, outdatedIds)
+            }
+        )
+    }
+
+    /**
+     * In-memory view of registered locations. It is loaded once and dropped on each change made by the registry,
+     * so that reading registered locations doesn't touch persistence.
+     */
+    private inner class LocationsView(
+        val data: List<PersistentByteCodeLocationData>,
+        // locations which have updated versions and can be deprecated once they are not referenced by snapshots
+        val outdatedIds: Set<Long>
+    ) {
+        val locations = data.map { PersistentByteCodeLocation(jIRdb, it) }
+        val byFileSystemId = data.associateBy { it.fileSystemId }
     }
 
     override fun close(snapshot: LocationsRegistrySnapshot) {
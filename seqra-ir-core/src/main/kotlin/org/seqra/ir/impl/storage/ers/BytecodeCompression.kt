@@ -0,0 +1,200 @@
+package org.seqra.ir.impl.storage.ers
+
+import java.io.ByteArrayOutputStream
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * Compression of class bytecode stored in ERS. Bytecode is deflated with a preset dictionary of
+ * constant pool entries which are frequent in JRE and Kotlin classes, so even small classes are compressed well.
+ *
+ * Compressed bytecode starts with [DEFLATE_V1] followed by 4 bytes of uncompressed size and deflated data.
+ * Since bytecode of a class always starts with `0xCAFEBABE`, uncompressed bytecode is distinguished from
+ * compressed one, and [decompress] accepts both.
+ */
+internal object BytecodeCompression {
+
+    private const val DEFLATE_V1: Byte = 1
+    private const val HEADER_SIZE = 5
+
+    private val deflaters = ThreadLocal.withInitial { Deflater(Deflater.DEFAULT_COMPRESSION, true) }
+    private val inflaters = ThreadLocal.withInitial { Inflater(true) }
+
+    fun compress(bytecode: ByteArray): ByteArray {
+        val deflater = deflaters.get()
+        deflater.reset()
+        deflater.setDictionary(dictionary)
+        deflater.setInput(bytecode)
+        deflater.finish()
+        val output = ByteArrayOutputStream(bytecode.size / 2 + HEADER_SIZE)
+        output.write(DEFLATE_V1.toInt())
+        output.writeInt(bytecode.size)
+        val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer))
+        }
+        return output.toByteArray()
+    }
+
+    fun decompress(bytes: ByteArray): ByteArray {
+        if (bytes.isEmpty() || bytes[0] != DEFLATE_V1) {
+            return bytes
+        }
+        val size = bytes.readInt(1)
+        val result = ByteArray(size)
+        val inflater = inflaters.get()
+        inflater.reset()
+        inflater.setDictionary(dictionary)
+        inflater.setInput(bytes, HEADER_SIZE, bytes.size - HEADER_SIZE)
+        var offset = 0
+        while (offset < size) {
+            val inflated = inflater.inflate(result, offset, size - offset)
+            if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                throw DataFormatException("Compressed bytecode is truncated: $offset of $size bytes inflated")
+            }
+            offset += inflated
+        }
+        return result
+    }
+
+    private fun ByteArrayOutputStream.writeInt(value: Int) {
+        write(value ushr 24)
+        write(value ushr 16)
+        write(value ushr 8)
+        write(value)
+    }
+
+    private fun ByteArray.readInt(offset: Int): Int {
+        return (this[offset].toInt() and 0xff shl 24) or
+                (this[offset + 1].toInt() and 0xff shl 16) or
+                (this[offset + 2].toInt() and 0xff shl 8) or
+                (this[offset + 3].toInt() and 0xff)
+    }
+
+    /**
+     * Entries are encoded the same way they are encoded in constant pool (`CONSTANT_Utf8` tag, length, bytes),
+     * so matches include tags and lengths. Deflate prefers closer matches, so most frequent entries go last.
+     */
+    private fun buildDictionary(): ByteArray {
+        val output = ByteArrayOutputStream()
+        dictionaryEntries.forEach { entry ->
+            val bytes = entry.toByteArray(Charsets.UTF_8)
+            output.write(1)
+            output.write(bytes.size ushr 8)
+            output.write(bytes.size)
+            output.write(bytes)
+        }
+        return output.toByteArray()
+    }
+
+    private val dictionaryEntries = listOf(
+        "java/lang/invoke/LambdaMetafactory",
+        "metafactory",
+        "(Ljava/lang/invoke/MethodHandles\$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+                "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)" +
+                "Ljava/lang/invoke/CallSite;",
+        "java/lang/invoke/MethodHandles\$Lookup",
+        "java/lang/invoke/MethodHandles",
+        "Lookup",
+        "BootstrapMethods",
+        "NestMembers",
+        "NestHost",
+        "EnclosingMethod",
+        "Deprecated",
+        "RuntimeInvisibleParameterAnnotations",
+        "RuntimeVisibleParameterAnnotations",
+        "MethodParameters",
+        "ConstantValue",
+        "java/lang/Enum",
+        "\$VALUES",
+        "values",
+        "valueOf",
+        "java/lang/Class",
+        "java/lang/System",
+        "java/io/PrintStream",
+        "java/util/Objects",
+        "requireNonNull",
+        "java/lang/Integer",
+        "java/lang/Long",
+        "java/lang/Boolean",
+        "java/util/Map",
+        "java/util/List",
+        "java/util/Collection",
+        "java/util/Iterator",
+        "java/lang/Iterable",
+        "iterator",
+        "()Ljava/util/Iterator;",
+        "hasNext",
+        "next",
+        "size",
+        "get",
+        "add",
+        "(Ljava/lang/Object;)Z",
+        "java/lang/IllegalStateException",
+        "java/lang/IllegalArgumentException",
+        "java/lang/NullPointerException",
+        "java/lang/UnsupportedOperationException",
+        "java/lang/RuntimeException",
+        "java/lang/Exception",
+        "java/lang/Throwable",
+        "Exceptions",
+        "kotlin/jvm/functions/Function0",
+        "kotlin/jvm/functions/Function1",
+        "kotlin/jvm/internal/Lambda",
+        "kotlin/Unit",
+        "INSTANCE",
+        "Companion",
+        "kotlin/jvm/internal/DefaultConstructorMarker",
+        "Lkotlin/jvm/internal/DefaultConstructorMarker;",
+        "kotlin/jvm/internal/SourceDebugExtension",
+        "SourceDebugExtension",
+        "checkNotNull",
+        "checkNotNullExpressionValue",
+        "checkNotNullParameter",
+        "kotlin/jvm/internal/Intrinsics",
+        "Lorg/jetbrains/annotations/Nullable;",
+        "Lorg/jetbrains/annotations/NotNull;",
+        "RuntimeInvisibleAnnotations",
+        "d1",
+        "d2",
+        "mv",
+        "k",
+        "xi",
+        "Lkotlin/Metadata;",
+        "RuntimeVisibleAnnotations",
+        "java/lang/StringBuilder",
+        "append",
+        "(Ljava/lang/String;)Ljava/lang/StringBuilder;",
+        "(Ljava/lang/Object;)Ljava/lang/StringBuilder;",
+        "(I)Ljava/lang/StringBuilder;",
+        "toString",
+        "hashCode",
+        "equals",
+        "()Ljava/lang/String;",
+        "()I",
+        "()Z",
+        "(Ljava/lang/Object;)V",
+        "(Ljava/lang/String;)V",
+        "()Ljava/lang/Object;",
+        "Ljava/lang/Object;",
+        "Ljava/lang/String;",
+        "java/lang/String",
+        "InnerClasses",
+        "Signature",
+        "LocalVariableTypeTable",
+        "StackMapTable",
+        "SourceFile",
+        "this",
+        "LocalVariableTable",
+        "LineNumberTable",
+        "Code",
+        "()V",
+        "<clinit>",
+        "<init>",
+        "java/lang/Object",
+    )
+
+    // should be initialized after entries
+    private val dictionary: ByteArray = buildDictionary()
+}
@@ -29,7 +29,9 @@ class ErsDatabasePersistenceSPI : JIRDatabasePersistenceSPI {
             ers = EntityRelationshipStorageSPI.getProvider(jIRErsSettings.ersId).newStorage(
                 persistenceLocation = settings.persistenceSettings.persistenceLocation,
                 settings = jIRErsSettings.ersSettings
-            )
+            ),
+            compressBytecode = settings.compressBytecode,
+            lazySymbols = settings.lazySymbols
         )
     }
 
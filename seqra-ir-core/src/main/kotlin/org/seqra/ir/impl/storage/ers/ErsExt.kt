@@ -1,12 +1,16 @@
 package org.seqra.ir.impl.storage.ers
 
+import com.google.common.hash.Hashing
 import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.api.jvm.JIRDatabase
 import org.seqra.ir.api.jvm.JIRDatabasePersistence
 import org.seqra.ir.api.storage.ers.Entity
+import org.seqra.ir.api.storage.ers.EntityIterable
+import org.seqra.ir.api.storage.ers.Transaction
 import org.seqra.ir.api.storage.ers.compressed
 import org.seqra.ir.api.storage.ers.getEntityOrNull
 import org.seqra.ir.impl.storage.txn
+import java.nio.ByteBuffer
 
 fun Entity.toClassSource(
     persistence: JIRDatabasePersistence,
@@ -31,6 +35,32 @@ fun Sequence<Entity>.toClassSourceSequence(db: JIRDatabase): Sequence<ClassSourc
     }
 }
 
+/**
+ * Composite key of a class by its name and location. It is stored as searchable `nameLocationId` property,
+ * so classes with a name in a location are found by a single index lookup.
+ */
+fun classNameLocationKey(nameId: Long, locationId: Long): ByteArray =
+    ByteBuffer.allocate(Long.SIZE_BYTES * 2).putLong(nameId).putLong(locationId).array()
+
+/**
+ * Finds classes with specified name in specified location by their composite key.
+ */
+fun Transaction.findClasses(nameId: Long, locationId: Long): EntityIterable =
+    find("Class", "nameLocationId", classNameLocationKey(nameId, locationId))
+
+/**
+ * Finds classes with specified name in any of specified locations. If there are more classes with the name
+ * than locations (e.g., a database is shared by many classpaths), the classes are looked up by composite key
+ * in each location rather than checked one by one.
+ */
+fun Transaction.findClasses(nameId: Long, locationIds: Set<Long>): Sequence<Entity> {
+    val classes = find("Class", "nameId", nameId.compressed)
+    if (classes.take(locationIds.size + 1).count() <= locationIds.size) {
+        return classes.filterLocations(locationIds)
+    }
+    return locationIds.fold(EntityIterable.EMPTY) { result, locationId -> result + findClasses(nameId, locationId) }
+}
+
 fun Sequence<Entity>.filterDeleted(): Sequence<Entity> = filter { it.get<Boolean>("isDeleted") != true }
 
 fun Sequence<Entity>.filterLocations(locationIds: Set<Long>): Sequence<Entity> = filter {
@@ -51,14 +81,33 @@ fun <T> Sequence<T>.exactSingleOrNull(): T? {
     }
 }
 
+/**
+ * Hash of class bytecode which is stored as `hc` property of `Class` entity.
+ */
+@Suppress("UnstableApiUsage")
+internal fun ByteArray.bytecodeHash(): Long {
+    return Hashing.murmur3_128().newHasher().putBytes(this).hash().asBytes().let {
+        check(it.size == 16) { "MurMur3_128 hash function should return byte array of size 16" }
+        with(ByteBuffer.wrap(it)) {
+            long xor long
+        }
+    }
+}
+
 val Entity?.bytecode: LazyBytecode get() = LazyBytecode(this)
 
 class LazyBytecode(private val clazz: Entity?) {
 
     private val blobName = "bytecode${notNullClass().id.instanceId and 0xff}"
 
-    operator fun invoke(): ByteArray? = clazz?.getRawBlob(blobName)
+    /**
+     * Returns uncompressed bytecode regardless of the way it is stored
+     */
+    operator fun invoke(): ByteArray? = clazz?.getRawBlob(blobName)?.let { BytecodeCompression.decompress(it) }
 
+    /**
+     * @param bytecode bytecode to store as is, either raw or compressed by [BytecodeCompression]
+     */
     operator fun invoke(bytecode: ByteArray?) = notNullClass().setRawBlob(blobName, bytecode)
 
     private fun notNullClass(): Entity = requireNotNull(clazz) { "Class entity cannot be null" }
@@ -81,7 +130,8 @@ private class ErsClassSource(
                 cachedByteCode!!
             } else {
                 persistence.findBytecode(checkedClassId).also {
-                    cachedByteCode?.let {
+                    // bytecode of the expired class is replaced, but it's not cached if it wasn't initially
+                    if (cachedByteCode != null) {
                         cachedByteCode = it
                     }
                 }
@@ -96,9 +146,8 @@ private class ErsClassSource(
         // Since location is mutable, class entity can become expired (deleted)
         // In that case, we have to re-evaluate it
         if (result == null || result.get<Boolean>("isDeleted") == true) {
-            result = txn.find("Class", "nameId", nameId.compressed)
+            result = txn.findClasses(nameId, locationId)
                 .filterDeleted()
-                .filterLocations(locationId)
                 .single()
             classId = result.id.instanceId
         }
@@ -1,6 +1,5 @@
 package org.seqra.ir.impl.storage.ers
 
-import com.google.common.hash.Hashing
 import mu.KotlinLogging
 import org.seqra.ir.api.jvm.ClassSource
 import org.seqra.ir.api.jvm.JIRClasspath
@@ -26,11 +25,14 @@ import org.seqra.ir.impl.storage.txn
 import org.seqra.ir.impl.types.AnnotationInfo
 import org.seqra.ir.impl.types.AnnotationValue
 import org.seqra.ir.impl.types.AnnotationValueList
+import org.seqra.ir.impl.types.ClassInfo
 import org.seqra.ir.impl.types.ClassRef
 import org.seqra.ir.impl.types.EnumRef
 import org.seqra.ir.impl.types.PrimitiveValue
 import org.seqra.ir.impl.types.RefKind
-import java.nio.ByteBuffer
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
@@ -38,22 +40,40 @@ class ErsPersistenceImpl(
     javaRuntime: JavaRuntime,
     clearOnStart: Boolean,
     override var ers: EntityRelationshipStorage,
+    private val compressBytecode: Boolean = false,
+    lazySymbols: Boolean = false,
 ) : AbstractJIRDbPersistence(javaRuntime) {
     companion object {
         private val logger = KotlinLogging.logger {}
+
+        // max number of classes written by single transaction, unless a single location has more classes
+        private val persistBatchSize = Integer.getInteger("org.seqra.ir.impl.storage.ers.persistBatchSize", 20_000)
+
+        // version of the layout of persisted entities, storages of other versions are dropped on start
+        // 1: classes are found by composite "nameLocationId" key
+        private const val FORMAT_VERSION = 1
     }
 
     private val lock = ReentrantLock(true)
+    private val pendingBatches = ConcurrentLinkedQueue<PersistBatch>()
+
+    /**
+     * Immutable storage is either loaded from a dump or converted by [setImmutable], it can't be written to.
+     */
+    @Volatile
+    var isImmutable = false
+        private set
 
     init {
-        if (clearOnStart || !runtimeProcessed) {
-            write {
-                it.txn.dropAll()
+        if (clearOnStart || !runtimeProcessed || !ers.hasCurrentFormat()) {
+            ers.transactional { txn ->
+                txn.dropAll()
+                txn.newEntity("PersistenceMetadata")["formatVersion"] = FORMAT_VERSION.compressed
             }
         }
     }
 
-    override val symbolInterner: NoSqlSymbolInterner = NoSqlSymbolInterner(ers).apply { setup() }
+    override val symbolInterner: NoSqlSymbolInterner = NoSqlSymbolInterner(ers, lazySymbols).apply { setup() }
 
     override fun setup() {
         /* no-op */
@@ -62,10 +82,11 @@ class ErsPersistenceImpl(
     override fun tryLoad(databaseId: String): Boolean {
         val ers = ers
         if (ers is DumpableLoadableEntityRelationshipStorage) {
-            ers.load(databaseId)?.let {
+            ers.load(databaseId.withFormatVersion)?.let {
                 this.ers = it
                 symbolInterner.ers = it
                 symbolInterner.setup()
+                isImmutable = true
                 return true
             }
         }
@@ -85,8 +106,45 @@ class ErsPersistenceImpl(
     }
 
     override fun <T> write(action: (StorageContext) -> T): T = lock.withLock {
-        ers.transactional { txn ->
-            action(toStorageContext(txn))
+        reportingToSymbolInterner {
+            ers.transactional { txn ->
+                action(toStorageContext(txn))
+            }
+        }
+    }
+
+    /**
+     * Writes in a bulk transaction, so that created entities can be kept in memory until it's committed.
+     */
+    private fun <T> bulkWrite(action: (StorageContext) -> T): T = lock.withLock {
+        reportingToSymbolInterner {
+            ers.bulkTransactional { txn ->
+                action(toStorageContext(txn))
+            }
+        }
+    }
+
+    /**
+     * Lets symbol interner know if symbols flushed by [transaction] are committed, or they should be flushed anew.
+     */
+    private inline fun <T> reportingToSymbolInterner(transaction: () -> T): T {
+        val result = try {
+            transaction()
+        } catch (e: Throwable) {
+            symbolInterner.aborted()
+            throw e
+        }
+        symbolInterner.committed()
+        return result
+    }
+
+    // dumps of storages with different layout of entities are not loaded
+    private val String.withFormatVersion: String get() = "$this-v$FORMAT_VERSION"
+
+    private fun EntityRelationshipStorage.hasCurrentFormat(): Boolean {
+        // RAM storage doesn't support explicit readonly transactions
+        return transactional(readonly = !isInRam) { txn ->
+            txn.all("PersistenceMetadata").firstOrNull()?.getCompressed<Int>("formatVersion") == FORMAT_VERSION
         }
     }
 
@@ -94,70 +152,121 @@ class ErsPersistenceImpl(
         if (classes.isEmpty()) {
             return
         }
-        val allClasses = classes.map { it.info }
-        val locationId = location.id
-        val locationIdValue = locationId.compressed
-        write { context ->
-            val txn = context.txn
-            for (classInfo in allClasses) {
-                val classNameId = classInfo.name.asSymbolId()
-                // oldie is a non-deleted class with the same name & location
-                // there should be only one such class, or none
-                val oldie = txn.find("Class", "nameId", classNameId.compressed)
-                    .filterLocations(locationId)
-                    .filterDeleted()
-                    .exactSingleOrNull()
-                val bytecode = classInfo.bytecode
-                val hc = bytecode.hash()
-                if (oldie != null) {
-                    if (oldie.get<Long>("hc") == hc && oldie.bytecode() contentEquals bytecode) {
-                        // class hasn't changed
-                        continue
-                    }
-                    // try to find deleted class with the same name, location & bytecode
-                    val sameClass = txn.find("Class", "hc", hc)
-                        .filterLocations(locationId)
-                        .filter {
-                            it.getCompressed<Long>("nameId") == classNameId &&
-                                    it.bytecode() contentEquals bytecode
+        // parsing, hashing & interning of symbols don't need the write lock, so they are done by the caller
+        val batch = PersistBatch(location.id, classes.map { PreparedClass(it.info) })
+        pendingBatches.add(batch)
+        // Batches are written by a single writer holding the lock: the one which acquires the lock writes
+        // all pending batches of other callers in the same transaction, so they don't wait for the lock anymore.
+        while (!batch.done.isDone) {
+            lock.withLock {
+                if (!batch.done.isDone) {
+                    writePendingBatches()
+                }
+            }
+        }
+        try {
+            batch.done.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    private fun writePendingBatches() {
+        val batches = mutableListOf<PersistBatch>()
+        var classesCount = 0
+        while (classesCount < persistBatchSize) {
+            val batch = pendingBatches.poll() ?: break
+            batches += batch
+            classesCount += batch.classes.size
+        }
+        try {
+            bulkWrite { context ->
+                batches.forEach { batch -> persistImpl(context, batch) }
+                symbolInterner.flush(context)
+            }
+            batches.forEach { it.done.complete(Unit) }
+        } catch (e: Throwable) {
+            if (batches.size == 1) {
+                batches[0].done.completeExceptionally(e)
+            } else {
+                // don't let a failed batch affect others, write them one by one
+                batches.forEach { batch ->
+                    try {
+                        bulkWrite { context ->
+                            persistImpl(context, batch)
+                            symbolInterner.flush(context)
                         }
-                        .exactSingleOrNull()
-                    if (sameClass != null) {
-                        // same class should be deleted
-                        check(sameClass.get<Boolean>("isDeleted") == true)
-                        // We found a deleted class with the same name, location & bytecode.
-                        // So undelete it, delete previously found class (oldie) and continue
-                        sameClass.deleteProperty("isDeleted")
-                        oldie["isDeleted"] = true
-                        continue
+                        batch.done.complete(Unit)
+                    } catch (e: Throwable) {
+                        batch.done.completeExceptionally(e)
                     }
                 }
-                // create new class
-                txn.newEntity("Class").also { clazz ->
-                    oldie?.set("isDeleted", true)
-                    clazz["nameId"] = classNameId.compressed
-                    clazz["locationId"] = locationIdValue
-                    clazz.bytecode(bytecode)
-                    clazz["hc"] = hc
-                    classInfo.annotations.forEach { annotationInfo ->
-                        annotationInfo.save(txn, clazz, RefKind.CLASS)
-                    }
-                    classInfo.superClass.takeIf { JAVA_OBJECT != it }?.let { superClassName ->
-                        clazz["inherits"] = superClassName.asSymbolId().compressed
+            }
+        }
+    }
+
+    private fun persistImpl(context: StorageContext, batch: PersistBatch) {
+        val txn = context.txn
+        val locationId = batch.locationId
+        val locationIdValue = locationId.compressed
+        for (preparedClass in batch.classes) {
+            val classInfo = preparedClass.classInfo
+            val classNameId = preparedClass.nameId
+            // oldie is a non-deleted class with the same name & location
+            // there should be only one such class, or none
+            val oldie = txn.findClasses(classNameId, locationId)
+                .filterDeleted()
+                .exactSingleOrNull()
+            val bytecode = classInfo.bytecode
+            val hc = preparedClass.hc
+            if (oldie != null) {
+                if (oldie.get<Long>("hc") == hc && oldie.bytecode() contentEquals bytecode) {
+                    // class hasn't changed
+                    continue
+                }
+                // try to find deleted class with the same name, location & bytecode
+                val sameClass = txn.find("Class", "hc", hc)
+                    .filterLocations(locationId)
+                    .filter {
+                        it.getCompressed<Long>("nameId") == classNameId &&
+                                it.bytecode() contentEquals bytecode
                     }
-                    if (classInfo.interfaces.isNotEmpty()) {
-                        val implements = links(clazz, "implements")
-                        classInfo.interfaces.forEach { interfaceName ->
-                            txn.findOrNew("Interface", "nameId", interfaceName.asSymbolId().compressed)
-                                .also { interfaceClass ->
-                                    implements += interfaceClass
-                                    links(interfaceClass, "implementedBy") += clazz
-                                }
-                        }
+                    .exactSingleOrNull()
+                if (sameClass != null) {
+                    // same class should be deleted
+                    check(sameClass.get<Boolean>("isDeleted") == true)
+                    // We found a deleted class with the same name, location & bytecode.
+                    // So undelete it, delete previously found class (oldie) and continue
+                    sameClass.deleteProperty("isDeleted")
+                    oldie["isDeleted"] = true
+                    continue
+                }
+            }
+            // create new class
+            txn.newEntity("Class").also { clazz ->
+                oldie?.set("isDeleted", true)
+                clazz["nameId"] = classNameId.compressed
+                clazz["locationId"] = locationIdValue
+                clazz["nameLocationId"] = classNameLocationKey(classNameId, locationId)
+                clazz.bytecode(preparedClass.storedBytecode)
+                clazz["hc"] = hc
+                classInfo.annotations.forEach { annotationInfo ->
+                    annotationInfo.save(txn, clazz, RefKind.CLASS)
+                }
+                preparedClass.superClassId?.let { superClassId ->
+                    clazz["inherits"] = superClassId.compressed
+                }
+                if (preparedClass.interfaceIds.isNotEmpty()) {
+                    val implements = links(clazz, "implements")
+                    preparedClass.interfaceIds.forEach { interfaceId ->
+                        txn.findOrNew("Interface", "nameId", interfaceId.compressed)
+                            .also { interfaceClass ->
+                                implements += interfaceClass
+                                links(interfaceClass, "implementedBy") += clazz
+                            }
                     }
                 }
             }
-            symbolInterner.flush(context)
         }
     }
 
@@ -190,7 +299,8 @@ class ErsPersistenceImpl(
                 symbolInterner.flush(context, force = true)
             }
         }
-        ers = ers.asImmutable(databaseId)
+        ers = ers.asImmutable(databaseId.withFormatVersion)
+        isImmutable = true
     }
 
     override fun close() {
@@ -208,9 +318,8 @@ class ErsPersistenceImpl(
     ): Sequence<ClassSource> {
         val locationsIds = cp.registeredLocationIds
         val nameId = findSymbolId(fullName)
-        return context.txn.find("Class", "nameId", nameId.compressed)
+        return context.txn.findClasses(nameId, locationsIds)
             .filterDeleted()
-            .filterLocations(locationsIds)
             .map { it.toClassSource(this, fullName, nameId) }
     }
 
@@ -274,13 +383,15 @@ class ErsPersistenceImpl(
         }
     }
 
-    @Suppress("UnstableApiUsage")
-    private fun ByteArray.hash(): Long {
-        return Hashing.murmur3_128().newHasher().putBytes(this).hash().asBytes().let {
-            check(it.size == 16) { "MurMur3_128 hash function should return byte array of size 16" }
-            with(ByteBuffer.wrap(it)) {
-                long xor long
-            }
-        }
+    private inner class PreparedClass(val classInfo: ClassInfo) {
+        val nameId = classInfo.name.asSymbolId()
+        val hc = classInfo.bytecode.bytecodeHash()
+        val storedBytecode = classInfo.bytecode.let { if (compressBytecode) BytecodeCompression.compress(it) else it }
+        val superClassId = classInfo.superClass.takeIf { JAVA_OBJECT != it }?.asSymbolId()
+        val interfaceIds = classInfo.interfaces.map { it.asSymbolId() }
+    }
+
+    private class PersistBatch(val locationId: Long, val classes: List<PreparedClass>) {
+        val done = CompletableFuture<Unit>()
     }
 }
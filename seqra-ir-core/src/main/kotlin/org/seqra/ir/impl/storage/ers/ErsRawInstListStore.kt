@@ -0,0 +1,126 @@
+package org.seqra.ir.impl.storage.ers
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import mu.KotlinLogging
+import org.seqra.ir.api.jvm.JIRMethod
+import org.seqra.ir.api.jvm.cfg.JIRInstList
+import org.seqra.ir.api.jvm.cfg.JIRRawInst
+import org.seqra.ir.impl.BackgroundScope
+import org.seqra.ir.impl.bytecode.JIRClassOrInterfaceImpl
+import org.seqra.ir.impl.bytecode.JIRMethodImpl
+import org.seqra.ir.impl.cfg.RawInstListSerializer
+import org.seqra.ir.impl.storage.txn
+import java.io.UTFDataFormatException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Persistent cache of raw instruction lists built from bytecode, i.e. before any
+ * [org.seqra.ir.api.jvm.JIRInstExtFeature] is applied. Lists are keyed by hash of class bytecode
+ * (the same as `hc` property of `Class` entity), method name and descriptor, so they are valid
+ * as long as bytecode of the class is the same regardless of its location. A list is found by both
+ * properties at once, so other methods of the class aren't read.
+ *
+ * Saved lists are written in [scope] by batches of [batchSize], so callers don't wait for the writes,
+ * the rest is written by [flush]. A stored list which can't be deserialized is replaced by the rebuilt one.
+ */
+class ErsRawInstListStore(
+    private val persistence: ErsPersistenceImpl,
+    keepLocalVariableNames: Boolean,
+    private val scope: CoroutineScope = BackgroundScope()
+) {
+
+    companion object {
+        private val logger = KotlinLogging.logger {}
+
+        private val batchSize = Integer.getInteger("org.seqra.ir.impl.storage.ers.rawInstListsBatchSize", 1_000)
+    }
+
+    // lists built with and without local variable names are different
+    private val entityType = if (keepLocalVariableNames) "NamedRawInstList" else "RawInstList"
+
+    private val pending = ConcurrentHashMap<RawInstListKey, ByteArray>()
+
+    @Volatile
+    private var backgroundFlush: Job? = null
+
+    fun find(method: JIRMethod): JIRInstList<JIRRawInst>? {
+        val key = method.rawInstListKey() ?: return null
+        val bytes = pending[key] ?: persistence.read { context ->
+            context.txn.find(entityType, key.properties).firstOrNull()?.getRawBlob("instructions")
+        } ?: return null
+        return RawInstListSerializer.deserialize(method, bytes)
+    }
+
+    fun save(method: JIRMethod, instList: JIRInstList<JIRRawInst>) {
+        if (persistence.isImmutable) {
+            return
+        }
+        val key = method.rawInstListKey() ?: return
+        val bytes = try {
+            RawInstListSerializer.serialize(instList)
+        } catch (e: UTFDataFormatException) {
+            logger.debug(e) { "Instructions of ${method.enclosingClass.name}#${key.method} are too big to be persisted" }
+            return
+        }
+        pending[key] = bytes
+        if (pending.size >= batchSize) {
+            flushInBackground()
+        }
+    }
+
+    fun flush() {
+        backgroundFlush?.let { runBlocking { it.join() } }
+        writePending()
+    }
+
+    private fun flushInBackground() {
+        synchronized(this) {
+            if (backgroundFlush?.isActive == true) {
+                return
+            }
+            backgroundFlush = scope.launch {
+                try {
+                    writePending()
+                } catch (e: Exception) {
+                    // lists are still pending, they are written by next flush
+                    logger.warn(e) { "Failed to write raw instruction lists" }
+                }
+            }
+        }
+    }
+
+    private fun writePending() {
+        if (pending.isEmpty() || persistence.isImmutable) {
+            return
+        }
+        val batch = pending.entries.map { it.key to it.value }
+        persistence.write { context ->
+            val txn = context.txn
+            batch.forEach { (key, bytes) ->
+                // a list is saved only if it isn't found, so the stored one is stale
+                val entity = txn.find(entityType, key.properties).firstOrNull()
+                    ?: txn.newEntity(entityType).also { entity ->
+                        entity["hc"] = key.hc
+                        entity["method"] = key.method
+                    }
+                entity.setRawBlob("instructions", bytes)
+            }
+        }
+        batch.forEach { (key, bytes) -> pending.remove(key, bytes) }
+    }
+
+    private fun JIRMethod.rawInstListKey(): RawInstListKey? {
+        if (this !is JIRMethodImpl) {
+            return null
+        }
+        val enclosingClass = enclosingClass as? JIRClassOrInterfaceImpl ?: return null
+        return RawInstListKey(enclosingClass.bytecodeHash, name + description)
+    }
+
+    private data class RawInstListKey(val hc: Long, val method: String) {
+        val properties: Map<String, Any> get() = mapOf("hc" to hc, "method" to method)
+    }
+}
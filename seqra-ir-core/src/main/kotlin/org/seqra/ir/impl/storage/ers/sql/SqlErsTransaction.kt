@@ -101,6 +101,30 @@ class SqlErsTransactionImpl(
         )
     }
 
+    override fun find(type: String, properties: Map<String, Any>): EntityIterable {
+        if (properties.size < 2) {
+            return super.find(type, properties)
+        }
+        val typeId = getTypeIdOrNull(type) ?: return EntityIterable.EMPTY
+        val propertyTables = properties.map { (name, value) ->
+            (getPropertyTableOrNull(typeId, name) ?: return EntityIterable.EMPTY) to value
+        }
+        val entityIdField = propertyTables.first().first.field(ENTITY_ID_FIELD)!!
+        // property tables are joined by entity id, so the database can use all of their indices
+        val conditions = propertyTables.map { (propertyTable, value) ->
+            propertyTable.field(PROPERTY_VALUE_FIELD)!!.eq(probablyCompressed(value))
+        } + propertyTables.drop(1).map { (propertyTable, _) ->
+            propertyTable.field(ENTITY_ID_FIELD)!!.eq(entityIdField)
+        }
+        return SqlErsEntityIterable(
+            condition = DSL.and(conditions),
+            fromTables = propertyTables.map { it.first },
+            entityIdField = entityIdField,
+            typeId = typeId,
+            txn = this
+        )
+    }
+
     override fun <T : Any> findLt(type: String, propertyName: String, value: T): EntityIterable {
         TODO("Not yet implemented")
     }
@@ -0,0 +1,48 @@
+package org.seqra.ir.impl.types
+
+import org.seqra.ir.api.caches.PluggableCache
+import org.seqra.ir.api.caches.PluggableCacheProvider
+import org.seqra.ir.api.jvm.JIRSubstitutor
+import org.seqra.ir.api.jvm.JIRTypedField
+import org.seqra.ir.api.jvm.JIRTypedMethod
+import org.seqra.ir.impl.caches.xodus.XODUS_CACHE_PROVIDER_ID
+
+/**
+ * Per-classpath memo of members which types inherit from their super types.
+ *
+ * Super types are new instances of [JIRClassTypeImpl] each time they are requested, so without the memo
+ * inherited members of a super type are computed again for each its subtype, and for interfaces reachable
+ * by several paths in the hierarchy even several times for a single subtype.
+ * Members are keyed by class, substitutor and nullability of the type, i.e. by what defines equal types,
+ * and by the package from which package-private members are visible.
+ */
+internal class InheritedMembers {
+
+    companion object {
+        private val cacheSize = Integer.getInteger("org.seqra.ir.impl.inheritedMembersCacheSize", 10_000)
+    }
+
+    private data class Key(
+        val name: String,
+        val substitutor: JIRSubstitutor,
+        val nullable: Boolean?,
+        val packageName: String
+    )
+
+    private val methods by lazy { newCache<List<JIRTypedMethod>>() }
+    private val fields by lazy { newCache<List<JIRTypedField>>() }
+
+    fun methods(type: JIRClassTypeImpl, packageName: String, compute: () -> List<JIRTypedMethod>) =
+        methods.get(type.keyOf(packageName), compute)
+
+    fun fields(type: JIRClassTypeImpl, packageName: String, compute: () -> List<JIRTypedField>) =
+        fields.get(type.keyOf(packageName), compute)
+
+    private fun JIRClassTypeImpl.keyOf(packageName: String) = Key(name, substitutor, nullable, packageName)
+
+    private fun <V : Any> newCache(): PluggableCache<Key, V> {
+        return PluggableCacheProvider.getProvider(XODUS_CACHE_PROVIDER_ID).newCache {
+            maximumSize = cacheSize
+        }
+    }
+}
@@ -4,7 +4,10 @@ import org.seqra.ir.api.jvm.*
 import org.seqra.ir.api.jvm.ext.findClass
 import org.seqra.ir.api.jvm.ext.packageName
 import org.seqra.ir.api.jvm.ext.toType
+import org.seqra.ir.impl.JIRClasspathImpl
+import org.seqra.ir.impl.bytecode.MemberIndex
 import org.seqra.ir.impl.bytecode.TypeDelegatingLookup
+import org.seqra.ir.impl.bytecode.methodKey
 import org.seqra.ir.impl.types.signature.JvmClassRefType
 import org.seqra.ir.impl.types.signature.JvmParameterizedType
 import org.seqra.ir.impl.types.signature.TypeResolutionImpl
@@ -17,7 +20,7 @@ class JIRClassTypeImpl(
     override val classpath: JIRClasspath,
     val name: String,
     override val outerType: JIRClassTypeImpl? = null,
-    private val substitutor: JIRSubstitutor = JIRSubstitutorImpl.empty,
+    internal val substitutor: JIRSubstitutor = JIRSubstitutorImpl.empty,
     override val nullable: Boolean?,
     override val annotations: List<JIRAnnotation>
 ) : JIRClassType {
@@ -144,6 +147,14 @@ class JIRClassTypeImpl(
         typedFields(true, fromSuperTypes = true, jIRClass.packageName)
     }
 
+    internal val methodsIndex by lazy(PUBLICATION) {
+        MemberIndex(declaredMethods) { methodKey(it.name, it.method.description) }
+    }
+
+    internal val fieldsIndex by lazy(PUBLICATION) {
+        MemberIndex(declaredFields) { it.name }
+    }
+
     override fun copyWithNullability(nullability: Boolean?) =
         JIRClassTypeImpl(classpath, name, outerType, substitutor, nullability, annotations)
 
@@ -186,11 +197,11 @@ class JIRClassTypeImpl(
         }
         val result = declaredMethods.toSortedSet(UnsafeHierarchyTypedMethodComparator)
         result.addAll(
-            (superType as? JIRClassTypeImpl)?.typedMethods(false, fromSuperTypes = true, packageName).orEmpty()
+            (superType as? JIRClassTypeImpl)?.inheritedMethods(packageName).orEmpty()
         )
         result.addAll(
             interfaces.flatMap {
-                (it as? JIRClassTypeImpl)?.typedMethods(false, fromSuperTypes = true, packageName).orEmpty()
+                (it as? JIRClassTypeImpl)?.inheritedMethods(packageName).orEmpty()
             }
         )
         return result.toList()
@@ -215,16 +226,25 @@ class JIRClassTypeImpl(
 
         result.addAll(
             superTypesToCheck.flatMap {
-                it.typedFields(
-                    false,
-                    fromSuperTypes = true,
-                    classPackageName
-                )
+                it.inheritedFields(classPackageName)
             }
         )
         return result.toList()
     }
 
+    private fun inheritedMethods(packageName: String): List<JIRTypedMethod> {
+        val compute = { typedMethods(false, fromSuperTypes = true, packageName) }
+        return inheritedMembers?.methods(this, packageName, compute) ?: compute()
+    }
+
+    private fun inheritedFields(packageName: String): List<JIRTypedField> {
+        val compute = { typedFields(false, fromSuperTypes = true, packageName) }
+        return inheritedMembers?.fields(this, packageName, compute) ?: compute()
+    }
+
+    // substitutors of features may have no value-based equality, members of such types are not memoized
+    private val inheritedMembers: InheritedMembers?
+        get() = (classpath as? JIRClasspathImpl)?.inheritedMembers?.takeIf { substitutor is JIRSubstitutorImpl }
 
     private fun superSubstitutor(superClass: JIRClassOrInterface, superType: JvmType): JIRSubstitutor {
         val superParameters = superClass.directTypeParameters()
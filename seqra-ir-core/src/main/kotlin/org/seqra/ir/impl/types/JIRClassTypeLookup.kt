@@ -3,24 +3,46 @@ package org.seqra.ir.impl.types
 import org.seqra.ir.api.jvm.*
 import org.seqra.ir.api.jvm.ext.packageName
 import org.seqra.ir.impl.bytecode.JIRAbstractLookup
+import org.seqra.ir.impl.bytecode.JIRClassOrInterfaceImpl
 import org.seqra.ir.impl.bytecode.PolymorphicSignatureSupport
+import org.seqra.ir.impl.bytecode.ResolvedMembers
+import org.seqra.ir.impl.bytecode.methodKey
 
 class JIRClassTypeLookupImpl(val type: JIRClassType) : JIRLookup<JIRTypedField, JIRTypedMethod> {
 
+    // members of virtual classes can be changed, so only lookups of types of regular classes are memoized
+    private val isImmutable = type.jIRClass is JIRClassOrInterfaceImpl
+    private val fields = ResolvedMembers<JIRTypedField>()
+    private val methods = ResolvedMembers<JIRTypedMethod>()
+    private val staticMethods = ResolvedMembers<JIRTypedMethod>()
+    private val specialMethods = ResolvedMembers<JIRTypedMethod>()
+
     override fun field(name: String, typeName: TypeName?, fieldKind: JIRLookup.FieldKind): JIRTypedField? {
-        return JIRClassTypeLookup.JIRTypedFieldLookup(type, name, fieldKind).lookup()
+        return fields.resolve("$name:$fieldKind") {
+            JIRClassTypeLookup.JIRTypedFieldLookup(type, name, fieldKind).lookup()
+        }
     }
 
     override fun method(name: String, description: String): JIRTypedMethod? {
-        return JIRClassTypeLookup.JIRTypedMethodLookup(type, name, description).lookup()
+        return methods.resolve(methodKey(name, description)) {
+            JIRClassTypeLookup.JIRTypedMethodLookup(type, name, description).lookup()
+        }
     }
 
     override fun staticMethod(name: String, description: String): JIRTypedMethod? {
-        return JIRClassTypeLookup.JIRStaticTypedMethodLookup(type, name, description).lookup()
+        return staticMethods.resolve(methodKey(name, description)) {
+            JIRClassTypeLookup.JIRStaticTypedMethodLookup(type, name, description).lookup()
+        }
     }
 
     override fun specialMethod(name: String, description: String): JIRTypedMethod? {
-        return JIRClassTypeLookup.JIRSpecialTypedMethodLookup(type, name, description).lookup()
+        return specialMethods.resolve(methodKey(name, description)) {
+            JIRClassTypeLookup.JIRSpecialTypedMethodLookup(type, name, description).lookup()
+        }
+    }
+
+    private fun <T : Any> ResolvedMembers<T>.resolve(key: String, lookup: () -> T?): T? {
+        return if (isImmutable) getOrResolve(key, lookup) else lookup()
     }
 }
 
@@ -46,6 +68,10 @@ abstract class JIRClassTypeLookup<Result : JIRAccessible>(clazz: JIRClassType) :
         override val predicate: (JIRTypedMethod) -> Boolean
             get() = { it.name == name && it.method.description == description }
 
+        override fun candidates(en: JIRClassType): List<JIRTypedMethod> {
+            return (en as? JIRClassTypeImpl)?.methodsIndex?.get(methodKey(name, description)) ?: en.declaredMethods
+        }
+
         override fun lookupElement(en: JIRClassType): JIRTypedMethod? {
             return super.lookupElement(en) ?: en.declaredMethods.find(name)
         }
@@ -89,6 +115,10 @@ abstract class JIRClassTypeLookup<Result : JIRAccessible>(clazz: JIRClassType) :
         override val JIRClassType.elements: List<JIRTypedField>
             get() = declaredFields
 
+        override fun candidates(en: JIRClassType): List<JIRTypedField> {
+            return (en as? JIRClassTypeImpl)?.fieldsIndex?.get(name) ?: en.declaredFields
+        }
+
         override val predicate: (JIRTypedField) -> Boolean
             get() = { it.name == name && it.matchKind() }
 
@@ -10,6 +10,7 @@ import org.seqra.ir.impl.bytecode.isNotNullAnnotation
 import org.seqra.ir.impl.types.signature.JvmTypeParameterDeclarationImpl
 import org.seqra.ir.impl.types.signature.JvmTypeVariable
 import org.seqra.ir.impl.types.signature.copyWith
+import kotlin.LazyThreadSafetyMode.PUBLICATION
 
 
 class JIRSubstitutorImpl(
@@ -22,10 +23,19 @@ class JIRSubstitutorImpl(
         val empty = JIRSubstitutorImpl()
     }
 
+    // symbol -> substitution, the first declaration with the symbol wins as in iteration over substitutions
+    private val bySymbol: Map<String, JvmType> by lazy(PUBLICATION) {
+        HashMap<String, JvmType>(substitutions.size).also { result ->
+            substitutions.forEach { (declaration, type) -> result.putIfAbsent(declaration.symbol, type) }
+        }
+    }
+
+    private val hash by lazy(PUBLICATION) { substitutions.hashCode() }
+
     private val substitutionTypeVisitor = object : RecursiveJvmTypeVisitor {
 
         override fun visitUnprocessedTypeVariable(type: JvmTypeVariable, context: VisitorContext): JvmType {
-            val direct = substitutions.firstNotNullOfOrNull { if (it.key.symbol == type.symbol) it.value else null }
+            val direct = bySymbol[type.symbol]
             if (direct != null) {
                 return relaxNullabilityAndAnnotationsAfterSubstitution(type, direct)
             }
@@ -85,7 +95,7 @@ class JIRSubstitutorImpl(
                 if (ignoredSymbols.contains(type.symbol)) {
                     return type
                 }
-                return substitutions.firstNotNullOfOrNull { if (it.key.symbol == type.symbol) it.value else null }
+                return bySymbol[type.symbol]
                     ?.let {
                         relaxNullabilityAndAnnotationsAfterSubstitution(type, it)
                     } ?: type
@@ -146,7 +156,5 @@ class JIRSubstitutorImpl(
         return substitutions.entries.all { it.value == other.substitutions[it.key] }
     }
 
-    override fun hashCode(): Int {
-        return substitutions.hashCode()
-    }
+    override fun hashCode(): Int = hash
 }
@@ -19,6 +19,7 @@ import org.seqra.ir.testing.hierarchies.Creature.Pterodactyl
 import org.seqra.ir.testing.hierarchies.Creature.TRex
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 
@@ -52,6 +53,44 @@ class ApiExtTest : BaseTest() {
         assertEquals(clazz, clazz.autoboxIfNeeded())
     }
 
+    @Test
+    fun `isSubClassOf is the same as for java classes`() {
+        val classes = listOf(
+            Any::class.java, java.lang.String::class.java, CharSequence::class.java, Comparable::class.java,
+            Iterable::class.java, java.util.Collection::class.java, java.util.List::class.java,
+            java.util.AbstractList::class.java, java.util.ArrayList::class.java, java.util.LinkedList::class.java,
+            java.util.Deque::class.java, java.util.RandomAccess::class.java, java.util.Map::class.java,
+            java.util.HashMap::class.java, java.util.LinkedHashMap::class.java, java.io.Serializable::class.java
+        )
+        // the second pass is served from cached hierarchy
+        repeat(2) {
+            classes.forEach { sub ->
+                classes.forEach { sup ->
+                    assertEquals(
+                        sup.isAssignableFrom(sub),
+                        cp.findClass(sub.name) isSubClassOf cp.findClass(sup.name),
+                        "${sub.name} isSubClassOf ${sup.name}"
+                    )
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `inherited members are looked up`() {
+        val arrayList = cp.findClass<java.util.ArrayList<*>>()
+        repeat(2) {
+            assertEquals("java.util.ArrayList", arrayList.lookup.method("size", "()I")?.enclosingClass?.name)
+            assertEquals(
+                "java.util.AbstractCollection",
+                arrayList.lookup.method("toString", "()Ljava/lang/String;")?.enclosingClass?.name
+            )
+            assertEquals("java.util.AbstractList", arrayList.lookup.field("modCount")?.enclosingClass?.name)
+            assertNull(arrayList.lookup.method("size", "()J"))
+            assertNull(arrayList.lookup.staticMethod("size", "()I"))
+        }
+    }
+
     @Test
     fun `isSubtype for regular classes`() = runBlocking {
         assertTrue(classOf<Dinosaur>() isSubClassOf classOf<Creature>())
@@ -7,6 +7,7 @@ import org.seqra.ir.api.jvm.ext.HierarchyExtension
 import org.seqra.ir.api.jvm.ext.enumValues
 import org.seqra.ir.api.jvm.ext.findClass
 import org.seqra.ir.api.jvm.ext.findTypeOrNull
+import org.seqra.ir.impl.bytecode.jsrInlined
 import org.seqra.ir.impl.features.duplicatedClasses
 import org.seqra.ir.impl.features.hierarchyExt
 import org.seqra.ir.testing.structure.EnumExamples.EnumWithField
@@ -15,8 +16,12 @@ import org.seqra.ir.testing.structure.EnumExamples.SimpleEnum
 import org.seqra.ir.testing.tests.DatabaseEnvTest
 import org.junit.jupiter.api.AfterAll
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import org.objectweb.asm.tree.ClassNode
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 
 open class ClassesTest : DatabaseEnvTest() {
 
@@ -45,6 +50,36 @@ open class ClassesTest : DatabaseEnvTest() {
         }
     }
 
+    @Test
+    fun `method nodes are read one by one`() {
+        val clazz = cp.findClass<java.util.ArrayList<*>>()
+        clazz.declaredMethods.forEach { method ->
+            val expected = clazz.withAsmNode { classNode ->
+                classNode.methods.first { it.name == method.name && it.desc == method.description }.jsrInlined
+            }
+            val first = method.withAsmNode { it }
+            assertEquals(expected.instructions.size(), first.instructions.size())
+            assertEquals(expected.tryCatchBlocks.size, first.tryCatchBlocks.size)
+            assertNotSame(first, method.withAsmNode { it })
+        }
+    }
+
+    @Test
+    fun `class node in use is not waited for`() {
+        val clazz = cp.findClass<java.util.ArrayList<*>>()
+        clazz.withAsmNode { outer ->
+            val inner = Executors.newSingleThreadExecutor().let { executor ->
+                try {
+                    executor.submit<ClassNode> { clazz.withAsmNode { it } }.get(10, TimeUnit.SECONDS)
+                } finally {
+                    executor.shutdown()
+                }
+            }
+            assertNotSame(outer, inner)
+            assertEquals(outer.methods.size, inner.methods.size)
+        }
+    }
+
     @Test
     fun `enum constructor methods`() {
         val enumType = cp.findTypeOrNull<SimpleEnum>() as JIRClassType
@@ -13,6 +13,7 @@ import org.seqra.ir.api.jvm.ext.findClassOrNull
 import org.seqra.ir.impl.JIRDatabaseImpl
 import org.seqra.ir.impl.JIRSQLitePersistenceSettings
 import org.seqra.ir.impl.fs.BuildFolderLocation
+import org.seqra.ir.impl.fs.JarFilesPool
 import org.seqra.ir.impl.seqraIrDb
 import org.seqra.ir.impl.storage.PersistentLocationsRegistry
 import org.seqra.ir.impl.storage.dslContext
@@ -20,7 +21,11 @@ import org.seqra.ir.impl.storage.jooq.tables.references.BYTECODELOCATIONS
 import org.seqra.ir.impl.storage.jooq.tables.references.CLASSES
 import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotEquals
 import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Assertions.fail
 import org.junit.jupiter.api.BeforeEach
@@ -182,6 +187,24 @@ class DatabaseLifecycleTest {
         }
     }
 
+    @Test
+    fun `registered locations are read from persistence only after changes`() = runBlocking {
+        db.classpath(listOf(guavaLibClone)).close()
+        val locations = db.locations
+        val id = db.id
+
+        db.classpath(listOf(guavaLibClone)).use { cp ->
+            assertTrue(cp.registeredLocations.any { it.path == guavaLibClone.absolutePath })
+        }
+        assertSame(locations, db.locations)
+        assertEquals(id, db.id)
+
+        db.classpath(listOf(testDirClone)).close()
+        assertNotSame(locations, db.locations)
+        assertEquals(locations.size + 1, db.locations.size)
+        assertNotEquals(id, db.id)
+    }
+
     @Test
     fun `jar should not be blocked after method read`() = runBlocking {
         val cp = db.classpath(listOf(guavaLibClone))
@@ -193,6 +216,21 @@ class DatabaseLifecycleTest {
         assertTrue(guavaLibClone.deleteWithRetries(3))
     }
 
+    @Test
+    fun `opened jars are closed with database`() = runBlocking {
+        val database = seqraIrDb {
+            useProcessJavaRuntime()
+        }
+        val cp = database.classpath(listOf(guavaLibClone))
+        database.awaitBackgroundJobs()
+        val location = cp.locations.first { it.path == guavaLibClone.absolutePath }
+        assertNotNull(location.resolve(Iterators::class.java.name))
+        assertTrue(guavaLibClone.absolutePath in JarFilesPool.openedPaths)
+        database.close()
+        assertFalse(guavaLibClone.absolutePath in JarFilesPool.openedPaths)
+        assertTrue(guavaLibClone.deleteWithRetries(3))
+    }
+
     @Test
     fun `classes should not be duplicated`() {
         runBlocking {
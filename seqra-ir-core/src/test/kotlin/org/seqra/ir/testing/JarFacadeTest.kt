@@ -1,9 +1,12 @@
 package org.seqra.ir.testing
 
 import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.RegisteredLocation
 import org.seqra.ir.impl.JIRRamErsSettings
 import org.seqra.ir.impl.fs.JarFacade
+import org.seqra.ir.impl.fs.asByteCodeLocation
 import org.seqra.ir.impl.fs.parseRuntimeVersion
+import org.seqra.ir.impl.fs.sourceChunks
 import org.seqra.ir.impl.seqraIrDb
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertNotNull
@@ -13,6 +16,7 @@ import org.junit.jupiter.api.condition.EnabledOnJre
 import org.junit.jupiter.api.condition.JRE
 import org.junit.platform.commons.util.ModuleUtils
 import java.nio.file.Paths
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.jar.JarFile
 
 class JarFacadeTest {
@@ -69,6 +73,42 @@ class JarFacadeTest {
         }
     }
 
+    @Test
+    fun `jar file is opened once for many reads`() {
+        val opened = AtomicInteger()
+        val junitPlatform = JarFacade(java8Version.majorVersion) {
+            opened.incrementAndGet()
+            JarFile(junitPlatformCommons)
+        }
+        val openedOnInit = opened.get()
+        junitPlatform.classes.keys.parallelStream().forEach {
+            assertNotNull(junitPlatform.inputStreamOf(it))
+        }
+        assertEquals(openedOnInit + 1, opened.get())
+
+        junitPlatform.close()
+        assertNotNull(junitPlatform.inputStreamOf(moduleUtils))
+        assertEquals(openedOnInit + 2, opened.get())
+    }
+
+    @Test
+    fun `jar classes are read by chunks`() {
+        val location = object : RegisteredLocation {
+            override val jIRLocation = junitPlatformCommons.asByteCodeLocation(java8Version).single()
+            override val id = 1L
+            override val path: String = junitPlatformCommons.absolutePath
+            override val isRuntime = false
+        }
+        val chunks = location.sourceChunks(chunkSize = 10).toList()
+        assertTrue(chunks.size > 1)
+        assertTrue(chunks.all { it.size <= 10 })
+        val classes = location.jIRLocation.classes
+        assertEquals(classes.keys, chunks.flatten().map { it.className }.toSet())
+        chunks.flatten().forEach { source ->
+            assertTrue(classes.getValue(source.className) contentEquals source.byteCode)
+        }
+    }
+
     @Test
     @EnabledOnJre(JRE.JAVA_11)
     fun `jmod parsing is working`() {
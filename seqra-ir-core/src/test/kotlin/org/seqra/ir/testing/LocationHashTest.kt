@@ -0,0 +1,82 @@
+package org.seqra.ir.testing
+
+import org.seqra.ir.api.jvm.JavaVersion
+import org.seqra.ir.impl.fs.BuildFolderLocation
+import org.seqra.ir.impl.fs.JarLocation
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.nio.file.Files
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+class LocationHashTest {
+
+    private val tempFolder = Files.createTempDirectory("location-hash").toFile()
+
+    private val java8 = object : JavaVersion {
+        override val majorVersion = 8
+    }
+
+    @AfterEach
+    fun cleanup() {
+        tempFolder.deleteRecursively()
+    }
+
+    @Test
+    fun `build folder changes are detected`() {
+        val folder = File(tempFolder, "classes").also { it.mkdirs() }
+        val file = File(folder, "A.class").also { it.writeBytes(byteArrayOf(1, 2, 3)) }
+        val location = BuildFolderLocation(folder)
+        val hash = location.fileSystemIdHash
+        assertFalse(location.isChanged())
+
+        file.writeBytes(byteArrayOf(1, 2, 3, 4))
+        assertTrue(location.isChanged())
+        assertNotEquals(hash, location.currentHash)
+
+        File(folder, "B.class").writeBytes(byteArrayOf(5))
+        assertEquals(BuildFolderLocation(folder).fileSystemIdHash, location.currentHash)
+    }
+
+    @Test
+    fun `hash is not recalculated if files stamps are the same`() {
+        val folder = File(tempFolder, "classes").also { it.mkdirs() }
+        val file = File(folder, "A.class").also { it.writeBytes(byteArrayOf(1, 2, 3)) }
+        val location = BuildFolderLocation(folder)
+        assertFalse(location.isChanged())
+
+        val lastModified = file.lastModified()
+        file.writeBytes(byteArrayOf(3, 2, 1))
+        file.setLastModified(lastModified)
+        assertFalse(location.isChanged())
+    }
+
+    @Test
+    fun `jar changes are detected`() {
+        val jar = File(tempFolder, "a.jar")
+        jar.writeJar("A.class" to byteArrayOf(1, 2, 3))
+        val location = JarLocation(jar, isRuntime = false, java8)
+        val hash = location.fileSystemIdHash
+        assertFalse(location.isChanged())
+
+        jar.writeJar("A.class" to byteArrayOf(1, 2, 3), "B.class" to byteArrayOf(4))
+        assertTrue(location.isChanged())
+        assertEquals(JarLocation(jar, isRuntime = false, java8).currentHash, location.currentHash)
+        assertNotEquals(hash, location.currentHash)
+    }
+
+    private fun File.writeJar(vararg entries: Pair<String, ByteArray>) {
+        JarOutputStream(outputStream()).use { output ->
+            entries.forEach { (name, bytes) ->
+                output.putNextEntry(JarEntry(name))
+                output.write(bytes)
+                output.closeEntry()
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package org.seqra.ir.testing
 
 import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.ClassParsingLevel
 import org.seqra.ir.api.jvm.JIRMethod
 import org.seqra.ir.api.jvm.JIRParameter
 import org.seqra.ir.api.jvm.ext.findClass
 import org.seqra.ir.api.jvm.ext.methods
+import org.seqra.ir.impl.fs.ClassSourceImpl
 import org.seqra.ir.impl.fs.asClassInfo
+import org.seqra.ir.impl.fs.info
+import org.seqra.ir.impl.fs.parsed
 import org.seqra.ir.impl.types.ParameterInfo
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
@@ -30,6 +34,19 @@ open class ParameterNamesTest : BaseTest() {
         Assertions.assertEquals("arg", method?.parameterNames?.get(0))
     }
 
+    @Test
+    fun `parameter names are not taken from local variables when class is parsed once`() {
+        val clazz = cp.findClass("GenericsApi").methods.first { it.name == "call" }.enclosingClass
+        val source = ClassSourceImpl(clazz.declaration.location, clazz.name, clazz.bytecode())
+        val parsed = source.parsed(ClassParsingLevel.CODE_WITH_FRAMES)
+        Assertions.assertTrue(parsed.classNode.methods.any { it.instructions.size() > 0 })
+        Assertions.assertNull(parsed.classInfo.methods.first { it.name == "call" }.parametersInfo[0].name)
+        Assertions.assertEquals(
+            source.info.methods.map { info -> info.parametersInfo.map(ParameterInfo::name) },
+            parsed.classInfo.methods.map { info -> info.parametersInfo.map(ParameterInfo::name) }
+        )
+    }
+
     private val JIRMethod.parameterNames: List<String?>
         get() {
             return enclosingClass
@@ -0,0 +1,26 @@
+package org.seqra.ir.testing.caches
+
+import org.seqra.ir.api.caches.PluggableCache
+import org.seqra.ir.impl.caches.caffeine.CAFFEINE_CACHE_PROVIDER_ID
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class CaffeineCacheTest : PluggableCacheTest() {
+
+    override val cacheId: String = CAFFEINE_CACHE_PROVIDER_ID
+
+    @Test
+    fun `put get evict by weight`() {
+        val cache = PluggableCache.of<Int, String>(cacheId) {
+            maximumSize = CACHE_SIZE
+            maximumWeight = 1_000
+            weigher = { _, value -> value.length }
+        }
+        // weight of all values exceeds maximum weight while number of values doesn't exceed maximum size
+        (0 until CACHE_SIZE / 2).forEach {
+            cache[it] = "a".repeat(100)
+        }
+        val cached = (0 until CACHE_SIZE / 2).count { cache[it] != null }
+        assertTrue(cached in 1..10)
+    }
+}
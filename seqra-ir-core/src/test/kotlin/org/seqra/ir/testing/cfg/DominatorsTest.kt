@@ -0,0 +1,127 @@
+package org.seqra.ir.testing.cfg
+
+import org.seqra.ir.api.common.cfg.BytecodeGraph
+import org.seqra.ir.impl.cfg.graphs.CytronDominanceFrontier
+import org.seqra.ir.impl.cfg.graphs.DominatorsTree
+import org.seqra.ir.impl.cfg.graphs.findDominators
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class DominatorsTest {
+
+    /**
+     * ```
+     *        0
+     *        |
+     *        1 <----+
+     *       / \     |
+     *      2   3    |
+     *       \ /     |
+     *        4 -----+
+     *        |
+     *        5
+     * ```
+     */
+    private val graph = IntBytecodeGraph(
+        size = 6,
+        edges = listOf(0 to 1, 1 to 2, 1 to 3, 2 to 4, 3 to 4, 4 to 1, 4 to 5)
+    )
+
+    @Test
+    fun `immediate dominators`() {
+        val dominators = graph.findDominators()
+        assertNull(dominators.immediateDominator(0))
+        assertEquals(0, dominators.immediateDominator(1))
+        assertEquals(1, dominators.immediateDominator(2))
+        assertEquals(1, dominators.immediateDominator(3))
+        assertEquals(1, dominators.immediateDominator(4))
+        assertEquals(4, dominators.immediateDominator(5))
+    }
+
+    @Test
+    fun `dominators`() {
+        val dominators = graph.findDominators()
+        assertEquals(listOf(0, 1, 4, 5), dominators.dominators(5))
+        assertTrue(dominators.isDominatedBy(4, 1))
+        assertTrue(dominators.isDominatedBy(4, 4))
+        assertFalse(dominators.isDominatedBy(4, 2))
+        assertFalse(dominators.isDominatedBy(1, 4))
+        assertTrue(dominators.isDominatedByAll(5, listOf(0, 1, 4)))
+        assertFalse(dominators.isDominatedByAll(5, listOf(0, 1, 3)))
+    }
+
+    @Test
+    fun `dominance frontier`() {
+        val tree = DominatorsTree(graph.findDominators())
+        val frontier = CytronDominanceFrontier(tree)
+        fun frontierOf(node: Int) = frontier.frontierOf(tree.nodeOf(node)).map { it.target }.toSet()
+        assertEquals(emptySet<Int>(), frontierOf(0))
+        assertEquals(setOf(1), frontierOf(1))
+        assertEquals(setOf(4), frontierOf(2))
+        assertEquals(setOf(4), frontierOf(3))
+        assertEquals(setOf(1), frontierOf(4))
+        assertEquals(emptySet<Int>(), frontierOf(5))
+    }
+
+    @Test
+    fun `unreachable nodes are dominated by all nodes`() {
+        val graph = IntBytecodeGraph(size = 4, edges = listOf(0 to 1, 2 to 3))
+        val dominators = graph.findDominators()
+        assertNull(dominators.immediateDominator(3))
+        assertEquals(listOf(0, 1, 2, 3), dominators.dominators(3))
+        assertTrue(dominators.isDominatedBy(3, 1))
+        assertFalse(dominators.isDominatedBy(1, 2))
+    }
+
+    @Test
+    fun `dominators of random graphs`() {
+        val random = Random(42)
+        repeat(20) {
+            val size = 50 + random.nextInt(50)
+            val edges = (0 until size * 2).map { random.nextInt(size) to random.nextInt(size) } +
+                    (0 until size - 1).filter { random.nextInt(4) != 0 }.map { it to it + 1 }
+            val graph = IntBytecodeGraph(size, edges)
+            val dominators = graph.findDominators()
+            val reachable = graph.reachableFrom(0, removed = -1)
+            for (node in 0 until size) {
+                if (node !in reachable) continue
+                // dominator is a node removing which makes the node unreachable
+                val expected = (0 until size).filter { it == node || node !in graph.reachableFrom(0, removed = it) }
+                assertEquals(expected, dominators.dominators(node), "Dominators of $node")
+            }
+        }
+    }
+
+    private class IntBytecodeGraph(size: Int, edges: List<Pair<Int, Int>>) : BytecodeGraph<Int> {
+
+        private val successors = edges.groupBy({ it.first }, { it.second }).mapValues { it.value.toSet() }
+        private val predecessors = edges.groupBy({ it.second }, { it.first }).mapValues { it.value.toSet() }
+
+        override val instructions: List<Int> = (0 until size).toList()
+        override val entries: List<Int> = listOf(0)
+        override val exits: List<Int> = instructions.filter { successors[it].isNullOrEmpty() }
+
+        override fun successors(node: Int): Set<Int> = successors[node].orEmpty()
+        override fun predecessors(node: Int): Set<Int> = predecessors[node].orEmpty()
+        override fun throwers(node: Int): Set<Int> = emptySet()
+        override fun catchers(node: Int): Set<Int> = emptySet()
+
+        fun reachableFrom(start: Int, removed: Int): Set<Int> {
+            if (start == removed) return emptySet()
+            val result = hashSetOf(start)
+            val stack = ArrayDeque(listOf(start))
+            while (stack.isNotEmpty()) {
+                successors(stack.removeLast()).forEach {
+                    if (it != removed && result.add(it)) {
+                        stack.addLast(it)
+                    }
+                }
+            }
+            return result
+        }
+    }
+}
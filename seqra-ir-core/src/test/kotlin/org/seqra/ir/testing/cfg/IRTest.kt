@@ -6,6 +6,7 @@ import org.seqra.ir.api.jvm.JIRMethod
 import org.seqra.ir.api.jvm.JIRTypedMethod
 import org.seqra.ir.api.jvm.TypeName
 import org.seqra.ir.api.jvm.cfg.JIRAssignInst
+import org.seqra.ir.api.jvm.cfg.JIRBranchingInst
 import org.seqra.ir.api.jvm.cfg.JIRCallExpr
 import org.seqra.ir.api.jvm.cfg.JIRCallInst
 import org.seqra.ir.api.jvm.cfg.JIRCatchInst
@@ -125,9 +126,24 @@ class JIRGraphChecker(
 
         jIRGraph.forEach { it.accept(this) }
 
+        checkAdjacency()
         checkBlocks()
     }
 
+    fun checkAdjacency() {
+        for (inst in jIRGraph) {
+            val successors = jIRGraph.successors(inst)
+            assertEquals(successors.size, successors.toSet().size)
+            assertTrue(successors.all { inst in jIRGraph.predecessors(it) })
+            assertTrue(jIRGraph.predecessors(inst).all { inst in jIRGraph.successors(it) })
+            assertTrue(jIRGraph.catchers(inst).all { inst in jIRGraph.throwers(it) })
+            assertTrue(jIRGraph.throwers(inst).all { inst in jIRGraph.catchers(it) })
+            if (inst is JIRBranchingInst) {
+                assertEquals(inst.successors.map { jIRGraph.inst(it) }.toSet(), successors)
+            }
+        }
+    }
+
     fun checkBlocks() {
         val blockGraph = jIRGraph.blockGraph()
 
@@ -0,0 +1,111 @@
+package org.seqra.ir.testing.cfg
+
+import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.JIRMethod
+import org.seqra.ir.api.jvm.cfg.JIRInstList
+import org.seqra.ir.api.jvm.cfg.JIRRawInst
+import org.seqra.ir.api.jvm.ext.findClass
+import org.seqra.ir.impl.JIRClasspathImpl
+import org.seqra.ir.impl.JIRRamErsSettings
+import org.seqra.ir.impl.bytecode.JIRClassOrInterfaceImpl
+import org.seqra.ir.impl.cfg.RawInstListBuilder
+import org.seqra.ir.impl.cfg.RawInstListSerializer
+import org.seqra.ir.impl.seqraIrDb
+import org.seqra.ir.impl.storage.ers.ErsPersistenceImpl
+import org.seqra.ir.impl.storage.ers.ErsRawInstListStore
+import org.seqra.ir.impl.storage.txn
+import org.seqra.ir.testing.BaseTest
+import org.seqra.ir.testing.WithGlobalDbImmutable
+import org.seqra.ir.testing.allClasspath
+import org.seqra.ir.testing.allJars
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+class PersistentRawInstListsTest : BaseTest() {
+
+    companion object : WithGlobalDbImmutable()
+
+    private val methods: List<JIRMethod>
+        get() = listOf(
+            cp.findClass<JIRClasspathImpl>(),
+            cp.findClass<RawInstListBuilder>(),
+            cp.findClass<IRExamples>(),
+            cp.findClass("kotlinx.coroutines.channels.ChannelsKt__DeprecatedKt\$filterIndexed\$1"),
+        ).flatMap { it.declaredMethods }.filter { !it.isAbstract && !it.isNative }
+
+    @Test
+    fun `raw instructions are serialized and deserialized`() {
+        methods.forEach { method ->
+            val instList = method.rawInstList
+            val bytes = RawInstListSerializer.serialize(instList)
+            val deserialized = RawInstListSerializer.deserialize(method, bytes)
+            assertNotNull(deserialized)
+            assertSameInstructions(instList, deserialized!!)
+        }
+    }
+
+    @Test
+    fun `raw instructions are stored in database`() {
+        val db = runBlocking {
+            seqraIrDb {
+                persistenceImpl(JIRRamErsSettings)
+                persistRawInstLists()
+                loadByteCode(allJars)
+                useProcessJavaRuntime()
+                buildModelForJRE(build = false)
+            }
+        }
+        db.use {
+            val cp = runBlocking { db.classpath(allClasspath) }
+            val method = cp.findClass<JIRClasspathImpl>().declaredMethods.first { it.name == "findClassOrNull" }
+            val store = ErsRawInstListStore(db.persistence as ErsPersistenceImpl, keepLocalVariableNames = false)
+            assertNull(store.find(method))
+
+            val instList = method.rawInstList
+            store.save(method, instList)
+            store.flush()
+
+            val restored = ErsRawInstListStore(db.persistence as ErsPersistenceImpl, keepLocalVariableNames = false)
+                .find(method)
+            assertNotNull(restored)
+            assertSameInstructions(instList, restored!!)
+            // a list is found by method, not by class only
+            val other = cp.findClass<JIRClasspathImpl>().declaredMethods.first { it.name == "findTypeOrNull" }
+            assertNull(ErsRawInstListStore(db.persistence as ErsPersistenceImpl, keepLocalVariableNames = false).find(other))
+            assertNull(ErsRawInstListStore(db.persistence as ErsPersistenceImpl, keepLocalVariableNames = true).find(method))
+
+            // a list stored in another format is replaced by the rebuilt one
+            val hc = (other.enclosingClass as JIRClassOrInterfaceImpl).bytecodeHash
+            val otherKey = mapOf("hc" to hc, "method" to other.name + other.description)
+            db.persistence.write { context ->
+                context.txn.newEntity("RawInstList").also { entity ->
+                    entity["hc"] = hc
+                    entity["method"] = other.name + other.description
+                    entity.setRawBlob("instructions", byteArrayOf(RawInstListSerializer.FORMAT_VERSION.inc().toByte()))
+                }
+            }
+            assertNull(store.find(other))
+            store.save(other, other.rawInstList)
+            store.flush()
+            val rebuilt = ErsRawInstListStore(db.persistence as ErsPersistenceImpl, keepLocalVariableNames = false)
+                .find(other)
+            assertNotNull(rebuilt)
+            assertSameInstructions(other.rawInstList, rebuilt!!)
+            db.persistence.read { context ->
+                assertEquals(1L, context.txn.find("RawInstList", otherKey).size)
+            }
+        }
+    }
+
+    private fun assertSameInstructions(expected: JIRInstList<JIRRawInst>, actual: JIRInstList<JIRRawInst>) {
+        assertEquals(expected.size, actual.size)
+        expected.instructions.zip(actual.instructions).forEach { (expectedInst, actualInst) ->
+            assertEquals(expectedInst.javaClass, actualInst.javaClass)
+            assertEquals(expectedInst.toString(), actualInst.toString())
+            assertEquals(expectedInst.operands, actualInst.operands)
+            assertEquals(expectedInst.owner, actualInst.owner)
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.seqra.ir.testing.cfg
+
+import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.JIRClassOrInterface
+import org.seqra.ir.api.jvm.JIRInstExtFeature
+import org.seqra.ir.api.jvm.JIRMethod
+import org.seqra.ir.api.jvm.JIRWarmUpListener
+import org.seqra.ir.api.jvm.cfg.JIRInst
+import org.seqra.ir.api.jvm.cfg.JIRInstList
+import org.seqra.ir.api.jvm.ext.findClass
+import org.seqra.ir.impl.JIRClasspathImpl
+import org.seqra.ir.impl.cfg.RawInstListBuilder
+import org.seqra.ir.testing.BaseTest
+import org.seqra.ir.testing.WithGlobalDbImmutable
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import java.lang.reflect.Proxy
+import java.util.*
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class WarmUpTest : BaseTest({ listOf(InstListsCounter) }) {
+
+    companion object : WithGlobalDbImmutable()
+
+    @Test
+    fun `warm up builds instructions of all methods`() {
+        val classes = listOf(
+            cp.findClass<JIRClasspathImpl>(),
+            cp.findClass<RawInstListBuilder>(),
+            cp.findClass<IRExamples>(),
+        )
+        val listener = RecordingListener()
+        runBlocking {
+            cp.warmUp(classes, listener, parallelism = 2)
+        }
+        assertEquals(classes.map { it.name }.toSet(), listener.processed)
+        assertEquals(classes.size, listener.total.get())
+        assertEquals(0, listener.failed.get())
+
+        val methods = classes.flatMap { it.declaredMethods }.filter { !it.isAbstract && !it.isNative }
+        assertTrue(methods.all { it in InstListsCounter.built })
+
+        // instructions are served from classpath cache
+        val built = InstListsCounter.count.get()
+        methods.forEach { it.flowGraph() }
+        assertEquals(built, InstListsCounter.count.get())
+    }
+
+    @Test
+    fun `warm up of location`() {
+        val location = cp.findClass<IRExamples>().declaration.location
+        val listener = RecordingListener()
+        runBlocking {
+            cp.warmUp(location, listener)
+        }
+        assertTrue(IRExamples::class.java.name in listener.processed)
+        assertEquals(listener.total.get(), listener.processed.size)
+    }
+
+    @Test
+    fun `failed class doesn't stop warm up`() {
+        val broken = Proxy.newProxyInstance(
+            javaClass.classLoader,
+            arrayOf(JIRClassOrInterface::class.java)
+        ) { _, method, _ ->
+            when (method.name) {
+                "getName", "toString" -> "Broken"
+                else -> throw IllegalStateException("Broken class")
+            }
+        } as JIRClassOrInterface
+        val listener = RecordingListener()
+        runBlocking {
+            cp.warmUp(listOf(broken, cp.findClass<IRExamples>()), listener, parallelism = 1)
+        }
+        assertEquals(setOf(IRExamples::class.java.name), listener.processed)
+        assertEquals(listOf("Broken"), listener.failedClasses)
+    }
+
+    @Test
+    fun `warm up is cancellable`() {
+        val location = cp.findClass<JIRClasspathImpl>().declaration.location
+        val firstProcessed = CountDownLatch(1)
+        val cancelled = CountDownLatch(1)
+        val listener = object : RecordingListener() {
+            override fun onClassProcessed(clazz: JIRClassOrInterface, processed: Int, total: Int) {
+                super.onClassProcessed(clazz, processed, total)
+                if (processed == 1) {
+                    firstProcessed.countDown()
+                    cancelled.await()
+                }
+            }
+        }
+        val warmUp = cp.warmUpAsync(location, listener, parallelism = 1)
+        assertTrue(firstProcessed.await(1, TimeUnit.MINUTES))
+        assertTrue(warmUp.cancel(true))
+        cancelled.countDown()
+
+        assertTrue(warmUp.isCancelled)
+        assertThrows<CancellationException> { warmUp.get() }
+        assertTrue(listener.total.get() > 1)
+        // classes which are not started yet are not processed after cancellation
+        Thread.sleep(1_000)
+        assertEquals(1, listener.processed.size)
+    }
+
+    private open class RecordingListener : JIRWarmUpListener {
+
+        val processed: MutableSet<String> = ConcurrentHashMap.newKeySet()
+        val total = AtomicInteger()
+        val failed = AtomicInteger()
+        val failedClasses: MutableList<String> = Collections.synchronizedList(mutableListOf())
+
+        override fun onClassProcessed(clazz: JIRClassOrInterface, processed: Int, total: Int) {
+            this.processed.add(clazz.name)
+            this.total.set(total)
+        }
+
+        override fun onMethodFailed(method: JIRMethod, error: Throwable) {
+            failed.incrementAndGet()
+        }
+
+        override fun onClassFailed(className: String, error: Throwable, processed: Int, total: Int) {
+            failedClasses.add(className)
+        }
+    }
+}
+
+private object InstListsCounter : JIRInstExtFeature {
+
+    val count = AtomicInteger()
+    val built: MutableSet<JIRMethod> = ConcurrentHashMap.newKeySet()
+
+    override fun transformInstList(method: JIRMethod, list: JIRInstList<JIRInst>): JIRInstList<JIRInst> {
+        count.incrementAndGet()
+        built.add(method)
+        return list
+    }
+}
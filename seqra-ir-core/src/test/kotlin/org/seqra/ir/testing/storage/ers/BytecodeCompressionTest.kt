@@ -0,0 +1,63 @@
+package org.seqra.ir.testing.storage.ers
+
+import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.JavaVersion
+import org.seqra.ir.impl.JIRRamErsSettings
+import org.seqra.ir.impl.fs.JarLocation
+import org.seqra.ir.impl.seqraIrDb
+import org.seqra.ir.impl.storage.ers.BytecodeCompression
+import org.seqra.ir.testing.allJars
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class BytecodeCompressionTest {
+
+    private val java8 = object : JavaVersion {
+        override val majorVersion = 8
+    }
+
+    @Test
+    fun `bytecode is compressed and decompressed`() {
+        var total = 0L
+        var compressed = 0L
+        allJars.take(5).forEach { jar ->
+            JarLocation(jar, isRuntime = false, java8).classes.values.forEach { bytecode ->
+                val bytes = BytecodeCompression.compress(bytecode)
+                assertArrayEquals(bytecode, BytecodeCompression.decompress(bytes))
+                total += bytecode.size
+                compressed += bytes.size
+            }
+        }
+        assertTrue(compressed < total / 2, "Compressed $compressed bytes of $total")
+    }
+
+    @Test
+    fun `uncompressed bytecode is returned as is`() {
+        val bytecode = byteArrayOf(0xCA.toByte(), 0xFE.toByte(), 0xBA.toByte(), 0xBE.toByte())
+        assertSame(bytecode, BytecodeCompression.decompress(bytecode))
+    }
+
+    @Test
+    fun `compressed bytecode is read from database`() {
+        val db = runBlocking {
+            seqraIrDb {
+                persistenceImpl(JIRRamErsSettings)
+                compressBytecode()
+                loadByteCode(allJars)
+                useProcessJavaRuntime()
+                buildModelForJRE(build = false)
+            }.also {
+                it.awaitBackgroundJobs()
+            }
+        }
+        db.use {
+            val location = db.locations.first { !it.isRuntime && it.jIRLocation?.classes?.isNotEmpty() == true }
+            val classes = location.jIRLocation!!.classes
+            db.persistence.findClassSources(db, location).forEach {
+                assertArrayEquals(classes[it.className], it.byteCode)
+            }
+        }
+    }
+}
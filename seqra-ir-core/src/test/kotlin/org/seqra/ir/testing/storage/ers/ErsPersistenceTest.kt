@@ -0,0 +1,95 @@
+package org.seqra.ir.testing.storage.ers
+
+import kotlinx.coroutines.runBlocking
+import org.seqra.ir.api.jvm.JIRDatabase
+import org.seqra.ir.api.storage.ers.EntityRelationshipStorageSPI
+import org.seqra.ir.api.storage.ers.compressed
+import org.seqra.ir.impl.JIRRamErsSettings
+import org.seqra.ir.impl.JIRSettings
+import org.seqra.ir.impl.fs.JavaRuntime
+import org.seqra.ir.impl.seqraIrDb
+import org.seqra.ir.impl.storage.ers.ErsPersistenceImpl
+import org.seqra.ir.impl.storage.ers.findClasses
+import org.seqra.ir.impl.storage.ers.ram.RAM_ERS_SPI
+import org.seqra.ir.impl.storage.txn
+import org.seqra.ir.testing.allJars
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+class ErsPersistenceTest {
+
+    private lateinit var db: JIRDatabase
+
+    @Test
+    fun `all classes of locations persisted in parallel are stored`() {
+        val appLocations = db.locations.filter { !it.isRuntime }
+        assertTrue(appLocations.size > 1)
+        appLocations.forEach { location ->
+            val persisted = db.persistence.findClassSources(db, location).map { it.className }
+            assertEquals(persisted.size, persisted.toSet().size, "Duplicated classes in ${location.path}")
+            assertEquals(location.jIRLocation!!.classes.keys, persisted.toSet(), "Lost classes in ${location.path}")
+        }
+    }
+
+    @Test
+    fun `classes are found by name and location`() {
+        val location = db.locations.filter { !it.isRuntime }.maxBy { it.jIRLocation!!.classes.size }
+        val allLocationIds = db.locations.mapTo(HashSet()) { it.id }
+        val persistence = db.persistence
+        persistence.read { context ->
+            val txn = context.txn
+            location.jIRLocation!!.classes.keys.forEach { className ->
+                val nameId = persistence.findSymbolId(className)
+                val clazz = txn.findClasses(nameId, location.id).single()
+                assertEquals(location.id, clazz.getCompressed<Long>("locationId"))
+                assertEquals(nameId, clazz.getCompressed<Long>("nameId"))
+                assertEquals(listOf(clazz), txn.findClasses(nameId, setOf(location.id)).toList())
+                assertTrue(clazz in txn.findClasses(nameId, allLocationIds))
+                assertTrue(txn.findClasses(nameId, emptySet()).none())
+            }
+        }
+    }
+
+    @Test
+    fun `storage of outdated format is dropped on start`() {
+        val ers = EntityRelationshipStorageSPI.getProvider(RAM_ERS_SPI).newStorage(null, JIRRamErsSettings)
+        // a class written by a version which didn't store composite name and location key
+        ers.transactional { txn -> txn.newEntity("Class")["nameId"] = 1L.compressed }
+        val javaRuntime = JavaRuntime(JIRSettings().useProcessJavaRuntime().jre)
+        val persistence = ErsPersistenceImpl(javaRuntime, clearOnStart = false, ers)
+        persistence.read { context ->
+            assertTrue(context.txn.all("Class").isEmpty)
+        }
+        persistence.write { context ->
+            context.txn.newEntity("Class")["nameId"] = 1L.compressed
+        }
+        // storage of the current format is kept
+        ErsPersistenceImpl(javaRuntime, clearOnStart = false, ers).use { reopened ->
+            reopened.read { context ->
+                assertEquals(1L, context.txn.all("Class").size)
+            }
+        }
+    }
+
+    @BeforeEach
+    fun setUp() {
+        db = runBlocking {
+            seqraIrDb {
+                persistenceImpl(JIRRamErsSettings)
+                loadByteCode(allJars)
+                useProcessJavaRuntime()
+                buildModelForJRE(build = false)
+            }.also {
+                it.awaitBackgroundJobs()
+            }
+        }
+    }
+
+    @AfterEach
+    fun tearDown() {
+        db.close()
+    }
+}
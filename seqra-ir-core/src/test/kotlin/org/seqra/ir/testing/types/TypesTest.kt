@@ -122,6 +122,19 @@ class TypesTest : BaseTypesTest() {
         assertNotEquals(objectList.iterator, stringList1.iterator)
     }
 
+    @Test
+    fun `inherited methods are substituted for each parametrization`() {
+        val stringList = listType<String>(ArrayList::class.java.name)
+        val isList = listType<InputStream>(ArrayList::class.java.name)
+
+        repeat(2) {
+            assertEquals("java.util.stream.Stream<java.lang.String>", stringList.stream.returnType.typeName)
+            assertEquals("java.util.stream.Stream<java.io.InputStream>", isList.stream.returnType.typeName)
+        }
+        assertEquals(stringList.stream, listType<String>(ArrayList::class.java.name).stream)
+        assertEquals(rawList().methods.map { it.name }, listType<String>().methods.map { it.name })
+    }
+
     @Test
     fun `humanReadableSignature should work`() {
         val type = listType<String>()
@@ -131,10 +144,10 @@ class TypesTest : BaseTypesTest() {
         )
     }
 
-    private inline fun <reified T> listType(raw: Boolean = false): JIRClassType {
+    private inline fun <reified T> listType(className: String = listClass, raw: Boolean = false): JIRClassType {
         val elementName = T::class.java.name
         return JIRClassTypeImpl(
-            cp, listClass, null,
+            cp, className, null,
             when {
                 raw -> emptyList()
                 else -> listOf(JvmClassRefType(elementName, false, emptyList()))
@@ -149,4 +162,6 @@ class TypesTest : BaseTypesTest() {
 
     private val JIRClassType.iterator get() = findMethodOrNull { it.name == "iterator" && it.parameters.isEmpty() }
 
+    private val JIRClassType.stream get() = methods.single { it.name == "stream" && it.parameters.isEmpty() }
+
 }
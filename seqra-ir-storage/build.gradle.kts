@@ -12,6 +12,7 @@ dependencies {
     compileOnly(Libs.lmdb_java)
     compileOnly(Libs.rocks_db)
     compileOnly(Libs.guava)
+    compileOnly(Libs.caffeine)
     compileOnly(Libs.xodusUtils)
 
     testImplementation(Libs.xodusEnvironment)
@@ -2,8 +2,11 @@ package org.seqra.ir.impl
 
 import jetbrains.exodus.env.EnvironmentConfig
 import org.seqra.ir.api.storage.ers.ErsSettings
+import org.seqra.ir.impl.storage.ers.kv.isPropertiesOrLinkTargetsMap
 import org.seqra.ir.impl.storage.kv.lmdb.LMDB_KEY_VALUE_STORAGE_SPI
+import org.seqra.ir.impl.storage.kv.rocks.ROCKS_KEY_VALUE_STORAGE_SPI
 import org.seqra.ir.impl.storage.kv.xodus.XODUS_KEY_VALUE_STORAGE_SPI
+import org.rocksdb.CompressionType
 
 class RamErsSettings(
     val immutableDumpsPath: String? = null
@@ -20,3 +23,20 @@ class JIRLmdbErsSettings(val mapSize: Long = 0x40_00_00_00) : JIRKvErsSettings(L
 class JIRXodusErsSettings(val configurer: (EnvironmentConfig.() -> Unit)? = null) :
     JIRKvErsSettings(XODUS_KEY_VALUE_STORAGE_SPI)
 
+/**
+ * Tuning of RocksDB column families, options set to `null` are left default. Capped prefix extractor of
+ * [prefixLength] bytes is set only for column families of maps matching [isPrefixedMap].
+ *
+ * If [ingestionThreshold] is set, a read-write transaction which has made at least that number of writes is committed
+ * by writing them sorted to SST files which are then ingested to the database bypassing memtables. This is intended
+ * for the initial build of a large database by a single writer: ingestion is not atomic across column families,
+ * so the storage fails if it's interrupted halfway, and it overwrites concurrent changes of the same keys.
+ */
+class JIRRocksErsSettings(
+    val blockCacheSize: Long? = null,
+    val bloomFilterBitsPerKey: Double? = null,
+    val compression: CompressionType? = null,
+    val prefixLength: Int? = null,
+    val isPrefixedMap: (String) -> Boolean = { mapName -> mapName.isPropertiesOrLinkTargetsMap },
+    val ingestionThreshold: Long? = null
+) : JIRKvErsSettings(ROCKS_KEY_VALUE_STORAGE_SPI)
@@ -0,0 +1,70 @@
+package org.seqra.ir.impl.caches.caffeine
+
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import org.seqra.ir.api.caches.PluggableCache
+import org.seqra.ir.api.caches.PluggableCacheBuilder
+import org.seqra.ir.api.caches.PluggableCacheProvider
+import org.seqra.ir.api.caches.PluggableCacheStats
+import org.seqra.ir.api.caches.ValueStoreType
+
+const val CAFFEINE_CACHE_PROVIDER_ID = "org.seqra.ir.impl.caches.caffeine.CaffeineCacheProvider"
+
+/**
+ * Caffeine caches use W-TinyLFU eviction policy and support bounding by weight of values.
+ */
+class CaffeineCacheProvider : PluggableCacheProvider {
+
+    override val id = CAFFEINE_CACHE_PROVIDER_ID
+
+    override fun <K : Any, V : Any> newBuilder(): PluggableCacheBuilder<K, V> = CaffeineCacheBuilder()
+}
+
+private class CaffeineCacheBuilder<K : Any, V : Any> : PluggableCacheBuilder<K, V>() {
+
+    override fun build(): PluggableCache<K, V> {
+        return CaffeineCache(
+            Caffeine.newBuilder()
+                // evict on the calling thread as other pluggable caches do instead of common pool
+                .executor(Runnable::run)
+                .apply {
+                    val weigher = weigher
+                    if (weigher != null && maximumWeight > 0) {
+                        maximumWeight(maximumWeight).weigher<K, V> { key, value -> weigher(key, value) }
+                    } else {
+                        maximumSize(maximumSize.toLong())
+                    }
+                    expirationDuration.let {
+                        if (it != java.time.Duration.ZERO) {
+                            expireAfterAccess(it)
+                        }
+                    }
+                    when (valueRefType) {
+                        ValueStoreType.WEAK -> weakValues()
+                        ValueStoreType.SOFT -> softValues()
+                        ValueStoreType.STRONG -> {} // do nothing
+                    }
+                }
+                .recordStats()
+                .build()
+        )
+    }
+}
+
+private class CaffeineCache<K : Any, V : Any>(private val caffeineCache: Cache<K, V>) : PluggableCache<K, V> {
+
+    override fun get(key: K): V? = caffeineCache.getIfPresent(key)
+
+    override fun set(key: K, value: V) = caffeineCache.put(key, value)
+
+    override fun remove(key: K) = caffeineCache.invalidate(key)
+
+    override fun getStats() = object : PluggableCacheStats {
+
+        val caffeineStats = caffeineCache.stats()
+
+        override val hitRate: Double get() = caffeineStats.hitRate()
+
+        override val requestCount: Long get() = caffeineStats.requestCount()
+    }
+}
@@ -22,8 +22,13 @@ private class GuavaCacheBuilder<K : Any, V : Any> : PluggableCacheBuilder<K, V>(
     override fun build(): PluggableCache<K, V> {
         return GuavaCache(
             CacheBuilder.newBuilder()
-                .maximumSize(maximumSize.toLong())
                 .apply {
+                    val weigher = weigher
+                    if (weigher != null && maximumWeight > 0) {
+                        maximumWeight(maximumWeight).weigher<K, V> { key, value -> weigher(key, value) }
+                    } else {
+                        maximumSize(maximumSize.toLong())
+                    }
                     expirationDuration.let {
                         if (it != java.time.Duration.ZERO) {
                             expireAfterAccess(it)
@@ -1,11 +1,14 @@
 package org.seqra.ir.impl.storage
 
+import org.seqra.ir.api.caches.PluggableCache
+import org.seqra.ir.api.caches.PluggableCacheProvider
 import org.seqra.ir.api.storage.ConcurrentSymbolInterner
 import org.seqra.ir.api.storage.StorageContext
 import org.seqra.ir.api.storage.ers.EntityRelationshipStorage
 import org.seqra.ir.api.storage.ers.compressed
 import org.seqra.ir.api.storage.ers.nonSearchable
 import org.seqra.ir.api.storage.kv.forEach
+import org.seqra.ir.impl.caches.xodus.XODUS_CACHE_PROVIDER_ID
 import org.seqra.ir.impl.storage.ers.BuiltInBindingProvider
 import org.seqra.ir.impl.storage.ers.decorators.unwrap
 import org.seqra.ir.impl.storage.ers.kv.KVErsTransaction
@@ -13,19 +16,84 @@ import kotlin.math.max
 
 private const val symbolsMapName = "org.seqra.ir.impl.storage.Symbols"
 
-class NoSqlSymbolInterner(var ers: EntityRelationshipStorage) : ConcurrentSymbolInterner() {
+/**
+ * Reverse of [symbolsMapName]: symbol name -> symbol id. It allows to find symbols in KV storage by name,
+ * so symbols don't have to be loaded in memory to be looked up in both directions.
+ */
+private const val symbolIdsMapName = "org.seqra.ir.impl.storage.SymbolIds"
+
+/**
+ * Contains max ever allocated symbol id. Its presence also means that [symbolIdsMapName] is complete.
+ */
+private const val symbolsMetaMapName = "org.seqra.ir.impl.storage.SymbolsMeta"
+
+private const val maxIdKey = "maxId"
+
+/**
+ * Symbol interner of ERS persistence.
+ *
+ * By default, all symbols are loaded in memory on [setup]. If [lazySymbols] is set and the storage is KV-based,
+ * symbols are looked up in the storage which keeps them sorted by both id and name, and only recently used symbols
+ * are cached in memory.
+ *
+ * New symbols are kept in memory until the transaction they are flushed in is committed. Writer of the storage
+ * reports the outcome of the transaction by [committed] or [aborted], so symbols flushed to an aborted transaction
+ * are flushed anew by the next one.
+ */
+class NoSqlSymbolInterner(
+    var ers: EntityRelationshipStorage,
+    private val lazySymbols: Boolean = false
+) : ConcurrentSymbolInterner() {
+
+    companion object {
+        private val hotSymbolsCacheSize = Integer.getInteger("org.seqra.ir.impl.storage.hotSymbolsCacheSize", 100_000)
+
+        private val stringBinding = BuiltInBindingProvider.getBinding(String::class.java)
+        private val longBinding = BuiltInBindingProvider.getBinding(Long::class.java)
+    }
+
+    /**
+     * `true` if symbols are looked up in the storage rather than loaded in memory.
+     */
+    @Volatile
+    var isLazy = false
+        private set
+
+    // for KV storage, symbols loaded from database without reverse map should be written to it on next flush
+    @Volatile
+    private var symbolIdsMapIncomplete = false
+
+    // symbols flushed to the current write transaction, they are forgotten as new ones once it's committed
+    private val uncommittedElements = HashMap<String, Long>()
+    private var symbolIdsMapCompleted = false
+
+    private var hotIds: PluggableCache<String, Long>? = null
+    private var hotNames: PluggableCache<Long, String>? = null
 
     fun setup() {
         symbolsCache.clear()
         idCache.clear()
         newElements.clear()
+        uncommittedElements.clear()
+        symbolIdsMapCompleted = false
+        symbolIdsMapIncomplete = false
+        isLazy = false
+        hotIds = null
+        hotNames = null
         ers.transactional(readonly = true) { txn ->
             var maxId = -1L
             val unwrapped = txn.unwrap
             if (unwrapped is KVErsTransaction) {
                 val kvTxn = unwrapped.kvTxn
-                val stringBinding = BuiltInBindingProvider.getBinding(String::class.java)
-                val longBinding = BuiltInBindingProvider.getBinding(Long::class.java)
+                val storedMaxId = kvTxn.get(symbolsMetaMapName, stringBinding.getBytes(maxIdKey))
+                    ?.let { longBinding.getObjectCompressed(it) }
+                if (lazySymbols && !ers.isInRam && (storedMaxId != null || kvTxn.getNamedMap(symbolsMapName) == null)) {
+                    isLazy = true
+                    hotIds = newHotCache()
+                    hotNames = newHotCache()
+                    symbolsIdGen.set(storedMaxId ?: -1L)
+                    return@transactional
+                }
                 kvTxn.navigateTo(symbolsMapName).forEach { idBytes, nameBytes ->
                     val id = longBinding.getObjectCompressed(idBytes)
                     val name = stringBinding.getObject(nameBytes)
@@ -33,6 +101,10 @@ class NoSqlSymbolInterner(var ers: EntityRelationshipStorage) : ConcurrentSymbol
                     idCache[id] = name
                     maxId = max(maxId, id)
                 }
+                // database written before reverse map was introduced, it is completed on next flush
+                if (storedMaxId == null && maxId >= 0) {
+                    symbolIdsMapIncomplete = true
+                }
             } else {
                 val symbols = txn.all("Symbol").toList()
                 symbols.forEach { symbol ->
@@ -49,23 +121,59 @@ class NoSqlSymbolInterner(var ers: EntityRelationshipStorage) : ConcurrentSymbol
         }
     }
 
+    override fun findOrNew(symbol: String): Long {
+        if (!isLazy) {
+            return super.findOrNew(symbol)
+        }
+        val hotIds = hotIds!!
+        hotIds[symbol]?.let { return it }
+        // symbols which are not yet surely committed
+        symbolsCache[symbol]?.let { return it }
+        findStoredId(symbol)?.let { id ->
+            hotIds[symbol] = id
+            return id
+        }
+        return super.findOrNew(symbol)
+    }
+
+    override fun findSymbolName(symbolId: Long): String? {
+        if (!isLazy) {
+            return super.findSymbolName(symbolId)
+        }
+        val hotNames = hotNames!!
+        hotNames[symbolId]?.let { return it }
+        idCache[symbolId]?.let { return it }
+        return findStoredName(symbolId)?.also { hotNames[symbolId] = it }
+    }
+
     override fun flush(context: StorageContext, force: Boolean) {
         if (!context.isErsContext) {
             error("Can't use non-ERS context in NoSqlSymbolInterner")
         }
         if (ers.isInRam && !force) return
-        val entries = newElements.entries.toList()
-        if (entries.isNotEmpty()) {
+        // symbols already flushed to the same transaction are not written twice
+        val entries = newElements.entries.filter { (name, id) -> uncommittedElements[name] != id }
+        val symbolIdsMapIncomplete = symbolIdsMapIncomplete && !symbolIdsMapCompleted
+        if (entries.isNotEmpty() || symbolIdsMapIncomplete) {
             context.txn.let { txn ->
                 val unwrapped = txn.unwrap
                 if (unwrapped is KVErsTransaction) {
                     val kvTxn = unwrapped.kvTxn
                     val symbolsMap = kvTxn.getNamedMap(symbolsMapName, create = true)!!
-                    val stringBinding = BuiltInBindingProvider.getBinding(String::class.java)
-                    val longBinding = BuiltInBindingProvider.getBinding(Long::class.java)
-                    entries.forEach { (name, id) ->
-                        kvTxn.put(symbolsMap, longBinding.getBytesCompressed(id), stringBinding.getBytes(name))
+                    val symbolIdsMap = kvTxn.getNamedMap(symbolIdsMapName, create = true)!!
+                    val toWrite = if (symbolIdsMapIncomplete) symbolsCache.entries.toList() else entries
+                    toWrite.forEach { (name, id) ->
+                        val idEntry = longBinding.getBytesCompressed(id)
+                        val nameEntry = stringBinding.getBytes(name)
+                        kvTxn.put(symbolsMap, idEntry, nameEntry)
+                        kvTxn.put(symbolIdsMap, nameEntry, idEntry)
                     }
+                    kvTxn.put(
+                        symbolsMetaMapName,
+                        stringBinding.getBytes(maxIdKey),
+                        longBinding.getBytesCompressed(symbolsIdGen.get())
+                    )
+                    symbolIdsMapCompleted = true
                 } else {
                     entries.forEach { (name, id) ->
                         txn.newEntity("Symbol").also { symbol ->
@@ -75,9 +183,56 @@ class NoSqlSymbolInterner(var ers: EntityRelationshipStorage) : ConcurrentSymbol
                     }
                 }
             }
-            entries.forEach {
-                newElements.remove(it.key)
+            entries.forEach { (name, id) ->
+                uncommittedElements[name] = id
+            }
+        }
+    }
+
+    /**
+     * Is called after the transaction symbols were flushed to is committed, flushed symbols are no longer new.
+     */
+    fun committed() {
+        uncommittedElements.forEach { (name, id) ->
+            newElements.remove(name, id)
+            if (isLazy) {
+                // the symbol can be found in the storage now
+                symbolsCache.remove(name, id)
+                idCache.remove(id, name)
             }
         }
+        uncommittedElements.clear()
+        if (symbolIdsMapCompleted) {
+            symbolIdsMapIncomplete = false
+            symbolIdsMapCompleted = false
+        }
+    }
+
+    /**
+     * Is called after the transaction symbols were flushed to is aborted, flushed symbols are still new.
+     */
+    fun aborted() {
+        uncommittedElements.clear()
+        symbolIdsMapCompleted = false
+    }
+
+    private fun findStoredId(symbol: String): Long? = readKV { kvTxn ->
+        kvTxn.get(symbolIdsMapName, stringBinding.getBytes(symbol))?.let { longBinding.getObjectCompressed(it) }
+    }
+
+    private fun findStoredName(symbolId: Long): String? = readKV { kvTxn ->
+        kvTxn.get(symbolsMapName, longBinding.getBytesCompressed(symbolId))?.let { stringBinding.getObject(it) }
+    }
+
+    private fun <T> readKV(action: (org.seqra.ir.api.storage.kv.Transaction) -> T?): T? {
+        return ers.transactional(readonly = true) { txn ->
+            (txn.unwrap as? KVErsTransaction)?.let { action(it.kvTxn) }
+        }
+    }
+
+    private fun <K : Any, V : Any> newHotCache(): PluggableCache<K, V> {
+        return PluggableCacheProvider.getProvider(XODUS_CACHE_PROVIDER_ID).newCache {
+            maximumSize = hotSymbolsCacheSize
+        }
     }
-}
\ No newline at end of file
+}
@@ -27,6 +27,8 @@ abstract class AbstractTransactionDecorator : Transaction {
     override fun all(type: String): EntityIterable = delegate.all(type)
     override fun <T : Any> find(type: String, propertyName: String, value: T): EntityIterable =
         delegate.find(type, propertyName, value)
+    override fun find(type: String, properties: Map<String, Any>): EntityIterable =
+        delegate.find(type, properties)
     override fun <T : Any> findLt(type: String, propertyName: String, value: T): EntityIterable =
         delegate.findLt(type, propertyName, value)
     override fun <T : Any> findEqOrLt(type: String, propertyName: String, value: T): EntityIterable =
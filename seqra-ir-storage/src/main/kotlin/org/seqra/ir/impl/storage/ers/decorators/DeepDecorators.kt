@@ -63,6 +63,9 @@ private class WrapperTransaction(
     override fun <T : Any> find(type: String, propertyName: String, value: T): EntityIterable =
         wrapper.wrapEntityIterable { super.find(type, propertyName, value) }
 
+    override fun find(type: String, properties: Map<String, Any>): EntityIterable =
+        wrapper.wrapEntityIterable { super.find(type, properties) }
+
     override fun <T : Any> findLt(type: String, propertyName: String, value: T): EntityIterable =
         wrapper.wrapEntityIterable { super.findLt(type, propertyName, value) }
 
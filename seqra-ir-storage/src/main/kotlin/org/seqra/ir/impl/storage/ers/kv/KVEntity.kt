@@ -4,14 +4,17 @@ import org.seqra.ir.api.storage.ers.ERSException
 import org.seqra.ir.api.storage.ers.Entity
 import org.seqra.ir.api.storage.ers.EntityId
 import org.seqra.ir.api.storage.ers.EntityIterable
-import org.seqra.ir.api.storage.ers.InstanceIdCollectionEntityIterable
-import org.seqra.ir.api.storage.kv.forEachWithKey
+import org.seqra.ir.api.storage.kv.NamedMap
+import org.seqra.ir.api.storage.kv.asIterableWithKey
 
 class KVEntity(override val id: EntityId, override val txn: KVErsTransaction) : Entity() {
 
     override fun getRawProperty(name: String): ByteArray? {
         val propertiesMap = txn.ers.propertiesMap(id.typeId, name, txn.kvTxn, create = false) ?: return null
         val keyEntry = txn.ers.longBinding.getBytesCompressed(id.instanceId)
+        if (txn.hasBufferedWrites(id)) {
+            return txn.writeBuffer.get(propertiesMap, keyEntry)
+        }
         return txn.kvTxn.get(propertiesMap, keyEntry)
     }
 
@@ -19,6 +22,10 @@ class KVEntity(override val id: EntityId, override val txn: KVErsTransaction) :
         val kvTxn = txn.kvTxn
         val propertiesMap = txn.ers.propertiesMap(id.typeId, name, kvTxn, create = true)!!
         val keyEntry = txn.ers.longBinding.getBytesCompressed(id.instanceId)
+        if (txn.hasBufferedWrites(id)) {
+            setBufferedProperty(name, propertiesMap, keyEntry, value)
+            return
+        }
         val oldValue = kvTxn.get(propertiesMap, keyEntry)
         if (value != null) {
             if (oldValue != null && oldValue contentEquals value) {
@@ -41,14 +48,22 @@ class KVEntity(override val id: EntityId, override val txn: KVErsTransaction) :
 
     override fun getRawBlob(name: String): ByteArray? = txn.run {
         val keyEntry = ers.longBinding.getBytesCompressed(id.instanceId)
-        ers.blobsMap(id.typeId, name, kvTxn, create = false)?.let { kvTxn.get(it, keyEntry) }
+        ers.blobsMap(id.typeId, name, kvTxn, create = false)?.let {
+            if (hasBufferedWrites(id)) writeBuffer.get(it, keyEntry) else kvTxn.get(it, keyEntry)
+        }
     }
 
     override fun setRawBlob(name: String, blob: ByteArray?) {
         txn.run {
             val keyEntry = ers.longBinding.getBytesCompressed(id.instanceId)
             val blobsMap = ers.blobsMap(id.typeId, name, kvTxn, create = true)!!
-            if (blob == null) {
+            if (hasBufferedWrites(id)) {
+                if (blob == null) {
+                    writeBuffer.delete(blobsMap, keyEntry)
+                } else {
+                    writeBuffer.put(blobsMap, keyEntry, blob)
+                }
+            } else if (blob == null) {
                 kvTxn.delete(blobsMap, keyEntry)
             } else {
                 kvTxn.put(blobsMap, keyEntry, blob)
@@ -58,22 +73,14 @@ class KVEntity(override val id: EntityId, override val txn: KVErsTransaction) :
 
     override fun getLinks(name: String): EntityIterable = txn.run {
         val targetTypeId = getLinkTargetType(id.typeId, name) ?: return EntityIterable.EMPTY
-        val longBinding = ers.longBinding
-        val keyEntry = longBinding.getBytesCompressed(id.instanceId)
+        val keyEntry = ers.longBinding.getBytesCompressed(id.instanceId)
         ers.linkTargetsMap(id.typeId, name, kvTxn, create = false)?.let { linkTargetsMap ->
-            val deletedMap = ers.deletedEntitiesMap(targetTypeId, txn.kvTxn, create = false)
-            InstanceIdCollectionEntityIterable(
-                this, targetTypeId,
-                buildList {
-                    kvTxn.navigateTo(linkTargetsMap, keyEntry).use { cursor ->
-                        cursor.forEachWithKey(keyEntry) { _, instanceIdEntry ->
-                            if (deletedMap == null || !isDeleted(deletedMap, instanceIdEntry)) {
-                                add(longBinding.getObjectCompressed(instanceIdEntry))
-                            }
-                        }
-                    }
-                }
-            )
+            if (hasBufferedWrites(id)) {
+                return bufferedEntities(targetTypeId, writeBuffer.getDuplicates(linkTargetsMap, keyEntry))
+            }
+            cursorIterable(targetTypeId, { kvTxn.navigateTo(linkTargetsMap, keyEntry) }) {
+                asIterableWithKey(keyEntry).asSequence().map { (_, instanceIdEntry) -> instanceIdEntry }.iterator()
+            }
         } ?: EntityIterable.EMPTY
     }
 
@@ -91,11 +98,14 @@ class KVEntity(override val id: EntityId, override val txn: KVErsTransaction) :
             )
         }
         return txn.run {
-            kvTxn.put(
-                ers.linkTargetsMap(id.typeId, name, kvTxn, create = true)!!,
-                ers.longBinding.getBytesCompressed(id.instanceId),
-                ers.longBinding.getBytesCompressed(targetId.instanceId)
-            )
+            val linkTargetsMap = ers.linkTargetsMap(id.typeId, name, kvTxn, create = true)!!
+            val keyEntry = ers.longBinding.getBytesCompressed(id.instanceId)
+            val valueEntry = ers.longBinding.getBytesCompressed(targetId.instanceId)
+            if (hasBufferedWrites(id)) {
+                writeBuffer.putDuplicate(linkTargetsMap, keyEntry, valueEntry)
+            } else {
+                kvTxn.put(linkTargetsMap, keyEntry, valueEntry)
+            }
         }
     }
 
@@ -103,12 +113,34 @@ class KVEntity(override val id: EntityId, override val txn: KVErsTransaction) :
         return txn.run {
             ers.linkTargetsMap(id.typeId, name, kvTxn, create = false)?.let { linkTargetsMap ->
                 val longBinding = ers.longBinding
-                kvTxn.delete(
-                    linkTargetsMap,
-                    longBinding.getBytesCompressed(id.instanceId),
-                    longBinding.getBytesCompressed(targetId.instanceId)
-                )
+                val keyEntry = longBinding.getBytesCompressed(id.instanceId)
+                val valueEntry = longBinding.getBytesCompressed(targetId.instanceId)
+                if (hasBufferedWrites(id)) {
+                    writeBuffer.deleteDuplicate(linkTargetsMap, keyEntry, valueEntry)
+                } else {
+                    kvTxn.delete(linkTargetsMap, keyEntry, valueEntry)
+                }
             } ?: false
         }
     }
-}
\ No newline at end of file
+
+    // the entity has nothing stored yet, so old value is looked up only among buffered writes
+    private fun setBufferedProperty(name: String, propertiesMap: NamedMap, keyEntry: ByteArray, value: ByteArray?) {
+        val writeBuffer = txn.writeBuffer
+        val oldValue = writeBuffer.get(propertiesMap, keyEntry)
+        if (oldValue contentEquals value) {
+            // property value hasn't changed, do nothing
+            return
+        }
+        val propertiesIndex = txn.ers.propertiesIndex(id.typeId, name, txn.kvTxn, create = true)!!
+        oldValue?.let {
+            writeBuffer.deleteDuplicate(propertiesIndex, oldValue, keyEntry)
+        }
+        if (value != null) {
+            writeBuffer.put(propertiesMap, keyEntry, value)
+            writeBuffer.putDuplicate(propertiesIndex, value, keyEntry)
+        } else {
+            writeBuffer.delete(propertiesMap, keyEntry)
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.seqra.ir.impl.storage.ers.kv
+
+import org.seqra.ir.api.storage.ers.Entity
+import org.seqra.ir.api.storage.ers.EntityId
+import org.seqra.ir.api.storage.ers.InstanceIdBitmap
+import org.seqra.ir.api.storage.ers.InstanceIdsEntityIterable
+import org.seqra.ir.api.storage.kv.Cursor
+import java.util.*
+
+/**
+ * Iterates entities of a type with instance ids from `0 until count` skipping ones which are set in [deleted].
+ * Nothing except entities themselves is allocated during iteration.
+ */
+internal class InstanceIdRangeEntityIterable(
+    override val txn: KVErsTransaction,
+    override val typeId: Int,
+    private val count: Long,
+    private val deleted: BitSet?
+) : InstanceIdsEntityIterable() {
+
+    override val size: Long
+        get() = if (deleted == null) count else count - deleted.get(0, count.toInt()).cardinality()
+
+    override val isEmpty: Boolean get() = nextId(0L) >= count
+
+    override fun contains(e: Entity): Boolean {
+        val instanceId = e.id.instanceId
+        return e.id.typeId == typeId && instanceId in 0 until count && deleted?.get(instanceId.toInt()) != true
+    }
+
+    override fun iterator(): Iterator<Entity> = object : Iterator<Entity> {
+
+        private var next = nextId(0L)
+
+        override fun hasNext() = next < count
+
+        override fun next(): Entity {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            return KVEntity(EntityId(typeId, next), txn).also { next = nextId(next + 1) }
+        }
+    }
+
+    override fun toInstanceIdBitmap(): InstanceIdBitmap {
+        return InstanceIdBitmap().also { bitmap ->
+            var instanceId = nextId(0L)
+            while (instanceId < count) {
+                bitmap.add(instanceId)
+                instanceId = nextId(instanceId + 1)
+            }
+        }
+    }
+
+    private fun nextId(from: Long): Long {
+        return if (deleted == null || from >= count) from else deleted.nextClearBit(from.toInt()).toLong()
+    }
+}
+
+/**
+ * Iterates entities of a type with instance ids read by a cursor opened on each [iterator] call.
+ * Instance ids are read ahead by small batches, and once the cursor is over, it's closed and the ids are kept,
+ * so further iterations, [size] and [toInstanceIdBitmap] don't open cursors. A cursor of a result which is
+ * larger than a batch is closed by the transaction if its iteration is abandoned.
+ */
+internal class CursorEntityIterable(
+    override val txn: KVErsTransaction,
+    override val typeId: Int,
+    private val openCursor: () -> Cursor,
+    private val instanceIdEntries: Cursor.() -> Iterator<ByteArray>
+) : InstanceIdsEntityIterable() {
+
+    private var instanceIds: LongArray? = null
+
+    override val size: Long get() = loadInstanceIds().size.toLong()
+
+    override val isEmpty: Boolean
+        get() {
+            instanceIds?.let { return it.isEmpty() }
+            // only the first entry is read, so the cursor is closed at once
+            return openCursor().use { cursor -> nextInstanceId(cursor.instanceIdEntries()) < 0L }
+        }
+
+    override fun iterator(): Iterator<Entity> {
+        val instanceIds = instanceIds ?: return CursorIterator()
+        return object : Iterator<Entity> {
+
+            private var position = 0
+
+            override fun hasNext() = position < instanceIds.size
+
+            override fun next(): Entity {
+                if (!hasNext()) {
+                    throw NoSuchElementException()
+                }
+                return KVEntity(EntityId(typeId, instanceIds[position++]), txn)
+            }
+        }
+    }
+
+    override fun toInstanceIdBitmap(): InstanceIdBitmap {
+        return InstanceIdBitmap().also { bitmap -> loadInstanceIds().forEach { bitmap.add(it) } }
+    }
+
+    private fun loadInstanceIds(): LongArray = instanceIds ?: CursorIterator().readAll()
+
+    private fun nextInstanceId(entries: Iterator<ByteArray>): Long {
+        while (entries.hasNext()) {
+            val instanceId = txn.ers.longBinding.getObjectCompressed(entries.next())
+            if (!txn.isDeleted(typeId, instanceId)) {
+                return instanceId
+            }
+        }
+        return -1L
+    }
+
+    private inner class CursorIterator : Iterator<Entity> {
+
+        private var cursor: Cursor? = txn.trackCursor(openCursor())
+        private val entries = cursor!!.instanceIdEntries()
+        private var found = LongArray(READ_AHEAD)
+        private var foundCount = 0
+        private var position = 0
+
+        init {
+            readAhead()
+        }
+
+        override fun hasNext() = position < foundCount
+
+        override fun next(): Entity {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            val instanceId = found[position++]
+            if (position == foundCount) {
+                readAhead()
+            }
+            return KVEntity(EntityId(typeId, instanceId), txn)
+        }
+
+        fun readAll(): LongArray {
+            while (cursor != null) {
+                readAhead()
+            }
+            return checkNotNull(instanceIds)
+        }
+
+        private fun readAhead() {
+            val cursor = cursor ?: return
+            repeat(READ_AHEAD) {
+                val instanceId = nextInstanceId(entries)
+                if (instanceId < 0L) {
+                    txn.closeCursor(cursor)
+                    this.cursor = null
+                    instanceIds = found.copyOf(foundCount)
+                    return
+                }
+                if (foundCount == found.size) {
+                    found = found.copyOf(found.size * 2)
+                }
+                found[foundCount++] = instanceId
+            }
+        }
+    }
+
+    private companion object {
+        const val READ_AHEAD = 32
+    }
+}
@@ -9,6 +9,7 @@ import org.seqra.ir.api.storage.kv.PluggableKeyValueStorage
 import org.seqra.ir.api.storage.kv.forEach
 import org.seqra.ir.impl.storage.ers.EntityRelationshipStorageBase
 import org.seqra.ir.impl.storage.ers.decorators.withAllDecorators
+import org.seqra.ir.impl.storage.ers.decorators.withChecks
 import org.seqra.ir.impl.storage.ers.getBinding
 import java.util.concurrent.ConcurrentHashMap
 
@@ -29,7 +30,11 @@ class KVEntityRelationshipStorage(private val kvStorage: PluggableKeyValueStorag
     private val linkTargetsMaps = ConcurrentHashMap<TypeIdWithName, NamedMap>() // (typeId, linkName) -> NamedMap
     private val currentThreadRWTxn = ThreadLocal<Transaction>()
 
-    override fun beginTransaction(readonly: Boolean): Transaction {
+    override fun beginTransaction(readonly: Boolean): Transaction = beginTransaction(readonly, bulk = false)
+
+    override fun beginBulkTransaction(): Transaction = beginTransaction(readonly = false, bulk = true)
+
+    private fun beginTransaction(readonly: Boolean, bulk: Boolean): Transaction {
         currentThreadRWTxn.get()?.let {
             if (!readonly) {
                 throw ERSConflictingTransactionException("Read-write transaction has already started in current thread")
@@ -37,12 +42,18 @@ class KVEntityRelationshipStorage(private val kvStorage: PluggableKeyValueStorag
         }
         return KVErsTransaction(
             this,
-            if (readonly) kvStorage.beginReadonlyTransaction() else kvStorage.beginTransaction()
-        ).also { txn ->
-            if (!txn.isReadonly) {
+            if (readonly) kvStorage.beginReadonlyTransaction() else kvStorage.beginTransaction(),
+            bulk
+        ).let { txn ->
+            if (txn.isReadonly) {
+                // nothing is changed within read-only transaction, so found entities are not searched anew
+                // on each use, and entity iterables can keep what they have read
+                txn.withChecks()
+            } else {
                 currentThreadRWTxn.set(txn)
+                txn.withAllDecorators()
             }
-        }.withAllDecorators()
+        }
     }
 
     override fun close() = kvStorage.close()
@@ -216,6 +227,9 @@ private const val packageNamePrefix = "org.seqra.ir.impl.storage.ers.kv#"
 
 internal val String.isMapWithKeyDuplicates: Boolean get() = endsWith(withDuplicates)
 
+internal val String.isPropertiesOrLinkTargetsMap: Boolean
+    get() = startsWith(packageNamePrefix) && (endsWith("#properties") || endsWith("#link_targets$withDuplicates"))
+
 /**
  * Entity type (String) -> type id (Int)
  */
@@ -1,32 +1,40 @@
 package org.seqra.ir.impl.storage.ers.kv
 
-import jetbrains.exodus.core.dataStructures.ConcurrentObjectCache
-import jetbrains.exodus.core.dataStructures.ObjectCacheBase
 import jetbrains.exodus.core.dataStructures.hash.IntHashMap
-import org.seqra.ir.api.storage.ers.Binding
+import org.seqra.ir.api.storage.ByteArrayKey
+import org.seqra.ir.api.storage.ers.BitmapEntityIterable
 import org.seqra.ir.api.storage.ers.ERSConflictingTransactionException
 import org.seqra.ir.api.storage.ers.Entity
 import org.seqra.ir.api.storage.ers.EntityId
 import org.seqra.ir.api.storage.ers.EntityIterable
-import org.seqra.ir.api.storage.ers.InstanceIdCollectionEntityIterable
+import org.seqra.ir.api.storage.ers.InstanceIdBitmap
 import org.seqra.ir.api.storage.ers.Transaction
+import org.seqra.ir.api.storage.ers.filterInstanceIds
 import org.seqra.ir.api.storage.ers.probablyCompressed
 import org.seqra.ir.api.storage.kv.Cursor
 import org.seqra.ir.api.storage.kv.NamedMap
 import org.seqra.ir.api.storage.kv.asIterable
 import org.seqra.ir.api.storage.kv.asIterableWithKey
-import org.seqra.ir.impl.storage.kv.xodus.getOrPut
+import org.seqra.ir.api.storage.kv.forEach
+import java.util.*
 
+/**
+ * If [bulk] is `true`, attributes of entities created in the transaction are kept in [writeBuffer] until commit.
+ */
 class KVErsTransaction(
     override val ers: KVEntityRelationshipStorage,
-    val kvTxn: org.seqra.ir.api.storage.kv.Transaction
+    val kvTxn: org.seqra.ir.api.storage.kv.Transaction,
+    private val bulk: Boolean = false
 ) : Transaction {
 
-    private val isDeletedCache: ObjectCacheBase<EntityId, Boolean> = ConcurrentObjectCache(1_000, 2)
     private val linkTargetTypes = hashMapOf<TypeIdWithName, Int>() // typeId + linkName -> targetTypeId
     private val entityCounters = hashMapOf<Int, Long>() // typeId -> entityCounter
     private val dirtyEntityCounters = sortedMapOf<Int, Long>() // typeId -> entityCounter (modified within transaction)
     private val deletedEntitiesCounts = IntHashMap<Long>() // typeId -> number of deleted entities
+    private val deletedEntities = IntHashMap<BitSet>() // typeId -> instance ids of deleted entities
+    private val openCursors = hashSetOf<Cursor>() // cursors of lazy entity iterables which are not iterated yet
+    private val bufferedEntitiesFrom = IntHashMap<Long>() // typeId -> min instanceId of entities with buffered writes
+    internal val writeBuffer = KVWriteBuffer()
 
     override val isReadonly: Boolean get() = kvTxn.isReadonly
 
@@ -35,6 +43,9 @@ class KVErsTransaction(
     override fun newEntity(type: String): Entity {
         val typeId = ers.getOrAllocateEntityTypeId(type, kvTxn)
         val entityCounter = getEntityCounter(typeId) ?: 0L
+        if (bulk && bufferedEntitiesFrom[typeId] == null) {
+            bufferedEntitiesFrom[typeId] = entityCounter
+        }
         entityCounters[typeId] = entityCounter + 1
         dirtyEntityCounters[typeId] = entityCounter + 1
         return KVEntity(EntityId(typeId, entityCounter), this)
@@ -48,9 +59,9 @@ class KVErsTransaction(
     override fun getEntityUnsafe(id: EntityId): Entity = KVEntity(id, txn = this)
 
     override fun deleteEntity(id: EntityId) {
-        // invalidate isDeleted cache
-        isDeletedCache.cacheObject(id, true)
         val typeId = id.typeId
+        // loaded deleted entities are kept up to date, otherwise they are loaded with this one on demand
+        deletedEntities[typeId]?.set(id.instanceId.toInt())
         deletedEntitiesCounts[typeId] = getDeletedEntitiesCount(typeId) + 1L
         kvTxn.put(
             ers.deletedEntitiesMap(typeId, kvTxn, create = true)!!,
@@ -59,13 +70,7 @@ class KVErsTransaction(
         )
     }
 
-    override fun isEntityDeleted(id: EntityId): Boolean {
-        return getDeletedEntitiesCount(id.typeId) > 0L && isDeletedCache.getOrPut(id) {
-            ers.deletedEntitiesMap(id.typeId, kvTxn, create = false)?.let {
-                isDeleted(it, ers.longBinding, id.instanceId)
-            } ?: false
-        }
-    }
+    override fun isEntityDeleted(id: EntityId): Boolean = isDeleted(id.typeId, id.instanceId)
 
     override fun getTypeId(type: String): Int {
         return ers.getEntityTypeId(type, kvTxn) ?: -1
@@ -88,52 +93,60 @@ class KVErsTransaction(
     override fun all(type: String): EntityIterable {
         val typeId = ers.getEntityTypeId(type, kvTxn) ?: return EntityIterable.EMPTY
         val entityCounter = getEntityCounter(typeId) ?: return EntityIterable.EMPTY
-        if (getDeletedEntitiesCount(typeId) == 0L) {
-            return InstanceIdCollectionEntityIterable(this, typeId, (0 until entityCounter).toList())
-        }
-        val deletedMap = ers.deletedEntitiesMap(typeId, kvTxn, create = false)
-        return if (deletedMap == null) {
-            InstanceIdCollectionEntityIterable(this, typeId, (0 until entityCounter).toList())
-        } else {
-            InstanceIdCollectionEntityIterable(this, typeId,
-                buildList {
-                    (0 until entityCounter).forEach { instanceId ->
-                        if (!isDeleted(deletedMap, ers.longBinding, instanceId)) {
-                            add(instanceId)
-                        }
-                    }
-                }
-            )
-        }
+        return InstanceIdRangeEntityIterable(this, typeId, entityCounter, getDeletedEntities(typeId))
     }
 
     override fun <T : Any> find(type: String, propertyName: String, value: T): EntityIterable {
-        return genericFind(type, propertyName, value) { valueEntry ->
+        return genericFind(type, propertyName, value, KVWriteBuffer::getDuplicates) { valueEntry ->
             asIterableWithKey(valueEntry)
         }
     }
 
+    override fun find(type: String, properties: Map<String, Any>): EntityIterable {
+        if (properties.size < 2) {
+            return super.find(type, properties)
+        }
+        val typeId = getTypeId(type)
+        if (typeId < 0) {
+            return EntityIterable.EMPTY
+        }
+        val (firstName, firstValue) = properties.entries.first()
+        // for the rest of properties, values are checked by point lookups in property maps
+        val rest = properties.entries.drop(1).map { (name, value) ->
+            val propertiesMap = ers.propertiesMap(typeId, name, kvTxn, create = false) ?: return EntityIterable.EMPTY
+            propertiesMap to probablyCompressed(value)
+        }
+        return find(type, firstName, firstValue).filterInstanceIds { instanceId ->
+            val keyEntry = ers.longBinding.getBytesCompressed(instanceId)
+            val buffered = hasBufferedWrites(EntityId(typeId, instanceId))
+            rest.all { (propertiesMap, valueEntry) ->
+                val actualValue = if (buffered) writeBuffer.get(propertiesMap, keyEntry) else kvTxn.get(propertiesMap, keyEntry)
+                actualValue contentEquals valueEntry
+            }
+        }
+    }
+
     override fun <T : Any> findLt(type: String, propertyName: String, value: T): EntityIterable {
-        return genericFind(type, propertyName, value) { valueEntry ->
+        return genericFind(type, propertyName, value, bufferedRange { it < 0 }) { valueEntry ->
             asReversedIterable(valueEntry).asSequence().filter { (key, _) -> !key.contentEquals(valueEntry) }
                 .asIterable()
         }
     }
 
     override fun <T : Any> findEqOrLt(type: String, propertyName: String, value: T): EntityIterable {
-        return genericFind(type, propertyName, value) { valueEntry ->
+        return genericFind(type, propertyName, value, bufferedRange { it <= 0 }) { valueEntry ->
             asReversedIterable(valueEntry)
         }
     }
 
     override fun <T : Any> findGt(type: String, propertyName: String, value: T): EntityIterable {
-        return genericFind(type, propertyName, value) { valueEntry ->
+        return genericFind(type, propertyName, value, bufferedRange { it > 0 }) { valueEntry ->
             asIterable().asSequence().filter { (key, _) -> !key.contentEquals(valueEntry) }.asIterable()
         }
     }
 
     override fun <T : Any> findEqOrGt(type: String, propertyName: String, value: T): EntityIterable {
-        return genericFind(type, propertyName, value) {
+        return genericFind(type, propertyName, value, bufferedRange { it >= 0 }) {
             asIterable()
         }
     }
@@ -144,6 +157,8 @@ class KVErsTransaction(
 
     override fun commit() {
         if (!isFinished) {
+            closeCursors()
+            flushWrites()
             flushDirty()
             if (!kvTxn.commit()) {
                 throw ERSConflictingTransactionException()
@@ -154,17 +169,62 @@ class KVErsTransaction(
 
     override fun abort() {
         if (!isFinished) {
+            closeCursors()
             kvTxn.abort()
             ers.transactionFinished(this)
         }
     }
 
-    private fun isDeleted(deletedMap: NamedMap, longBinding: Binding<Long>, instanceId: Long): Boolean {
-        return isDeleted(deletedMap, longBinding.getBytesCompressed(instanceId))
+    internal fun isDeleted(typeId: Int, instanceId: Long): Boolean {
+        return getDeletedEntities(typeId)?.get(instanceId.toInt()) == true
     }
 
-    internal fun isDeleted(deletedMap: NamedMap, instanceIdEntry: ByteArray): Boolean {
-        return kvTxn.get(deletedMap, instanceIdEntry) != null
+    /**
+     * Returns `true` if entity is created in this bulk transaction, i.e. its attributes are only in [writeBuffer].
+     */
+    internal fun hasBufferedWrites(id: EntityId): Boolean {
+        return bufferedEntitiesFrom[id.typeId]?.let { id.instanceId >= it } == true
+    }
+
+    /**
+     * Returns entities created in this bulk transaction by their buffered instance id entries.
+     */
+    internal fun bufferedEntities(typeId: Int, instanceIdEntries: Iterable<ByteArrayKey>): EntityIterable {
+        val instanceIds = InstanceIdBitmap()
+        instanceIdEntries.forEach { instanceIdEntry ->
+            val instanceId = ers.longBinding.getObjectCompressed(instanceIdEntry.bytes)
+            if (!isDeleted(typeId, instanceId)) {
+                instanceIds.add(instanceId)
+            }
+        }
+        return BitmapEntityIterable(this, typeId, instanceIds)
+    }
+
+    internal val openCursorsCount: Int get() = openCursors.size
+
+    internal fun trackCursor(cursor: Cursor): Cursor = cursor.also { openCursors.add(it) }
+
+    internal fun closeCursor(cursor: Cursor) {
+        if (openCursors.remove(cursor)) {
+            cursor.close()
+        }
+    }
+
+    /**
+     * Entities are iterated lazily by a cursor only in read-only transactions. In a writable one, the cursor could
+     * observe modifications made during iteration, so instance ids of found entities are collected to a bitmap
+     * before they are returned.
+     */
+    internal fun cursorIterable(
+        typeId: Int,
+        openCursor: () -> Cursor,
+        instanceIdEntries: Cursor.() -> Iterator<ByteArray>
+    ): EntityIterable {
+        val iterable = CursorEntityIterable(this, typeId, openCursor, instanceIdEntries)
+        if (isReadonly) {
+            return iterable
+        }
+        return BitmapEntityIterable(this, typeId, iterable.toInstanceIdBitmap())
     }
 
     internal fun getLinkTargetType(typeId: Int, linkName: String): Int? {
@@ -184,6 +244,7 @@ class KVErsTransaction(
         type: String,
         propertyName: String,
         value: T,
+        bufferedFun: KVWriteBuffer.(index: NamedMap, valueEntry: ByteArray) -> Iterable<ByteArrayKey>,
         cursorFun: Cursor.(valueEntry: ByteArray) -> Iterable<Pair<ByteArray, ByteArray>>
     ): EntityIterable {
         val typeId = getTypeId(type)
@@ -191,39 +252,22 @@ class KVErsTransaction(
             return EntityIterable.EMPTY
         }
         val valueEntry = probablyCompressed(value)
-        val index = ers.propertiesIndex(typeId, propertyName, kvTxn, create = false)
-        val deletedMap = ers.deletedEntitiesMap(typeId, kvTxn, create = false)
-        return if (deletedMap == null) {
-            if (index == null) {
-                EntityIterable.EMPTY
-            } else {
-                InstanceIdCollectionEntityIterable(this, typeId,
-                    buildList {
-                        kvTxn.navigateTo(index, valueEntry).use { cursor ->
-                            cursor.cursorFun(valueEntry).forEach { (_, instanceIdEntry) ->
-                                add(ers.longBinding.getObjectCompressed(instanceIdEntry))
-                            }
-                        }
-                    }
-                )
-            }
-        } else {
-            if (index == null) {
-                EntityIterable.EMPTY
-            } else {
-                InstanceIdCollectionEntityIterable(this, typeId,
-                    buildList {
-                        kvTxn.navigateTo(index, valueEntry).use { cursor ->
-                            cursor.cursorFun(valueEntry).forEach { (_, instanceIdEntry) ->
-                                if (!isDeleted(deletedMap, instanceIdEntry)) {
-                                    add(ers.longBinding.getObjectCompressed(instanceIdEntry))
-                                }
-                            }
-                        }
-                    }
-                )
-            }
+        val index = ers.propertiesIndex(typeId, propertyName, kvTxn, create = false) ?: return EntityIterable.EMPTY
+        val found = cursorIterable(typeId, { kvTxn.navigateTo(index, valueEntry) }) {
+            cursorFun(valueEntry).asSequence().map { (_, instanceIdEntry) -> instanceIdEntry }.iterator()
         }
+        if (bufferedEntitiesFrom[typeId] == null) {
+            return found
+        }
+        // new entities of the type are not in the index yet, they are found among buffered writes
+        return found + bufferedEntities(typeId, writeBuffer.bufferedFun(index, valueEntry))
+    }
+
+    private fun bufferedRange(
+        comparison: (Int) -> Boolean
+    ): KVWriteBuffer.(index: NamedMap, valueEntry: ByteArray) -> Iterable<ByteArrayKey> = { index, valueEntry ->
+        val valueKey = ByteArrayKey(valueEntry)
+        findDuplicates(index) { key -> comparison(key.compareTo(valueKey)) }.asIterable()
     }
 
     private fun getEntityCounter(typeId: Int): Long? {
@@ -238,6 +282,24 @@ class KVErsTransaction(
         }
     }
 
+    // instance ids are expected to fit in int, as they do in RAM ERS
+    private fun getDeletedEntities(typeId: Int): BitSet? {
+        if (getDeletedEntitiesCount(typeId) == 0L) {
+            return null
+        }
+        return deletedEntities.getOrElse(typeId) {
+            val deletedMap = ers.deletedEntitiesMap(typeId, kvTxn, create = false) ?: return null
+            BitSet().also { deleted ->
+                kvTxn.navigateTo(deletedMap).use { cursor ->
+                    cursor.forEach { instanceIdEntry, _ ->
+                        deleted.set(ers.longBinding.getObjectCompressed(instanceIdEntry).toInt())
+                    }
+                }
+                deletedEntities[typeId] = deleted
+            }
+        }
+    }
+
     private fun getDeletedEntitiesCount(typeId: Int): Long {
         return deletedEntitiesCounts.getOrElse(typeId) {
             ers.deletedEntitiesMap(typeId, kvTxn, create = false)?.size(kvTxn)
@@ -245,6 +307,14 @@ class KVErsTransaction(
         }
     }
 
+    // buffered attributes of new entities are written to KV storage at once, sorted by key
+    private fun flushWrites() {
+        if (!writeBuffer.isEmpty) {
+            writeBuffer.flush(kvTxn)
+        }
+        bufferedEntitiesFrom.clear()
+    }
+
     private fun flushDirty() {
         if (dirtyEntityCounters.isNotEmpty()) {
             val entityCountersMap = this.ers.entityCountersMap(kvTxn, create = true)!!
@@ -258,11 +328,16 @@ class KVErsTransaction(
         }
         dirtyEntityCounters.clear()
         // clear caches
-        isDeletedCache.clear()
+        deletedEntities.clear()
         linkTargetTypes.clear()
         entityCounters.clear()
     }
 
+    private fun closeCursors() {
+        openCursors.forEach { it.close() }
+        openCursors.clear()
+    }
+
     private fun getAttributeName(type: String, checkMapNameFunc: (String) -> Pair<String, Int>?): Set<String> {
         val typeId = ers.getEntityTypeId(type, kvTxn) ?: return emptySet()
         return kvTxn.getMapNames().mapNotNullTo(mutableSetOf()) {
@@ -0,0 +1,73 @@
+package org.seqra.ir.impl.storage.ers.kv
+
+import org.seqra.ir.api.storage.ByteArrayKey
+import org.seqra.ir.api.storage.kv.NamedMap
+import org.seqra.ir.api.storage.kv.Transaction
+
+/**
+ * Buffers writes of properties, blobs and links of entities which are created in a bulk transaction.
+ *
+ * Nothing is stored for such entities yet, so their attributes are collected in memory without reading old values,
+ * and on [flush] they are written map by map sorted by key, i.e. sequentially rather than randomly.
+ * Until then, property indices and links of buffered entities are searched by [getDuplicates] and [findDuplicates].
+ */
+internal class KVWriteBuffer {
+
+    private val maps = LinkedHashMap<NamedMap, HashMap<ByteArrayKey, ByteArray>>()
+    private val mapsWithDuplicates = LinkedHashMap<NamedMap, HashMap<ByteArrayKey, MutableSet<ByteArrayKey>>>()
+
+    val isEmpty: Boolean get() = maps.isEmpty() && mapsWithDuplicates.isEmpty()
+
+    fun get(map: NamedMap, key: ByteArray): ByteArray? = maps[map]?.get(ByteArrayKey(key))
+
+    /**
+     * Returns previous value by the key.
+     */
+    fun put(map: NamedMap, key: ByteArray, value: ByteArray): ByteArray? {
+        return maps.getOrPut(map) { HashMap() }.put(ByteArrayKey(key), value)
+    }
+
+    /**
+     * Returns deleted value by the key.
+     */
+    fun delete(map: NamedMap, key: ByteArray): ByteArray? = maps[map]?.remove(ByteArrayKey(key))
+
+    fun putDuplicate(map: NamedMap, key: ByteArray, value: ByteArray): Boolean {
+        return mapsWithDuplicates.getOrPut(map) { HashMap() }
+            .getOrPut(ByteArrayKey(key)) { HashSet() }
+            .add(ByteArrayKey(value))
+    }
+
+    fun deleteDuplicate(map: NamedMap, key: ByteArray, value: ByteArray): Boolean {
+        return mapsWithDuplicates[map]?.get(ByteArrayKey(key))?.remove(ByteArrayKey(value)) == true
+    }
+
+    fun getDuplicates(map: NamedMap, key: ByteArray): Set<ByteArrayKey> {
+        return mapsWithDuplicates[map]?.get(ByteArrayKey(key)).orEmpty()
+    }
+
+    /**
+     * Returns duplicates by all keys matching [keyPredicate]. Keys are not sorted, so all of them are checked.
+     */
+    fun findDuplicates(map: NamedMap, keyPredicate: (ByteArrayKey) -> Boolean): Sequence<ByteArrayKey> {
+        val entries = mapsWithDuplicates[map] ?: return emptySequence()
+        return entries.asSequence().filter { (key, _) -> keyPredicate(key) }.flatMap { (_, values) -> values }
+    }
+
+    fun flush(kvTxn: Transaction) {
+        maps.forEach { (map, entries) ->
+            entries.keys.sorted().forEach { key ->
+                kvTxn.put(map, key.bytes, entries.getValue(key))
+            }
+        }
+        mapsWithDuplicates.forEach { (map, entries) ->
+            entries.keys.sorted().forEach { key ->
+                entries.getValue(key).sorted().forEach { value ->
+                    kvTxn.put(map, key.bytes, value.bytes)
+                }
+            }
+        }
+        maps.clear()
+        mapsWithDuplicates.clear()
+    }
+}
@@ -4,12 +4,16 @@ import org.seqra.ir.api.storage.ers.EntityId
 import org.seqra.ir.api.storage.ers.EntityIterable
 import org.seqra.ir.api.storage.ers.longRangeIterable
 import org.seqra.ir.util.collections.SparseBitSet
+import org.seqra.ir.util.io.AlignedInputStream
+import org.seqra.ir.util.io.AlignedOutputStream
+import org.seqra.ir.util.io.readFully
 import org.seqra.ir.util.io.readString
 import org.seqra.ir.util.io.readUnsignedOrderedLongs
 import org.seqra.ir.util.io.readVlqUnsigned
 import org.seqra.ir.util.io.writeString
 import org.seqra.ir.util.io.writeUnsignedOrderedLongs
 import org.seqra.ir.util.io.writeVlqUnsigned
+import java.io.BufferedInputStream
 import java.io.InputStream
 import java.io.OutputStream
 
@@ -158,7 +162,12 @@ internal class RAMDataContainerImmutable(
 
     override fun deleteLink(id: EntityId, linkName: String, targetId: EntityId): RAMDataContainer = cantModify()
 
-    fun dump(output: OutputStream) {
+    fun dump(out: OutputStream) {
+        val output = AlignedOutputStream(out)
+        // save header
+        output.write(DUMP_MAGIC)
+        output.writeVlqUnsigned(DUMP_FORMAT_VERSION)
+
         // save types
         output.writeVlqUnsigned(types.size)
         types.forEach { entry ->
@@ -198,6 +207,8 @@ internal class RAMDataContainerImmutable(
             output.writeAttributeKey(entry.key)
             entry.value.dump(output)
         }
+
+        output.flush()
     }
 
     private fun getEntitiesWithPropertyFunction(
@@ -215,7 +226,32 @@ internal class RAMDataContainerImmutable(
     private fun throwError(msg: String): Nothing = error("RAMDataContainerImmutable: $msg")
 }
 
+/**
+ * Reads dump of any supported format version.
+ * If the stream is [org.seqra.ir.util.io.MappedFileInputStream], all attributes of the resulting container
+ * are read straight from the mapping.
+ */
 internal fun InputStream.readRAMDataContainerImmutable(): RAMDataContainerImmutable {
+    val input = if (markSupported()) this else BufferedInputStream(this)
+    return when (val version = input.readDumpFormatVersion()) {
+        LEGACY_DUMP_FORMAT_VERSION -> input.readDumpBody()
+        DUMP_FORMAT_VERSION -> AlignedInputStream(input).readDumpBody()
+        else -> error("RAMDataContainerImmutable: unsupported dump format version $version")
+    }
+}
+
+private fun InputStream.readDumpFormatVersion(): Int {
+    mark(DUMP_MAGIC.size)
+    val header = ByteArray(DUMP_MAGIC.size)
+    if (readFully(header) == header.size && header contentEquals DUMP_MAGIC) {
+        return readVlqUnsigned().toInt()
+    }
+    // legacy dumps have no header
+    reset()
+    return LEGACY_DUMP_FORMAT_VERSION
+}
+
+private fun InputStream.readDumpBody(): RAMDataContainerImmutable {
     // load types
     val typeCount = readVlqUnsigned().toInt()
     val types = HashMap<String, Int>(typeCount).also { map ->
@@ -269,6 +305,18 @@ internal fun InputStream.readRAMDataContainerImmutable(): RAMDataContainerImmuta
     )
 }
 
+/**
+ * Legacy dump starts with zero byte only if it has no types, and then it is followed by zero bytes,
+ * so the header can't be confused with the beginning of a legacy dump.
+ */
+private val DUMP_MAGIC = byteArrayOf(0, 'S'.code.toByte(), 'R'.code.toByte(), 'A'.code.toByte(), 'M'.code.toByte())
+
+// dump without header, byte buffers are not aligned
+private const val LEGACY_DUMP_FORMAT_VERSION = 1
+
+// dump with header, byte buffers are aligned to be read from memory mapping
+private const val DUMP_FORMAT_VERSION = 2
+
 private fun OutputStream.writeAttributeKey(key: AttributeKey) {
     writeVlqUnsigned(key.typeId)
     writeString(key.name)
@@ -6,7 +6,7 @@ import org.seqra.ir.api.storage.ers.EntityRelationshipStorage
 import org.seqra.ir.impl.RamErsSettings
 import org.seqra.ir.impl.storage.ers.decorators.withAllDecorators
 import org.seqra.ir.impl.storage.ers.getBinding
-import org.seqra.ir.util.io.inputStream
+import org.seqra.ir.util.io.mappedInputStream
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
@@ -42,7 +42,7 @@ internal class RAMEntityRelationshipStorage(
         } else {
             dumpFile(databaseId)?.let {
                 if (it.exists()) {
-                    it.inputStream().use { dumpStream ->
+                    it.mappedInputStream().use { dumpStream ->
                         load(dumpStream)
                         this
                     }
@@ -69,7 +69,7 @@ internal class RAMEntityRelationshipStorage(
                 dataContainer.toImmutable().also { container ->
                     container as RAMDataContainerImmutable
                     dumpFile(databaseId)?.let {
-                        it.outputStream(StandardOpenOption.CREATE_NEW).use { outputStream ->
+                        it.outputStream(StandardOpenOption.CREATE_NEW).buffered().use { outputStream ->
                             container.dump(outputStream)
                         }
                     }
@@ -6,6 +6,7 @@ import org.seqra.ir.api.storage.ers.Entity
 import org.seqra.ir.api.storage.ers.EntityId
 import org.seqra.ir.api.storage.ers.EntityIterable
 import org.seqra.ir.api.storage.ers.Transaction
+import org.seqra.ir.api.storage.ers.filterEntityIds
 import org.seqra.ir.api.storage.ers.probablyCompressed
 
 internal class RAMTransaction(override val ers: RAMEntityRelationshipStorage) : Transaction {
@@ -53,6 +54,23 @@ internal class RAMTransaction(override val ers: RAMEntityRelationshipStorage) :
         return result
     }
 
+    override fun find(type: String, properties: Map<String, Any>): EntityIterable {
+        if (properties.size < 2) {
+            return super.find(type, properties)
+        }
+        val rawValues = properties.map { (name, value) -> name to probablyCompressed(value) }
+        val (firstName, firstValue) = rawValues.first()
+        val (newDataContainer, result) = dataContainerChecked.getEntitiesWithPropertyValue(
+            this, type, firstName, firstValue
+        )
+        newDataContainer?.let { dataContainer = it }
+        // check the rest of properties directly instead of intersecting searches by each of them
+        val rest = rawValues.drop(1)
+        return result.filterEntityIds { id ->
+            rest.all { (name, value) -> getRawProperty(id, name) contentEquals value }
+        }
+    }
+
     override fun <T : Any> findLt(type: String, propertyName: String, value: T): EntityIterable {
         val (newDataContainer, result) = dataContainerChecked.getEntitiesLtPropertyValue(
             this, type, propertyName, probablyCompressed(value)
@@ -0,0 +1,56 @@
+package org.seqra.ir.impl.storage.kv.rocks
+
+import org.seqra.ir.impl.JIRRocksErsSettings
+import org.seqra.ir.impl.storage.ers.BuiltInBindingProvider
+import org.rocksdb.BlockBasedTableConfig
+import org.rocksdb.BloomFilter
+import org.rocksdb.ColumnFamilyOptions
+import org.rocksdb.LRUCache
+import org.rocksdb.RocksDB
+import java.io.Closeable
+
+/**
+ * Options of column families built by [JIRRocksErsSettings]. Block cache and bloom filter are shared
+ * by all column families, column families of prefixed maps have their own options with prefix extractor.
+ */
+internal class RocksColumnFamiliesOptions(private val settings: JIRRocksErsSettings) : Closeable {
+
+    private val blockCache = settings.blockCacheSize?.let { LRUCache(it) }
+    private val bloomFilter = settings.bloomFilterBitsPerKey?.let { BloomFilter(it) }
+
+    val default: ColumnFamilyOptions = newColumnFamilyOptions()
+    private val prefixed: ColumnFamilyOptions? = settings.prefixLength?.let { prefixLength ->
+        newColumnFamilyOptions().useCappedPrefixExtractor(prefixLength)
+    }
+
+    val hasPrefixExtractor: Boolean get() = prefixed != null
+
+    fun forColumnFamily(name: ByteArray): ColumnFamilyOptions {
+        if (prefixed == null || name contentEquals RocksDB.DEFAULT_COLUMN_FAMILY) {
+            return default
+        }
+        val mapName = BuiltInBindingProvider.getBinding(String::class.java).getObject(name)
+        return if (settings.isPrefixedMap(mapName)) prefixed else default
+    }
+
+    override fun close() {
+        prefixed?.close()
+        default.close()
+        bloomFilter?.close()
+        blockCache?.close()
+    }
+
+    private fun newColumnFamilyOptions(): ColumnFamilyOptions {
+        return ColumnFamilyOptions().apply {
+            settings.compression?.let { setCompressionType(it) }
+            if (blockCache != null || bloomFilter != null) {
+                setTableFormatConfig(
+                    BlockBasedTableConfig().apply {
+                        blockCache?.let { setBlockCache(it) }
+                        bloomFilter?.let { setFilterPolicy(it) }
+                    }
+                )
+            }
+        }
+    }
+}
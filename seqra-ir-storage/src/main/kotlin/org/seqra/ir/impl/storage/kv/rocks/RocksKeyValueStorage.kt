@@ -2,27 +2,47 @@ package org.seqra.ir.impl.storage.kv.rocks
 
 import org.seqra.ir.api.storage.kv.PluggableKeyValueStorage
 import org.seqra.ir.api.storage.kv.Transaction
+import org.seqra.ir.impl.JIRRocksErsSettings
 import org.seqra.ir.impl.storage.ers.BuiltInBindingProvider
 import org.rocksdb.ColumnFamilyDescriptor
 import org.rocksdb.ColumnFamilyHandle
-import org.rocksdb.ColumnFamilyOptions
 import org.rocksdb.DBOptions
+import org.rocksdb.DirectSlice
+import org.rocksdb.EnvOptions
+import org.rocksdb.IngestExternalFileOptions
 import org.rocksdb.Options
 import org.rocksdb.RocksDB
+import org.rocksdb.RocksDBException
+import org.rocksdb.SstFileWriter
 import org.rocksdb.TransactionDB
 import org.rocksdb.TransactionDBOptions
+import org.rocksdb.WBWIRocksIterator.WriteType
+import org.rocksdb.WriteBatchWithIndex
 import org.rocksdb.WriteOptions
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.io.path.Path
+import kotlin.io.path.createTempDirectory
 
 internal abstract class RocksKeyValueStorage : PluggableKeyValueStorage() {
+    abstract val settings: JIRRocksErsSettings
     abstract val sizesColumnFamily: ColumnFamilyHandle
 
     abstract fun getNamedMapOrNull(name: String): RocksNamedMap?
     abstract fun getOrCreateNamedMap(name: String): RocksNamedMap
     abstract fun getMapNames(): Set<String>
+
+    /**
+     * Writes entries of [writeBatch] in each of [columnFamilies] to an SST file and ingests the files to the database.
+     * All files are written before ingestion, failure to ingest one after others have been ingested fails the storage.
+     */
+    abstract fun ingest(writeBatch: WriteBatchWithIndex, columnFamilies: Collection<ColumnFamilyHandle>)
 }
 
-internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage() {
+internal class RocksKeyValueStorageImpl(
+    private val location: String,
+    override val settings: JIRRocksErsSettings
+) : RocksKeyValueStorage() {
 
     companion object {
         init {
@@ -32,16 +52,20 @@ internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage
     }
 
     @Suppress("JoinDeclarationAndAssignment")
-    private val columnFamilyOptions: ColumnFamilyOptions
+    private val columnFamilyOptions: RocksColumnFamiliesOptions
     private val dbOptions: DBOptions
     private val transactionDbOptions: TransactionDBOptions
     private val rocksDB: TransactionDB
     private val columnFamiliesMap = ConcurrentHashMap<List<Byte>, ColumnFamilyHandle>()
+    @Volatile
+    private var ingestionFailure: Throwable? = null
+
+    internal val ingestedFilesCount = AtomicLong()
 
     override val sizesColumnFamily: ColumnFamilyHandle
 
     init {
-        columnFamilyOptions = ColumnFamilyOptions()
+        columnFamilyOptions = RocksColumnFamiliesOptions(settings)
         try {
             dbOptions = DBOptions().setCreateIfMissing(true)
             try {
@@ -91,10 +115,12 @@ internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage
     }
 
     private fun getColumnFamilyDescriptors(location: String): List<ColumnFamilyDescriptor> {
-        return Options(dbOptions, columnFamilyOptions).use { options ->
-            RocksDB.listColumnFamilies(options, location).map { name -> ColumnFamilyDescriptor(name) }
+        return Options(dbOptions, columnFamilyOptions.default).use { options ->
+            RocksDB.listColumnFamilies(options, location).map { name ->
+                ColumnFamilyDescriptor(name, columnFamilyOptions.forColumnFamily(name))
+            }
         }.takeIf { it.isNotEmpty() }
-            ?: listOf(ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY))
+            ?: listOf(ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnFamilyOptions.default))
     }
 
     override fun beginTransaction(): Transaction = beginTransaction(isReadonly = false)
@@ -102,6 +128,9 @@ internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage
     override fun beginReadonlyTransaction(): Transaction = beginTransaction(isReadonly = true)
 
     private fun beginTransaction(isReadonly: Boolean): Transaction {
+        ingestionFailure?.let {
+            throw IllegalStateException("Storage at $location is inconsistent after failed ingestion", it)
+        }
         // TODO check documentation to see if RocksDB supports marking readonly transaction
         val writeOptions = WriteOptions()
         try {
@@ -122,6 +151,68 @@ internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage
         }
     }
 
+    override fun ingest(writeBatch: WriteBatchWithIndex, columnFamilies: Collection<ColumnFamilyHandle>) {
+        val directory = createTempDirectory(Path(location), prefix = "ingestion")
+        try {
+            val files = EnvOptions().use { envOptions ->
+                columnFamilies.withIndex().mapNotNull { (i, columnFamily) ->
+                    val file = directory.resolve("$i.sst").toString()
+                    if (writeSstFile(envOptions, writeBatch, columnFamily, file)) columnFamily to file else null
+                }
+            }
+            IngestExternalFileOptions().setMoveFiles(true).use { ingestOptions ->
+                files.forEachIndexed { i, (columnFamily, file) ->
+                    try {
+                        rocksDB.ingestExternalFile(columnFamily, listOf(file), ingestOptions)
+                    } catch (e: RocksDBException) {
+                        if (i > 0) {
+                            // files ingested to other column families can't be rolled back
+                            ingestionFailure = e
+                        }
+                        throw e
+                    }
+                    ingestedFilesCount.incrementAndGet()
+                }
+            }
+        } finally {
+            directory.toFile().deleteRecursively()
+        }
+    }
+
+    /**
+     * Returns `false` if nothing is written to the column family, and the file is not created.
+     */
+    private fun writeSstFile(
+        envOptions: EnvOptions,
+        writeBatch: WriteBatchWithIndex,
+        columnFamily: ColumnFamilyHandle,
+        file: String
+    ): Boolean {
+        writeBatch.newIterator(columnFamily).use { iterator ->
+            iterator.seekToFirst()
+            if (!iterator.isValid) {
+                return false
+            }
+            Options(dbOptions, columnFamilyOptions.forColumnFamily(columnFamily.name)).use { options ->
+                SstFileWriter(envOptions, options).use { writer ->
+                    writer.open(file)
+                    // the batch is indexed by key with only the last write of each key, so writes are sorted & unique
+                    while (iterator.isValid) {
+                        val entry = iterator.entry()
+                        when (entry.type) {
+                            WriteType.PUT -> writer.put(entry.key.toByteArray(), entry.value.toByteArray())
+                            WriteType.DELETE, WriteType.SINGLE_DELETE -> writer.delete(entry.key.toByteArray())
+                            else -> error("Unexpected write of type ${entry.type} to ingest")
+                        }
+                        iterator.next()
+                    }
+                    writer.finish()
+                }
+            }
+        }
+        return true
+    }
+
     override fun getNamedMapOrNull(name: String): RocksNamedMap? {
         val nameBytes = BuiltInBindingProvider.getBinding(String::class.java).getBytes(name)
         val columnFamilyHandle = columnFamiliesMap[nameBytes.toList()]
@@ -150,7 +241,7 @@ internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage
     private fun getOrCreateColumnFamily(name: ByteArray): ColumnFamilyHandle {
         return columnFamiliesMap[name.toList()] ?: synchronized(this) {
             columnFamiliesMap.getOrPut(name.toList()) {
-                rocksDB.createColumnFamily(ColumnFamilyDescriptor(name, columnFamilyOptions))
+                rocksDB.createColumnFamily(ColumnFamilyDescriptor(name, columnFamilyOptions.forColumnFamily(name)))
             }
         }
     }
@@ -158,3 +249,5 @@ internal class RocksKeyValueStorageImpl(location: String) : RocksKeyValueStorage
     private fun getOrCreateColumnFamily(name: String): ColumnFamilyHandle =
         getOrCreateColumnFamily(BuiltInBindingProvider.getBinding(String::class.java).getBytes(name))
 }
+
+private fun DirectSlice.toByteArray(): ByteArray = ByteArray(size()).also { data().get(it) }
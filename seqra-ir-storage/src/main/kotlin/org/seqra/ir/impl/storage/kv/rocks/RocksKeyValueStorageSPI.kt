@@ -3,6 +3,7 @@ package org.seqra.ir.impl.storage.kv.rocks
 import org.seqra.ir.api.storage.ers.ErsSettings
 import org.seqra.ir.api.storage.kv.PluggableKeyValueStorage
 import org.seqra.ir.api.storage.kv.PluggableKeyValueStorageSPI
+import org.seqra.ir.impl.JIRRocksErsSettings
 import kotlin.io.path.createTempDirectory
 
 const val ROCKS_KEY_VALUE_STORAGE_SPI = "org.seqra.ir.impl.storage.kv.rocks.RocksKeyValueStorageSPI"
@@ -11,6 +12,10 @@ class RocksKeyValueStorageSPI : PluggableKeyValueStorageSPI {
 
     override val id = ROCKS_KEY_VALUE_STORAGE_SPI
 
-    override fun newStorage(location: String?, settings: ErsSettings): PluggableKeyValueStorage =
-        RocksKeyValueStorageImpl(location ?: createTempDirectory(prefix = "rocksKeyValueStorage").toString())
+    override fun newStorage(location: String?, settings: ErsSettings): PluggableKeyValueStorage {
+        return RocksKeyValueStorageImpl(
+            location ?: createTempDirectory(prefix = "rocksKeyValueStorage").toString(),
+            if (settings is JIRRocksErsSettings) settings else JIRRocksErsSettings()
+        )
+    }
 }
\ No newline at end of file
@@ -31,7 +31,16 @@ internal class RocksTransactionImpl private constructor(
             RocksTransactionImpl(storage, rocksTxn, isReadonly).withFinishedState()
     }
 
-    private val readOptions = ReadOptions().setSnapshot(rocksTxn.snapshot)
+    private val readOptions = ReadOptions().setSnapshot(rocksTxn.snapshot).apply {
+        // cursors iterate over keys with different prefixes, so prefix extractors should not affect iteration
+        if (storage.settings.prefixLength != null) {
+            setTotalOrderSeek(true)
+        }
+    }
+
+    // if bulk ingestion is on, written column families are collected to ingest writes of the transaction on commit
+    private val writtenColumnFamilies =
+        if (isReadonly || storage.settings.ingestionThreshold == null) null else HashSet<ColumnFamilyHandle>()
 
     // implemented using `withFinishedState()` (see `create()` in `companion object`)
     override val isFinished: Boolean get() = false
@@ -58,6 +67,17 @@ internal class RocksTransactionImpl private constructor(
     override fun navigateTo(map: NamedMap, key: ByteArray?): Cursor = (map as RocksNamedMap).navigateTo(this, key)
 
     override fun commit(): Boolean {
+        val ingestionThreshold = storage.settings.ingestionThreshold
+        if (writtenColumnFamilies != null && rocksTxn.numPuts + rocksTxn.numDeletes >= ingestionThreshold!!) {
+            try {
+                // the transaction's own indexed write batch is ingested, failure to ingest it is not a conflict
+                storage.ingest(rocksTxn.writeBatch, writtenColumnFamilies)
+            } finally {
+                // written data is either ingested or dropped, locks held by the transaction are released by rollback
+                rocksTxn.rollback()
+            }
+            return true
+        }
         return try {
             rocksTxn.commit()
             true
@@ -79,11 +99,15 @@ internal class RocksTransactionImpl private constructor(
     override fun rawGet(columnFamilyHandle: ColumnFamilyHandle, key: ByteArray): ByteArray? =
         rocksTxn.get(readOptions, columnFamilyHandle, key)
 
-    override fun rawPut(columnFamilyHandle: ColumnFamilyHandle, key: ByteArray, value: ByteArray) =
+    override fun rawPut(columnFamilyHandle: ColumnFamilyHandle, key: ByteArray, value: ByteArray) {
         rocksTxn.put(columnFamilyHandle, key, value)
+        writtenColumnFamilies?.add(columnFamilyHandle)
+    }
 
-    override fun rawDelete(columnFamilyHandle: ColumnFamilyHandle, key: ByteArray) =
+    override fun rawDelete(columnFamilyHandle: ColumnFamilyHandle, key: ByteArray) {
         rocksTxn.delete(columnFamilyHandle, key)
+        writtenColumnFamilies?.add(columnFamilyHandle)
+    }
 
     override fun rawGetIterator(columnFamilyHandle: ColumnFamilyHandle): RocksIterator =
         rocksTxn.getIterator(readOptions, columnFamilyHandle)
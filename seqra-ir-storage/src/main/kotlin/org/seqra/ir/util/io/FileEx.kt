@@ -11,6 +11,10 @@ fun File.inputStream(): InputStream = FileInputStream(this).buffered()
 
 fun Path.inputStream(): InputStream = toFile().inputStream()
 
+fun File.mappedInputStream(): InputStream = MappedFileInputStream(this)
+
+fun Path.mappedInputStream(): InputStream = toFile().mappedInputStream()
+
 fun File.mapReadonly(): MappedByteBuffer = FileInputStream(this).use {
     it.channel.map(FileChannel.MapMode.READ_ONLY, 0L, length())
 }
\ No newline at end of file
@@ -84,8 +84,25 @@ fun InputStream.readUnsignedOrderedLongs(): Iterable<Long> = Iterable {
     }
 }
 
+/**
+ * Complementary to [OutputStream.writeByteBuffer]() function.
+ * If possible, returned buffer is memory-mapped rather than read.
+ */
 fun InputStream.readByteBuffer(direct: Boolean = true): ByteBuffer {
-    val size = readVlqUnsigned().toInt()
+    if (this is AlignedInputStream) {
+        val size = readVlqUnsigned().toInt()
+        repeat(readVlqUnsigned().toInt()) {
+            if (read() < 0) throw EOFException("Failed to read padding")
+        }
+        return decorated.readByteBuffer(size, direct)
+    }
+    return readByteBuffer(readVlqUnsigned().toInt(), direct)
+}
+
+private fun InputStream.readByteBuffer(size: Int, direct: Boolean): ByteBuffer {
+    if (this is MappedFileInputStream && direct) {
+        return slice(size)
+    }
     if (this is BufferedInputStream) {
         return if (direct) {
             val position = position
@@ -0,0 +1,106 @@
+package org.seqra.ir.util.io
+
+import java.io.File
+import java.io.FilterInputStream
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.math.min
+
+/**
+ * Input stream over a file which is memory-mapped once as a whole (by chunks of [MAPPED_CHUNK_SIZE] bytes).
+ * [readByteBuffer] returns read-only slices of the mapping instead of copying or mapping each buffer separately,
+ * so reading a buffer is O(1) and its pages are loaded by the OS on first access and shared between processes.
+ * Mapped buffers remain valid after the stream is closed.
+ */
+class MappedFileInputStream(file: File) : InputStream() {
+
+    private val channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)
+    private val length = channel.size()
+    private val chunks: Array<MappedByteBuffer> = Array(((length + MAPPED_CHUNK_SIZE - 1) / MAPPED_CHUNK_SIZE).toInt()) { i ->
+        val offset = i.toLong() * MAPPED_CHUNK_SIZE
+        channel.map(FileChannel.MapMode.READ_ONLY, offset, min(MAPPED_CHUNK_SIZE.toLong(), length - offset))
+    }
+    private var mark = 0L
+
+    var position: Long = 0L
+        private set
+
+    override fun read(): Int {
+        if (position >= length) return -1
+        return (chunks[chunkIndex(position)].get(chunkOffset(position)).toInt() and 0xff).also { ++position }
+    }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        if (len == 0) return 0
+        if (position >= length) return -1
+        val toRead = min(len.toLong(), length - position).toInt()
+        var read = 0
+        while (read < toRead) {
+            val chunk = chunks[chunkIndex(position)].duplicate()
+            val chunkOffset = chunkOffset(position)
+            val n = min(toRead - read, chunk.limit() - chunkOffset)
+            chunk.position(chunkOffset)
+            chunk.get(b, off + read, n)
+            read += n
+            position += n
+        }
+        return read
+    }
+
+    override fun skip(n: Long): Long {
+        val skipped = min(n, length - position).coerceAtLeast(0L)
+        position += skipped
+        return skipped
+    }
+
+    override fun available(): Int = min(length - position, Int.MAX_VALUE.toLong()).toInt()
+
+    override fun markSupported(): Boolean = true
+
+    override fun mark(readlimit: Int) {
+        mark = position
+    }
+
+    override fun reset() {
+        position = mark
+    }
+
+    /**
+     * Returns next [size] bytes as a read-only slice of the mapping and moves position after them.
+     */
+    fun slice(size: Int): ByteBuffer {
+        check(position + size <= length) { "Mapped file is too short" }
+        val start = position
+        position += size
+        val chunkIndex = chunkIndex(start)
+        val chunkOffset = chunkOffset(start)
+        val chunk = chunks[chunkIndex]
+        return if (chunkOffset + size <= chunk.limit()) {
+            (chunk.duplicate().position(chunkOffset).limit(chunkOffset + size) as ByteBuffer).slice().asReadOnlyBuffer()
+        } else {
+            // rare case of a buffer crossing the border of chunks
+            channel.map(FileChannel.MapMode.READ_ONLY, start, size.toLong()).asReadOnlyBuffer()
+        }
+    }
+
+    override fun close() {
+        channel.close()
+    }
+
+    private fun chunkIndex(position: Long) = (position / MAPPED_CHUNK_SIZE).toInt()
+
+    private fun chunkOffset(position: Long) = (position % MAPPED_CHUNK_SIZE).toInt()
+}
+
+/**
+ * Input stream reading byte buffers written by [AlignedOutputStream], i.e. byte buffers preceded by padding.
+ */
+class AlignedInputStream(input: InputStream) : FilterInputStream(input) {
+
+    val decorated: InputStream get() = `in`
+}
+
+const val MAPPED_CHUNK_SIZE = 1 shl 30
@@ -1,5 +1,6 @@
 package org.seqra.ir.util.io
 
+import java.io.FilterOutputStream
 import java.io.OutputStream
 import java.nio.ByteBuffer
 import java.nio.channels.Channels
@@ -60,12 +61,45 @@ fun OutputStream.writeUnsignedOrderedLongs(longs: Iterable<Long>) {
  * Writes `ByteBuffer` storing its length.
  * Additionally, it checks that all bytes written, so it won't work with somewhat
  * non-blocking or asynchronous streams.
+ * If the stream is [AlignedOutputStream], data is preceded by padding which aligns it.
  */
 fun OutputStream.writeByteBuffer(buffer: ByteBuffer) {
     val copy = buffer.duplicate()
     val bytes = copy.remaining()
     writeVlqUnsigned(bytes)
+    if (this is AlignedOutputStream) {
+        val padding = padding
+        writeVlqUnsigned(padding)
+        repeat(padding) { write(0) }
+    }
     check(Channels.newChannel(this).write(copy) == bytes) {
         "All bytes of ByteBuffer are expected to be written"
     }
-}
\ No newline at end of file
+}
+/**
+ * Output stream tracking its position in order to align data of byte buffers written by [writeByteBuffer]
+ * to [BYTE_BUFFER_ALIGNMENT] bytes. Complementary to [AlignedInputStream].
+ */
+class AlignedOutputStream(out: OutputStream) : FilterOutputStream(out) {
+
+    var position: Long = 0L
+        private set
+
+    override fun write(b: Int) {
+        out.write(b)
+        ++position
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        out.write(b, off, len)
+        position += len
+    }
+
+    /**
+     * Number of padding bytes to be written after a single-byte padding length so that following data is aligned.
+     */
+    internal val padding: Int
+        get() = ((BYTE_BUFFER_ALIGNMENT - (position + 1) % BYTE_BUFFER_ALIGNMENT) % BYTE_BUFFER_ALIGNMENT).toInt()
+}
+
+const val BYTE_BUFFER_ALIGNMENT = 8
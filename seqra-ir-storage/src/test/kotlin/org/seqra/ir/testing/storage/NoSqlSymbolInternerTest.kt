@@ -0,0 +1,105 @@
+package org.seqra.ir.testing.storage
+
+import org.seqra.ir.api.storage.ers.EntityRelationshipStorageSPI
+import org.seqra.ir.impl.JIRKvErsSettings
+import org.seqra.ir.impl.storage.NoSqlSymbolInterner
+import org.seqra.ir.impl.storage.ers.kv.KV_ERS_SPI
+import org.seqra.ir.impl.storage.kv.xodus.XODUS_KEY_VALUE_STORAGE_SPI
+import org.seqra.ir.impl.storage.toStorageContext
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import kotlin.io.path.createTempDirectory
+
+class NoSqlSymbolInternerTest {
+
+    private lateinit var location: String
+
+    @Test
+    fun `lazy symbols are looked up in storage`() {
+        val (first, second) = withInterner(lazySymbols = true) { interner ->
+            assertTrue(interner.isLazy)
+            val ids = interner.findOrNew("java.lang.Object") to interner.findOrNew("java.lang.String")
+            assertEquals(ids.first, interner.findOrNew("java.lang.Object"))
+            assertEquals("java.lang.String", interner.findSymbolName(ids.second))
+            interner.flushAll()
+            ids
+        }
+        withInterner(lazySymbols = true) { interner ->
+            assertTrue(interner.isLazy)
+            assertEquals("java.lang.Object", interner.findSymbolName(first))
+            assertEquals(second, interner.findOrNew("java.lang.String"))
+            assertNull(interner.findSymbolName(second + 1))
+            val third = interner.findOrNew("java.lang.Integer")
+            assertTrue(third > second)
+            // flushed symbol is still found after it is removed from memory on commit
+            interner.flushAll()
+            assertEquals(third, interner.findOrNew("java.lang.Integer"))
+            assertEquals("java.lang.Integer", interner.findSymbolName(third))
+        }
+        withInterner(lazySymbols = false) { interner ->
+            assertFalse(interner.isLazy)
+            assertEquals(first, interner.findOrNew("java.lang.Object"))
+            assertEquals("java.lang.String", interner.findSymbolName(second))
+        }
+    }
+
+    @Test
+    fun `symbols loaded in memory are looked up lazily after next flush`() {
+        val id = withInterner(lazySymbols = false) { interner ->
+            interner.findOrNew("java.lang.Object").also { interner.flushAll() }
+        }
+        withInterner(lazySymbols = true) { interner ->
+            assertTrue(interner.isLazy)
+            assertEquals(id, interner.findOrNew("java.lang.Object"))
+            assertEquals("java.lang.Object", interner.findSymbolName(id))
+        }
+    }
+
+    @Test
+    fun `symbols flushed to aborted transaction are flushed by the next one`() {
+        listOf(false, true).forEach { lazySymbols ->
+            setUp()
+            val id = withInterner(lazySymbols) { interner ->
+                val id = interner.findOrNew("java.lang.Object")
+                val txn = interner.ers.beginTransaction()
+                interner.flush(toStorageContext(txn))
+                txn.abort()
+                interner.aborted()
+                assertEquals(id, interner.findOrNew("java.lang.Object"))
+                assertEquals("java.lang.Object", interner.findSymbolName(id))
+                // retry
+                interner.flushAll()
+                assertEquals(id, interner.findOrNew("java.lang.Object"))
+                id
+            }
+            withInterner(lazySymbols) { interner ->
+                assertEquals(id, interner.findOrNew("java.lang.Object"))
+                assertEquals("java.lang.Object", interner.findSymbolName(id))
+            }
+        }
+    }
+
+    @BeforeEach
+    fun setUp() {
+        location = createTempDirectory(prefix = "noSqlSymbolInterner").toString()
+    }
+
+    private fun <T> withInterner(lazySymbols: Boolean, action: (NoSqlSymbolInterner) -> T): T {
+        val ers = EntityRelationshipStorageSPI.getProvider(KV_ERS_SPI).newStorage(
+            persistenceLocation = location,
+            settings = JIRKvErsSettings(XODUS_KEY_VALUE_STORAGE_SPI)
+        )
+        return ers.use {
+            NoSqlSymbolInterner(ers, lazySymbols).apply { setup() }.use(action)
+        }
+    }
+
+    private fun NoSqlSymbolInterner.flushAll() {
+        ers.transactional { txn -> flush(toStorageContext(txn)) }
+        committed()
+    }
+}
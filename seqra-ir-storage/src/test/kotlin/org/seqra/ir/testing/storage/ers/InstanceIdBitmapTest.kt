@@ -0,0 +1,63 @@
+package org.seqra.ir.testing.storage.ers
+
+import org.seqra.ir.api.storage.ers.InstanceIdBitmap
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.*
+
+class InstanceIdBitmapTest {
+
+    @Test
+    fun `add contains iterate`() {
+        val bitmap = InstanceIdBitmap()
+        assertTrue(bitmap.isEmpty)
+        assertTrue(bitmap.add(70_000L))
+        assertTrue(bitmap.add(1L))
+        assertTrue(bitmap.add(65_535L))
+        assertFalse(bitmap.add(1L))
+        assertEquals(3L, bitmap.size)
+        assertTrue(1L in bitmap)
+        assertFalse(2L in bitmap)
+        assertFalse(-1L in bitmap)
+        assertEquals(listOf(1L, 65_535L, 70_000L), bitmap.toList())
+    }
+
+    @Test
+    fun `set operations on sparse and dense chunks`() {
+        val random = Random(2808)
+        repeat(10) {
+            val first = randomIds(random)
+            val second = randomIds(random)
+            val firstBitmap = InstanceIdBitmap.of(first)
+            val secondBitmap = InstanceIdBitmap.of(second)
+            assertEquals(first.toList(), firstBitmap.toList())
+            assertEquals(first.size.toLong(), firstBitmap.size)
+            assertEquals((first + second).sorted(), (firstBitmap or secondBitmap).toList())
+            assertEquals(first.intersect(second).toList(), (firstBitmap and secondBitmap).toList())
+            assertEquals((first - second).toList(), (firstBitmap andNot secondBitmap).toList())
+        }
+    }
+
+    // ids from several chunks, some of them are dense enough to be stored as bitmaps
+    private fun randomIds(random: Random): SortedSet<Long> {
+        val result = TreeSet<Long>()
+        repeat(5) { chunk ->
+            val count = if (random.nextBoolean()) random.nextInt(100) else 5_000 + random.nextInt(30_000)
+            repeat(count) {
+                result.add(chunk * 65_536L + random.nextInt(65_536))
+            }
+        }
+        return result
+    }
+
+    private fun InstanceIdBitmap.toList(): List<Long> {
+        val result = mutableListOf<Long>()
+        val it = iterator()
+        while (it.hasNext()) {
+            result.add(it.nextLong())
+        }
+        return result
+    }
+}
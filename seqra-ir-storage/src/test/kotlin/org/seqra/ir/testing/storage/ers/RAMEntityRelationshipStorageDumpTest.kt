@@ -0,0 +1,95 @@
+package org.seqra.ir.testing.storage.ers
+
+import org.seqra.ir.api.storage.ers.DumpableLoadableEntityRelationshipStorage
+import org.seqra.ir.api.storage.ers.EntityRelationshipStorage
+import org.seqra.ir.api.storage.ers.EntityRelationshipStorageSPI
+import org.seqra.ir.api.storage.ers.compressed
+import org.seqra.ir.api.storage.ers.nonSearchable
+import org.seqra.ir.impl.RamErsSettings
+import org.seqra.ir.impl.storage.ers.ram.RAM_ERS_SPI
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.nio.file.Files
+
+class RAMEntityRelationshipStorageDumpTest {
+
+    private val ersSpi = EntityRelationshipStorageSPI.getProvider(RAM_ERS_SPI)
+    private lateinit var dumpsDir: File
+    private lateinit var settings: RamErsSettings
+
+    @Test
+    fun `dump has versioned header`() {
+        newImmutableStorage().close()
+        val header = File(dumpsDir, DATABASE_ID).readBytes().copyOf(6)
+        assertArrayEquals(byteArrayOf(0, 'S'.code.toByte(), 'R'.code.toByte(), 'A'.code.toByte(), 'M'.code.toByte(), 2), header)
+    }
+
+    @Test
+    fun `load memory-mapped dump`() {
+        newImmutableStorage().close()
+        val storage = ersSpi.newStorage(persistenceLocation = null, settings = settings)
+        val loaded = (storage as DumpableLoadableEntityRelationshipStorage).load(DATABASE_ID)
+        assertNotNull(loaded)
+        loaded!!.assertData()
+    }
+
+    @Test
+    fun `load dump from stream`() {
+        val output = ByteArrayOutputStream()
+        (newImmutableStorage() as DumpableLoadableEntityRelationshipStorage).dump(output)
+        val storage = ersSpi.newStorage(persistenceLocation = null, settings = RamErsSettings())
+        (storage as DumpableLoadableEntityRelationshipStorage).load(ByteArrayInputStream(output.toByteArray()))
+        storage.assertData()
+    }
+
+    @BeforeEach
+    fun setUp() {
+        dumpsDir = Files.createTempDirectory("ersDumps").toFile()
+        settings = RamErsSettings(immutableDumpsPath = dumpsDir.absolutePath)
+    }
+
+    @AfterEach
+    fun tearDown() {
+        dumpsDir.deleteRecursively()
+    }
+
+    private fun newImmutableStorage(): EntityRelationshipStorage {
+        return ersSpi.newStorage(persistenceLocation = null, settings = settings).let { rwStorage ->
+            rwStorage.transactional { txn ->
+                val userGroup = txn.newEntity("UserGroup")
+                repeat(USERS_COUNT) { i ->
+                    val user = txn.newEntity("User")
+                    user["login"] = "login$i"
+                    user["age"] = (20 + i % 10).compressed
+                    user["avatar"] = "avatar$i".nonSearchable
+                    userGroup.addLink("user", user)
+                }
+            }
+            rwStorage.asImmutable(DATABASE_ID)
+        }
+    }
+
+    private fun EntityRelationshipStorage.assertData() {
+        transactional { txn ->
+            assertEquals(USERS_COUNT.toLong(), txn.all("User").size)
+            assertEquals(USERS_COUNT, txn.all("UserGroup").first().getLinks("user").toList().size)
+            assertEquals(USERS_COUNT / 10L, txn.find("User", "age", 25.compressed).size)
+            repeat(USERS_COUNT) { i ->
+                val user = txn.find("User", "login", "login$i").single()
+                assertEquals("avatar$i", user.getBlob<String>("avatar"))
+            }
+        }
+    }
+
+    companion object {
+        private const val USERS_COUNT = 1000
+        private const val DATABASE_ID = "271828182845"
+    }
+}
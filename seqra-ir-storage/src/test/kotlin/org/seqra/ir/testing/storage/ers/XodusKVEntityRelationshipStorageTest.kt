@@ -1,10 +1,18 @@
 package org.seqra.ir.testing.storage.ers
 
 import jetbrains.exodus.env.ReadonlyTransactionException
+import org.seqra.ir.api.storage.ers.links
 import org.seqra.ir.impl.JIRKvErsSettings
+import org.seqra.ir.impl.storage.ers.decorators.unwrap
+import org.seqra.ir.impl.storage.ers.kv.KVErsTransaction
 import org.seqra.ir.impl.storage.ers.kv.KV_ERS_SPI
 import org.seqra.ir.impl.storage.kv.xodus.XODUS_KEY_VALUE_STORAGE_SPI
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
 import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 
 class XodusKVEntityRelationshipStorageTest : EntityRelationshipStorageTest() {
@@ -12,4 +20,73 @@ class XodusKVEntityRelationshipStorageTest : EntityRelationshipStorageTest() {
     override val ersSettings = JIRKvErsSettings(XODUS_KEY_VALUE_STORAGE_SPI)
 
     override val ersId = KV_ERS_SPI
-}
\ No newline at end of file
+
+    @Test
+    fun `cursors of read-only iterables are closed`() {
+        val user = txn.newEntity("User")
+        val userProfiles = links(user, "userProfile")
+        repeat(100) {
+            val profile = txn.newEntity("UserProfile")
+            profile["seed"] = it % 10
+            userProfiles += profile
+        }
+        txn.commit()
+        txn.ers.transactional(readonly = true) { txn ->
+            val kvTxn = txn.unwrap as KVErsTransaction
+            val found = txn.find("UserProfile", "seed", 1)
+            assertFalse(found.isEmpty)
+            assertNotNull(found.firstOrNull())
+            assertEquals(10L, found.size)
+            assertEquals(10, found.count())
+            assertEquals(0, kvTxn.openCursorsCount)
+            val links = txn.all("User").single().getLinks("userProfile")
+            assertNotNull(links.first())
+            // iteration of a result larger than a read-ahead batch is abandoned, the cursor is left to the transaction
+            assertEquals(1, kvTxn.openCursorsCount)
+            assertEquals(100L, links.size)
+            assertEquals(100, links.count())
+            assertEquals(1, kvTxn.openCursorsCount)
+        }
+    }
+
+    @Test
+    fun `buffered writes of bulk transaction are flushed once on commit`() {
+        val user = txn.newEntity("User")
+        user["name"] = "ancient"
+        txn.commit()
+        assertTrue((txn.unwrap as KVErsTransaction).writeBuffer.isEmpty)
+        txn.ers.bulkTransactional { txn ->
+            val kvTxn = txn.unwrap as KVErsTransaction
+            // persisting of a batch of classes: each one is searched before it's created
+            repeat(10) { i ->
+                assertTrue(txn.find("User", "name", "user$i").isEmpty)
+                val newUser = txn.newEntity("User")
+                newUser["name"] = "user$i"
+                newUser["age"] = i % 2
+                val profile = txn.find("UserProfile", "age", i % 2).firstOrNull()
+                    ?: txn.newEntity("UserProfile").also { it["age"] = i % 2 }
+                newUser.addLink("userProfile", profile)
+            }
+            assertEquals(2L, txn.all("UserProfile").size)
+            assertEquals("user3", txn.find("User", "name", "user3").single().get<String>("name"))
+            assertEquals(5L, txn.find("User", mapOf("age" to 1)).size)
+            assertEquals(1L, txn.find("User", mapOf("name" to "user3", "age" to 1)).size)
+            assertTrue(txn.find("User", mapOf("name" to "user3", "age" to 0)).isEmpty)
+            assertEquals(6L, txn.findGt("User", "name", "user3").size)
+            assertEquals(4L, txn.findLt("User", "name", "user3").size)
+            assertEquals(1L, txn.find("User", "name", "ancient").size)
+            val profile = txn.find("UserProfile", "age", 0).single()
+            assertEquals(profile, txn.find("User", "name", "user4").single().getLinks("userProfile").single())
+            // nothing was flushed by the reads
+            assertFalse(kvTxn.writeBuffer.isEmpty)
+        }
+        txn.ers.transactional(readonly = true) { txn ->
+            assertEquals(11L, txn.all("User").size)
+            assertEquals(2L, txn.all("UserProfile").size)
+            assertEquals(5L, txn.find("User", mapOf("age" to 1)).size)
+            val profile = txn.find("UserProfile", "age", 1).single()
+            assertEquals(profile, txn.find("User", "name", "user5").single().getLinks("userProfile").single())
+            assertNull(txn.find("User", "name", "user10").firstOrNull())
+        }
+    }
+}
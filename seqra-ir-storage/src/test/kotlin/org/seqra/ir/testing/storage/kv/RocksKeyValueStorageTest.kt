@@ -1,8 +1,63 @@
 package org.seqra.ir.testing.storage.kv
 
+import org.seqra.ir.api.storage.kv.asIterable
+import org.seqra.ir.impl.JIRRocksErsSettings
 import org.seqra.ir.impl.storage.kv.rocks.ROCKS_KEY_VALUE_STORAGE_SPI
+import org.seqra.ir.impl.storage.kv.rocks.RocksKeyValueStorageImpl
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import kotlin.io.path.createTempDirectory
 
 class RocksKeyValueStorageTest : PluggableKeyValueStorageTest() {
 
     override val kvStorageId = ROCKS_KEY_VALUE_STORAGE_SPI
+
+    @Test
+    fun `bulk ingestion`() {
+        val settings = JIRRocksErsSettings(
+            bloomFilterBitsPerKey = 10.0,
+            prefixLength = 4,
+            isPrefixedMap = { mapName -> mapName == "a map" },
+            ingestionThreshold = 100L
+        )
+        val ingestionLocation = createTempDirectory(prefix = "rocksIngestion").toString()
+        kvStorageSpi.newStorage(ingestionLocation, settings).use { storage ->
+            storage.isMapWithKeyDuplicates = { mapName -> mapName.endsWith("withDuplicates") }
+            storage.transactional { txn ->
+                repeat(1000) { i ->
+                    txn.put("a map", "key$i".asByteArray, "value$i".asByteArray)
+                    txn.put("map#withDuplicates", "key${i % 10}".asByteArray, "value$i".asByteArray)
+                }
+                txn.delete("a map", "key0".asByteArray)
+                assertEquals("value1", txn.get("a map", "key1".asByteArray)?.asString)
+                assertTrue(txn.commit())
+            }
+            // "a map", "map#withDuplicates" and the column family of map sizes are ingested
+            assertEquals(3L, (storage as RocksKeyValueStorageImpl).ingestedFilesCount.get())
+            storage.transactional { txn ->
+                txn.put("a map", "small".asByteArray, "write".asByteArray)
+                assertTrue(txn.commit())
+            }
+            // a transaction with fewer writes than the threshold is committed as usual
+            assertEquals(3L, storage.ingestedFilesCount.get())
+        }
+        kvStorageSpi.newStorage(ingestionLocation, settings).use { storage ->
+            storage.isMapWithKeyDuplicates = { mapName -> mapName.endsWith("withDuplicates") }
+            assertNull(storage.get("a map", "key0".asByteArray))
+            assertEquals("value999", storage.get("a map", "key999".asByteArray)?.asString)
+            assertEquals(1000L, storage.mapSize("a map"))
+            assertEquals(1000L, storage.mapSize("map#withDuplicates"))
+            storage.readonlyTransactional { txn ->
+                txn.navigateTo("a map").use { cursor ->
+                    val keys = cursor.asIterable().map { it.first.asString }
+                    assertEquals(((1 until 1000).map { "key$it" } + "small").sorted(), keys)
+                }
+                txn.navigateTo("map#withDuplicates", "key9".asByteArray).use { cursor ->
+                    assertEquals(100, cursor.asIterable().count())
+                }
+            }
+        }
+    }
 }
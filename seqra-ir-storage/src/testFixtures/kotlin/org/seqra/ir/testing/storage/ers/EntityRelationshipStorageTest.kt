@@ -234,6 +234,35 @@ abstract class EntityRelationshipStorageTest {
         }
     }
 
+    @Test
+    fun findByProperties() {
+        repeat(100) { i ->
+            txn.newEntity("Class").also { clazz ->
+                clazz["nameId"] = (i % 10L).compressed
+                clazz["locationId"] = (i / 10L).compressed
+                clazz["name"] = "class$i"
+            }
+        }
+        txn.commit()
+        txn.ers.transactional(readonly = true) { txn ->
+            val found = txn.find("Class", mapOf("nameId" to 5L.compressed, "locationId" to 3L.compressed))
+            assertEquals(listOf("class35"), found.map { it.get<String>("name") }.toList())
+            assertTrue(txn.find("Class", mapOf("nameId" to 7L.compressed, "locationId" to 3L.compressed)).isEmpty)
+            assertTrue(txn.find("Class", mapOf("nameId" to 5L.compressed, "locationId" to 10L.compressed)).isEmpty)
+            assertTrue(txn.find("Class", mapOf("nameId" to 5L.compressed, "unknown" to 3L.compressed)).isEmpty)
+            assertTrue(txn.find("Unknown", mapOf("nameId" to 5L.compressed, "locationId" to 3L.compressed)).isEmpty)
+            assertEquals(
+                listOf("class15"),
+                txn.find(
+                    "Class",
+                    mapOf("nameId" to 5L.compressed, "locationId" to 1L.compressed, "name" to "class15")
+                ).map { it.get<String>("name") }.toList()
+            )
+            assertEquals(10L, txn.find("Class", mapOf("nameId" to 5L.compressed)).size)
+            assertEquals(100L, txn.find("Class", emptyMap()).size)
+        }
+    }
+
     @Test
     fun txnIsolation() {
         val user = txn.newEntity("User")
@@ -336,6 +365,71 @@ abstract class EntityRelationshipStorageTest {
         }
     }
 
+    @Test
+    fun newEntitiesAttributes() {
+        Assumptions.assumeTrue(ersSpi.id == KV_ERS_SPI)
+        val users = (0 until 100).map { i ->
+            txn.newEntity("User").also { user ->
+                user["login"] = "user$i"
+                user["login"] = "login$i"
+                user["seed"] = (i % 3).compressed
+                user.deleteProperty("seed")
+                user.setRawBlob("avatar", byteArrayOf(i.toByte()))
+            }
+        }
+        val profile = txn.newEntity("UserProfile")
+        users.forEach { user -> assertTrue(user.addLink("userProfile", profile)) }
+        assertFalse(users[0].addLink("userProfile", profile))
+        assertEquals("login42", users[42].get<String>("login"))
+        assertNull(users[42].getCompressed<Int>("seed"))
+        assertArrayEquals(byteArrayOf(42), users[42].getRawBlob("avatar"))
+        assertTrue(txn.find("User", "login", "user42").isEmpty)
+        assertEquals(users[42], txn.find("User", "login", "login42").single())
+        assertEquals(profile, users[42].getLinks("userProfile").single())
+        // entity created after buffered writes are flushed by the search above
+        val user = txn.newEntity("User").also { it["login"] = "login100" }
+        assertEquals(user, txn.find("User", "login", "login100").single())
+        txn.commit()
+        txn.ers.transactional(readonly = true) { txn ->
+            assertEquals(101L, txn.all("User").size)
+            val user42 = txn.find("User", "login", "login42").single()
+            assertArrayEquals(byteArrayOf(42), user42.getRawBlob("avatar"))
+            assertNull(user42.getCompressed<Int>("seed"))
+            assertEquals(1L, user42.getLinks("userProfile").size)
+        }
+    }
+
+    @Test
+    fun readonlyIterables() {
+        Assumptions.assumeTrue(ersSpi.id == KV_ERS_SPI)
+        val user = txn.newEntity("User")
+        val userProfiles = links(user, "userProfile")
+        repeat(100) {
+            val profile = txn.newEntity("UserProfile")
+            profile["seed"] = it % 2
+            userProfiles += profile
+        }
+        txn.all("UserProfile").forEach { e ->
+            if (e.id.instanceId % 10L == 0L) {
+                e.delete()
+            }
+        }
+        txn.commit()
+        txn.ers.transactional(readonly = true) { txn ->
+            val all = txn.all("UserProfile")
+            assertEquals(90L, all.size)
+            assertEquals(90, all.count())
+            assertTrue(all.none { it.id.instanceId % 10L == 0L })
+            // iteration is abandoned, the transaction is finished anyway
+            assertNotNull(txn.find("UserProfile", "seed", 1).first())
+            assertEquals(50L, txn.find("UserProfile", "seed", 1).size)
+            assertEquals(40L, txn.find("UserProfile", "seed", 0).size)
+            val user = txn.all("User").single()
+            assertEquals(90L, user.getLinks("userProfile").size)
+            assertNotNull(user.getLinks("userProfile").first())
+        }
+    }
+
     @Test
     fun entityIterableUnion() {
         val user1 = txn.newEntity("User").also { user ->
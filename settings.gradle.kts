@@ -6,3 +6,4 @@ include("seqra-ir-api-storage")
 include("seqra-ir-core")
 include("seqra-ir-storage")
 include("seqra-ir-approximations")
+include("seqra-ir-benchmarks")